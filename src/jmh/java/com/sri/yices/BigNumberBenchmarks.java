@@ -0,0 +1,88 @@
+package com.sri.yices;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Marshalling of BigInteger and BigRational across JNI
+ * (byte arrays converted by byte_array_to_mpz and mpz_to_byte_array).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BigNumberBenchmarks {
+    private final BigInteger small = BigInteger.valueOf(123456789L);
+    private final BigInteger large = BigInteger.ONE.shiftLeft(200).add(BigInteger.valueOf(17));
+    private final BigRational smallRational = new BigRational("-7/3");
+    private final BigRational largeRational = new BigRational(BigInteger.ONE.shiftLeft(100).add(BigInteger.ONE), BigInteger.valueOf(3));
+
+    private Model model;
+    private int smallVar;
+    private int largeVar;
+    private int rationalVar;
+
+    @Setup
+    public void setup() {
+        smallVar = Terms.newUninterpretedTerm(Types.INT);
+        largeVar = Terms.newUninterpretedTerm(Types.INT);
+        rationalVar = Terms.newUninterpretedTerm(Types.REAL);
+        int[] vars = { smallVar, largeVar, rationalVar };
+        int[] vals = { Terms.intConst(small), Terms.intConst(large), Terms.rationalConst(largeRational) };
+        model = new Model(vars, vals);
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.close();
+    }
+
+    @Benchmark
+    public int intConstSmall() {
+        return Terms.intConst(small);
+    }
+
+    @Benchmark
+    public int intConstLarge() {
+        return Terms.intConst(large);
+    }
+
+    @Benchmark
+    public int rationalConstSmall() {
+        return Terms.rationalConst(smallRational);
+    }
+
+    @Benchmark
+    public int rationalConstLarge() {
+        return Terms.rationalConst(largeRational);
+    }
+
+    @Benchmark
+    public BigInteger bigIntegerValueSmall() {
+        return model.bigIntegerValue(smallVar);
+    }
+
+    @Benchmark
+    public BigInteger bigIntegerValueLarge() {
+        return model.bigIntegerValue(largeVar);
+    }
+
+    @Benchmark
+    public BigRational bigRationalValue() {
+        return model.bigRationalValue(rationalVar);
+    }
+}
@@ -0,0 +1,151 @@
+package com.sri.yices;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * int[] arguments (GetIntArrayElements, which may copy) versus
+ * direct IntBuffers for large term arrays. The direct and/or variants
+ * copy the buffer (yices_and and yices_or reorder their argument),
+ * the other direct variants don't.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferBenchmarks {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    // the substitution applies to the first SUBST_SIZE Boolean terms
+    private static final int SUBST_SIZE = 1000;
+
+    private int[] array;
+    private IntBuffer buffer;
+    private int[] intArray;
+    private IntBuffer intBuffer;
+    private int[] vars;
+    private int[] map;
+    private IntBuffer varBuffer;
+    private IntBuffer mapBuffer;
+    private IntBuffer output;
+    private Context ctx;
+    private Model model;
+
+    @Setup
+    public void setup() {
+        array = new int[size];
+        buffer = Terms.newTermBuffer(size);
+        intArray = new int[size];
+        intBuffer = Terms.newTermBuffer(size);
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = Terms.newUninterpretedTerm(Types.BOOL);
+            buffer.put(i, array[i]);
+            intArray[i] = Terms.newUninterpretedTerm(Types.INT);
+            intBuffer.put(i, intArray[i]);
+            values[i] = Terms.TRUE;
+        }
+        int k = Math.min(size, SUBST_SIZE);
+        vars = new int[k];
+        map = new int[k];
+        varBuffer = Terms.newTermBuffer(k);
+        mapBuffer = Terms.newTermBuffer(k);
+        for (int i = 0; i < k; i++) {
+            vars[i] = array[i];
+            map[i] = Terms.not(array[i]);
+            varBuffer.put(i, vars[i]);
+            mapBuffer.put(i, map[i]);
+        }
+        output = Terms.newTermBuffer(size);
+        ctx = new Context();
+        model = new Model(array, values);
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.close();
+        ctx.close();
+    }
+
+    @Benchmark
+    public int andArray() {
+        return Terms.and(array);
+    }
+
+    @Benchmark
+    public int andBuffer() {
+        return Terms.and(buffer);
+    }
+
+    @Benchmark
+    public void assertArray() {
+        ctx.push();
+        ctx.assertFormulas(array);
+        ctx.pop();
+    }
+
+    @Benchmark
+    public void assertBuffer() {
+        ctx.push();
+        ctx.assertFormulas(buffer);
+        ctx.pop();
+    }
+
+    @Benchmark
+    public int orArray() {
+        return Terms.or(array);
+    }
+
+    @Benchmark
+    public int orBuffer() {
+        return Terms.or(buffer);
+    }
+
+    @Benchmark
+    public int sumArray() {
+        return Terms.add(intArray);
+    }
+
+    @Benchmark
+    public int sumBuffer() {
+        return Terms.add(intBuffer);
+    }
+
+    // in place: the Boolean terms alternate between x and (not x)
+    @Benchmark
+    public void substArray() {
+        Terms.substArray(array, vars, map);
+    }
+
+    @Benchmark
+    public void substBuffer() {
+        Terms.substArray(buffer, varBuffer, mapBuffer);
+    }
+
+    @Benchmark
+    public int[] valuesAsTermsArray() {
+        return model.valuesAsTerms(array);
+    }
+
+    @Benchmark
+    public IntBuffer valuesAsTermsBuffer() {
+        model.valuesAsTerms(buffer, output);
+        return output;
+    }
+}
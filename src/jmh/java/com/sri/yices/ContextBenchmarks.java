@@ -0,0 +1,82 @@
+package com.sri.yices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Context operations: assertions, push/pop, and check.
+ * Every benchmark leaves the context at the base level so iterations are comparable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBenchmarks {
+    @Param({"10", "1000"})
+    public int size;
+
+    private Context ctx;
+    private int[] formulas;
+
+    @Setup
+    public void setup() {
+        ctx = new Context("QF_LIA");
+        formulas = new int[size];
+        int prev = Terms.newUninterpretedTerm(Types.INT);
+        for (int i = 0; i < size; i++) {
+            int next = Terms.newUninterpretedTerm(Types.INT);
+            formulas[i] = Terms.arithLt(prev, next);   // prev < next
+            prev = next;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public void pushPop() {
+        ctx.push();
+        ctx.pop();
+    }
+
+    @Benchmark
+    public void assertFormula() {
+        ctx.push();
+        for (int f : formulas) {
+            ctx.assertFormula(f);
+        }
+        ctx.pop();
+    }
+
+    @Benchmark
+    public void assertFormulas() {
+        ctx.push();
+        ctx.assertFormulas(formulas);
+        ctx.pop();
+    }
+
+    @Benchmark
+    public Status check() {
+        ctx.push();
+        ctx.assertFormulas(formulas);
+        Status s = ctx.check();
+        ctx.pop();
+        return s;
+    }
+}
@@ -0,0 +1,93 @@
+package com.sri.yices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Extraction of values from a model: one term at a time, in bulk,
+ * and through the YVal exploration API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmarks {
+    private static final int N = 1000;
+
+    private Context ctx;
+    private Model model;
+    private int[] vars;
+    private long[] longs;
+    private boolean[] ok;
+    private int f;
+
+    @Setup
+    public void setup() {
+        // x[i] = i and f(i) = i+1 for i in [0, 10)
+        vars = new int[N];
+        ctx = new Context();
+        for (int i = 0; i < N; i++) {
+            vars[i] = Terms.newUninterpretedTerm(Types.INT);
+            ctx.assertFormula(Terms.arithEq(vars[i], Terms.intConst(i)));
+        }
+        f = Terms.newUninterpretedFunction(Types.INT, Types.INT);
+        for (int i = 0; i < 10; i++) {
+            ctx.assertFormula(Terms.arithEq(Terms.funApplication(f, Terms.intConst(i)), Terms.intConst(i+1)));
+        }
+        if (ctx.check() != Status.SAT) throw new IllegalStateException("benchmark setup is unsat");
+        model = ctx.getModel();
+        longs = new long[N];
+        ok = new boolean[N];
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.close();
+        ctx.close();
+    }
+
+    @Benchmark
+    public void integerValue(Blackhole bh) {
+        for (int x : vars) {
+            bh.consume(model.integerValue(x));
+        }
+    }
+
+    @Benchmark
+    public int longValues() {
+        return model.longValues(vars, longs, ok);
+    }
+
+    @Benchmark
+    public void bigIntegerValue(Blackhole bh) {
+        for (int x : vars) {
+            bh.consume(model.bigIntegerValue(x));
+        }
+    }
+
+    @Benchmark
+    public void getValue(Blackhole bh) {
+        for (int x : vars) {
+            bh.consume(model.getValue(x));
+        }
+    }
+
+    @Benchmark
+    public VectorValue expandFunction() {
+        return model.expandFunction(model.getValue(f));
+    }
+}
@@ -0,0 +1,60 @@
+package com.sri.yices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-request solver pattern: a fresh Context(logic, mode) vs. a context from a ContextPool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmarks {
+    private ContextPool pool;
+    private ContextPool.Key key;
+    private int formula;
+
+    @Setup
+    public void setup() {
+        pool = new ContextPool();
+        key = new ContextPool.Key("QF_LIA", "push-pop");
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        formula = Terms.arithGt(x, Terms.ZERO);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Status fresh() {
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            ctx.assertFormula(formula);
+            return ctx.check();
+        }
+    }
+
+    @Benchmark
+    public Status pooled() {
+        try (ContextPool.Lease lease = pool.acquire(key)) {
+            Context ctx = lease.context();
+            ctx.assertFormula(formula);
+            return ctx.check();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.sri.yices;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the term constructors: one JNI crossing plus the Yices hash-consing.
+ * - add and bvAdd rebuild the same term (hash-consing hit)
+ * - addFresh builds a new term every time
+ * - parse goes through GetStringUTFChars and the Yices parser
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermBenchmarks {
+    private int x;
+    private int y;
+    private int bx;
+    private int by;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        x = Terms.newUninterpretedTerm("bench_x", Types.INT);
+        y = Terms.newUninterpretedTerm("bench_y", Types.INT);
+        bx = Terms.newUninterpretedTerm("bench_bx", Types.bvType(32));
+        by = Terms.newUninterpretedTerm("bench_by", Types.bvType(32));
+        counter = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Terms.removeName("bench_x");
+        Terms.removeName("bench_y");
+        Terms.removeName("bench_bx");
+        Terms.removeName("bench_by");
+    }
+
+    @Benchmark
+    public int add() {
+        return Terms.add(x, y);
+    }
+
+    @Benchmark
+    public int addFresh() {
+        return Terms.add(x, Terms.intConst(counter++));
+    }
+
+    @Benchmark
+    public int bvAdd() {
+        return Terms.bvAdd(bx, by);
+    }
+
+    @Benchmark
+    public int parse() {
+        return Terms.parse("(and (> bench_x bench_y) (bv-gt bench_bx bench_by))");
+    }
+}
@@ -0,0 +1,58 @@
+package com.sri.yices;
+
+/**
+ * Failure to assert a buffered formula (cf. Context.setBuffering).
+ *
+ * Formulas are numbered from 0 in the order they were given to
+ * assertFormula/assertFormulas since buffering was enabled.
+ */
+public class AssertionException extends YicesException {
+    private final long index;
+    private final int term;
+    private final long first;
+    private final long last;
+    private final int code;
+
+    /*
+     * - first/last: range of formulas in the batch that failed
+     * - index/term: formula that caused the error (-1 if it's not known)
+     * - code/message: Yices error code and string
+     */
+    protected AssertionException(long first, long last, long index, int term, int code, String message) {
+        super(message);
+        this.first = first;
+        this.last = last;
+        this.index = index;
+        this.term = term;
+        this.code = code;
+    }
+
+    /*
+     * Yices error code
+     */
+    public int getErrorCode() { return code; }
+
+    /*
+     * Index of the formula that caused the error or -1
+     */
+    public long getIndex() { return index; }
+
+    /*
+     * The formula that caused the error or -1
+     */
+    public int getTerm() { return term; }
+
+    /*
+     * Indices of the first and last formulas in the failed batch: none of them
+     * is asserted if the error is a type error; otherwise the context should
+     * be reset
+     */
+    public long getBatchStart() { return first; }
+
+    public long getBatchEnd() { return last; }
+
+    public String getMessage() {
+        String where = index >= 0 ? "formula " + index : "formulas " + first + " to " + last;
+        return where + ": " + super.getMessage();
+    }
+}
@@ -0,0 +1,409 @@
+package com.sri.yices;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Solver for many small independent queries.
+ *
+ * The solver owns a fixed set of worker threads. Each worker keeps one
+ * context per logic, built in push-pop mode on first use. A job is solved by
+ * push, assert, check, evaluate the requested terms in the model, and pop,
+ * so the contexts are reused from one job to the next.
+ *
+ * Jobs wait in a bounded queue: submit blocks when the queue is full
+ * (trySubmit returns null instead), which slows down the producers.
+ *
+ * The contexts are created, used, and closed on the worker threads.
+ * This requires Yices to be compiled in thread-safe mode if there's more
+ * than one worker.
+ */
+public final class BatchSolver implements AutoCloseable {
+
+    /**
+     * A query: assert formulas in a context for logic (null means the default
+     * context), check, and if the result is SAT get the values of terms.
+     */
+    public static final class Job {
+        private final String logic;
+        private final int[] formulas;
+        private final int[] terms;
+
+        public Job(String logic, int[] formulas, int[] terms) {
+            this.logic = logic;
+            this.formulas = formulas;
+            this.terms = terms;
+        }
+
+        public Job(String logic, int[] formulas) {
+            this(logic, formulas, null);
+        }
+
+        public String getLogic() { return logic; }
+
+        public int[] getFormulas() { return formulas; }
+
+        public int[] getTerms() { return terms; }
+    }
+
+    /**
+     * Result of a job
+     */
+    public static final class Outcome {
+        private final long index;
+        private final Job job;
+        private final Status status;
+        private final int[] values;
+        private final YicesException error;
+        private final long waitNanos;
+        private final long solveNanos;
+
+        private Outcome(long index, Job job, Status status, int[] values, YicesException error, long waitNanos, long solveNanos) {
+            this.index = index;
+            this.job = job;
+            this.status = status;
+            this.values = values;
+            this.error = error;
+            this.waitNanos = waitNanos;
+            this.solveNanos = solveNanos;
+        }
+
+        /*
+         * Submission number of the job (starting from 0)
+         */
+        public long getIndex() { return index; }
+
+        public Job getJob() { return job; }
+
+        /*
+         * Status of the check or ERROR if the job failed
+         */
+        public Status getStatus() { return status; }
+
+        /*
+         * If the status is SAT and the job has terms to evaluate:
+         * the values of these terms as constant terms (null otherwise)
+         */
+        public int[] getValues() { return values; }
+
+        /*
+         * Exception raised by the job (null if it succeeded).
+         * Other exceptions and errors are wrapped in a YicesException (see getCause).
+         */
+        public YicesException getError() { return error; }
+
+        /*
+         * Time spent in the queue and time spent solving, in nanoseconds
+         */
+        public long getWaitNanos() { return waitNanos; }
+
+        public long getSolveNanos() { return solveNanos; }
+
+        public String toString() {
+            return "Outcome(" + index + ", " + status + (error == null ? "" : ", " + error.getMessage()) + ")";
+        }
+    }
+
+    /*
+     * Queued job
+     */
+    private static final class Task {
+        final long index;
+        final Job job;
+        final long enqueued;
+        final CompletableFuture<Outcome> future;
+
+        Task(long index, Job job) {
+            this.index = index;
+            this.job = job;
+            this.enqueued = System.nanoTime();
+            this.future = new CompletableFuture<Outcome>();
+        }
+    }
+
+    // marks the end of the queue for the workers
+    private static final Task STOP = new Task(-1, null);
+
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<Task>();
+    private final Semaphore slots;  // free slots in the queue
+    private final Thread[] workers;
+    private final int capacity;
+    private final long started = System.nanoTime();
+    private final AtomicLong submitted = new AtomicLong();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final LongAdder solveTime = new LongAdder();
+    private volatile boolean closed;
+
+    /*
+     * Solver with nthreads workers and a queue that can hold capacity jobs
+     */
+    public BatchSolver(int nthreads, int capacity) {
+        if (nthreads < 1) throw new IllegalArgumentException("nthreads must be positive");
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        slots = new Semaphore(capacity);
+        workers = new Thread[nthreads];
+        for (int i = 0; i < nthreads; i++) {
+            workers[i] = new Thread(this::work, "yices-batch-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /*
+     * Worker loop
+     */
+    private void work() {
+        Map<String, Context> contexts = new HashMap<String, Context>();
+        try {
+            Task t;
+            while ((t = queue.take()) != STOP) {
+                slots.release();
+                solve(contexts, t);
+            }
+        } catch (InterruptedException e) {
+            // exit
+        } finally {
+            for (Context c : contexts.values()) c.close();
+        }
+    }
+
+    private void solve(Map<String, Context> contexts, Task t) {
+        long start = System.nanoTime();
+        long wait = start - t.enqueued;
+        Job job = t.job;
+        Status status = Status.ERROR;
+        int[] values = null;
+        YicesException error = null;
+        String key = null;
+        Context ctx = null;
+        boolean pushed = false;
+        boolean discard = false;  // the context may be in a bad state
+        try {
+            key = job.logic == null ? "" : job.logic;
+            ctx = contexts.get(key);
+            if (ctx == null) {
+                ctx = job.logic == null ? new Context() : new Context(job.logic, "push-pop");
+                contexts.put(key, ctx);
+            }
+            ctx.push();
+            pushed = true;
+            ctx.assertFormulas(job.formulas);
+            status = ctx.check();
+            if (status == Status.SAT && job.terms != null && job.terms.length > 0) {
+                try (Model m = ctx.getModel()) {
+                    values = m.valuesAsTerms(job.terms);
+                }
+            }
+        } catch (YicesException e) {
+            status = Status.ERROR;
+            values = null;
+            error = e;
+        } catch (Throwable e) {
+            // bad job or out of memory: report it and don't let it kill the worker
+            status = Status.ERROR;
+            values = null;
+            error = wrap(e);
+            discard = true;
+        }
+        if (pushed && ! discard) {
+            try {
+                ctx.pop();
+            } catch (Throwable e) {
+                discard = true;
+                if (error == null) {
+                    status = Status.ERROR;
+                    values = null;
+                    error = wrap(e);
+                }
+            }
+        }
+        if (discard && ctx != null) {
+            // rebuild the context next time
+            contexts.remove(key, ctx);
+            try {
+                ctx.close();
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+        long solve = System.nanoTime() - start;
+        waitTime.add(wait);
+        solveTime.add(solve);
+        completed.increment();
+        if (error != null) failed.increment();
+        t.future.complete(new Outcome(t.index, job, status, values, error, wait, solve));
+    }
+
+    private static YicesException wrap(Throwable e) {
+        if (e instanceof YicesException) return (YicesException) e;
+        YicesException y = new YicesException("job failed: " + e);
+        y.initCause(e);
+        return y;
+    }
+
+    /*
+     * Add a job to the queue: this blocks while the queue is full
+     */
+    public CompletableFuture<Outcome> submit(Job job) throws InterruptedException {
+        if (closed) throw new IllegalStateException("solver closed");
+        slots.acquire();
+        return enqueue(job);
+    }
+
+    /*
+     * Add a job if the queue is not full, return null otherwise
+     */
+    public CompletableFuture<Outcome> trySubmit(Job job) {
+        if (closed) throw new IllegalStateException("solver closed");
+        return slots.tryAcquire() ? enqueue(job) : null;
+    }
+
+    /*
+     * The check and the insertion are done under the lock used by close,
+     * so no job can be queued after the STOP markers.
+     */
+    private synchronized CompletableFuture<Outcome> enqueue(Job job) {
+        if (closed) {
+            slots.release();
+            throw new IllegalStateException("solver closed");
+        }
+        Task t = new Task(submitted.getAndIncrement(), job);
+        queue.add(t);
+        return t.future;
+    }
+
+    /*
+     * Solve all the jobs and pass the outcomes to sink, on the calling thread:
+     * - if ordered is true, the outcomes are passed in the order of the jobs,
+     *   otherwise they are passed as they complete
+     */
+    public void solveAll(Iterable<Job> jobs, boolean ordered, Consumer<Outcome> sink) throws InterruptedException {
+        if (ordered) {
+            ArrayDeque<CompletableFuture<Outcome>> pending = new ArrayDeque<CompletableFuture<Outcome>>();
+            for (Job job : jobs) {
+                pending.add(submit(job));
+                // pass the outcomes that are ready; bound the number of pending outcomes
+                while (! pending.isEmpty() && (pending.peek().isDone() || pending.size() > 2 * capacity)) {
+                    sink.accept(get(pending.poll()));
+                }
+            }
+            while (! pending.isEmpty()) {
+                sink.accept(get(pending.poll()));
+            }
+        } else {
+            LinkedBlockingQueue<Outcome> done = new LinkedBlockingQueue<Outcome>();
+            long n = 0;
+            for (Job job : jobs) {
+                submit(job).thenAccept(done::add);
+                n ++;
+                Outcome o;
+                while ((o = done.poll()) != null) {
+                    sink.accept(o);
+                    n --;
+                }
+            }
+            while (n > 0) {
+                sink.accept(done.take());
+                n --;
+            }
+        }
+    }
+
+    private static Outcome get(CompletableFuture<Outcome> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            // outcomes are always completed normally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /*
+     * Stop the workers once the queued jobs are done, wait at most timeout
+     * - return true if all the workers have stopped
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (! closed) {
+                closed = true;
+                for (int i = 0; i < workers.length; i++) {
+                    queue.put(STOP);
+                }
+            }
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread w : workers) {
+            long r = deadline - System.nanoTime();
+            if (r > 0) TimeUnit.NANOSECONDS.timedJoin(w, r);
+            if (w.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Stop the workers once the queued jobs are done
+     */
+    public void close() {
+        try {
+            close(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Metrics
+     */
+    public long getSubmittedCount() { return submitted.get(); }
+
+    public long getCompletedCount() { return completed.sum(); }
+
+    public long getFailedCount() { return failed.sum(); }
+
+    /*
+     * Number of jobs waiting in the queue
+     */
+    public int getQueueLength() {
+        return capacity - slots.availablePermits();
+    }
+
+    /*
+     * Average time spent in the queue and solving, in nanoseconds
+     */
+    public long getMeanWaitNanos() {
+        long n = completed.sum();
+        return n == 0 ? 0 : waitTime.sum() / n;
+    }
+
+    public long getMeanSolveNanos() {
+        long n = completed.sum();
+        return n == 0 ? 0 : solveTime.sum() / n;
+    }
+
+    /*
+     * Completed jobs per second since the solver was created
+     */
+    public double getThroughput() {
+        long elapsed = System.nanoTime() - started;
+        return elapsed <= 0 ? 0 : completed.sum() * 1e9 / elapsed;
+    }
+
+    public String toString() {
+        return String.format("BatchSolver(completed: %d, failed: %d, queued: %d, %.1f jobs/s, wait: %d ns, solve: %d ns)",
+                             getCompletedCount(), getFailedCount(), getQueueLength(), getThroughput(),
+                             getMeanWaitNanos(), getMeanSolveNanos());
+    }
+}
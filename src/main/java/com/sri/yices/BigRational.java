@@ -2,15 +2,99 @@ package com.sri.yices;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Objects;
+import java.math.MathContext;
 
 /**
- * Minimal implementation of rationals so that we can get them out of
- * Yices. We just use two pairs of bigIntegers.
+ * Rational numbers so that we can get them in and out of Yices.
+ *
+ * A rational is stored as a pair of longs if the numerator and denominator
+ * fit in 64 bits, and as a pair of BigIntegers otherwise. The denominator
+ * is always positive.
+ *
+ * Common factors are removed lazily: arithmetic operations don't compute
+ * gcds. The normalized form is computed when it's needed (by the accessors,
+ * equals, hashCode, toString) and kept so that it's computed only once.
+ *
+ * Small integers are interned: valueOf(n) returns the same object for
+ * -128 <= n <= 1024.
  */
-public class BigRational {
-    private BigInteger numerator;
-    private BigInteger denominator;
+public class BigRational extends Number implements Comparable<BigRational> {
+    private static final long serialVersionUID = 2L;
+
+    /*
+     * Small form: num/den (used if bnum == null)
+     * Large form: bnum/bden
+     * In both cases the denominator is positive.
+     */
+    private final long num;
+    private final long den;
+    private final BigInteger bnum;
+    private final BigInteger bden;
+
+    /*
+     * Normalized form of this rational (this if it's already normalized)
+     */
+    private transient volatile BigRational canonical;
+
+    /*
+     * Results of large operations are normalized eagerly when they get bigger than this
+     */
+    static private final int MAX_UNREDUCED_BITS = 512;
+
+    /*
+     * Interned values
+     */
+    static private final int CACHE_LOW = -128;
+    static private final int CACHE_HIGH = 1024;
+    static private final BigRational[] cache = new BigRational[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = CACHE_LOW; i <= CACHE_HIGH; i++) {
+            cache[i - CACHE_LOW] = new BigRational(i, 1L, true);
+        }
+    }
+
+    public static final BigRational ZERO = valueOf(0);
+    public static final BigRational ONE = valueOf(1);
+    public static final BigRational MINUS_ONE = valueOf(-1);
+
+    static private final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+    /*
+     * Small rational: d must be positive
+     */
+    private BigRational(long n, long d, boolean reduced) {
+        num = n;
+        den = d;
+        bnum = null;
+        bden = null;
+        if (reduced) canonical = this;
+    }
+
+    /*
+     * Rational n/d: use the small form if possible
+     */
+    private BigRational(BigInteger n, BigInteger d, boolean reduced) {
+        if (d.signum() == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (d.signum() < 0) {
+            n = n.negate();
+            d = d.negate();
+        }
+        if (n.bitLength() < 64 && d.bitLength() < 64) {
+            num = n.longValue();
+            den = d.longValue();
+            bnum = null;
+            bden = null;
+        } else {
+            num = 0;
+            den = 0;
+            bnum = n;
+            bden = d;
+        }
+        if (reduced || d.equals(BigInteger.ONE)) canonical = this;
+    }
 
     /**
      * Constructor
@@ -18,14 +102,10 @@ public class BigRational {
      * @param den = array of bytes for the denominator
      * @throws ArithmeticException if the denominator is zero
      *
-     * This constructor does not try to remove common factors.
+     * Common factors are removed only when needed.
      */
     public BigRational(byte[] num, byte[] den) {
-        numerator = new BigInteger(num);
-        denominator = new BigInteger(den);
-        if (denominator.equals(BigInteger.ZERO)) {
-            throw new ArithmeticException("Division by zero");
-        }
+        this(new BigInteger(num), new BigInteger(den), false);
     }
 
     /**
@@ -34,36 +114,33 @@ public class BigRational {
      * the denominator is set to 1.
      */
     public BigRational(byte[] num) {
-        numerator = new BigInteger(num);
-        denominator = BigInteger.ONE;
+        this(new BigInteger(num), BigInteger.ONE, true);
     }
 
     /**
      * Constructor from BigIntegers
      */
     public BigRational(BigInteger num, BigInteger den) {
-        if (den.equals(BigInteger.ZERO)) {
-            throw new ArithmeticException("Division by zero");
-        }
-        numerator = num;
-        denominator = den;
+        this(num, den, false);
     }
 
     /**
      * Constructor from a String
      */
     public BigRational(String s) {
+        this(parseNum(s), parseDen(s), s.indexOf('/') < 0);
+    }
+
+    private static BigInteger parseNum(String s) {
         int i = s.indexOf('/');
-        if (i < 0) {
-            numerator = new BigInteger(s);
-            denominator = BigInteger.ONE;
-        } else if (i+1 < s.length()) {
-            numerator = new BigInteger(s.substring(0,i));
-            denominator = new BigInteger(s.substring(i+1));
-            normalize();
-        } else {
-            throw new NumberFormatException();
-        }
+        return new BigInteger(i < 0 ? s : s.substring(0, i));
+    }
+
+    private static BigInteger parseDen(String s) {
+        int i = s.indexOf('/');
+        if (i < 0) return BigInteger.ONE;
+        if (i+1 == s.length()) throw new NumberFormatException();
+        return new BigInteger(s.substring(i+1));
     }
 
     /**
@@ -72,109 +149,332 @@ public class BigRational {
     static private final BigInteger ten = BigInteger.valueOf(10);
 
     public BigRational(BigDecimal x) {
+        this(decimalNum(x), decimalDen(x), x.scale() < 0);
+    }
+
+    // x is u/10^n where u = unscaled value and n = scale
+    private static BigInteger decimalNum(BigDecimal x) {
         BigInteger u = x.unscaledValue();
         int n = x.scale();
-        // x is u/10^n
-        if (n >= 0) {
-            numerator = u;
-            denominator = ten.pow(n);
-        } else {
-            // -n could overflow so we compute 10 * 10^(-(n+1))
-            n ++;
-            numerator = u.multiply(ten.multiply(ten.pow(-n))); //  u * 10^-n
-            denominator = BigInteger.ONE;
+        if (n >= 0) return u;
+        // -n could overflow so we compute 10 * 10^(-(n+1))
+        n ++;
+        return u.multiply(ten.multiply(ten.pow(-n))); //  u * 10^-n
+    }
+
+    private static BigInteger decimalDen(BigDecimal x) {
+        int n = x.scale();
+        return n >= 0 ? ten.pow(n) : BigInteger.ONE;
+    }
+
+    /**
+     * Factories: these return interned objects for small integers
+     */
+    public static BigRational valueOf(long n) {
+        if (n >= CACHE_LOW && n <= CACHE_HIGH) {
+            return cache[(int) n - CACHE_LOW];
+        }
+        return new BigRational(n, 1L, true);
+    }
+
+    public static BigRational valueOf(long n, long d) {
+        if (d == 0) throw new ArithmeticException("Division by zero");
+        if (d < 0) {
+            if (n == Long.MIN_VALUE || d == Long.MIN_VALUE) {
+                return new BigRational(BigInteger.valueOf(n), BigInteger.valueOf(d));
+            }
+            n = -n;
+            d = -d;
+        }
+        return d == 1 || n == 0 ? valueOf(n) : new BigRational(n, d, false);
+    }
+
+    public static BigRational valueOf(BigInteger n) {
+        return n.bitLength() < 64 ? valueOf(n.longValue()) : new BigRational(n, BigInteger.ONE);
+    }
+
+    /*
+     * Rational n/d from a large operation: d must be positive
+     */
+    private static BigRational make(BigInteger n, BigInteger d) {
+        if (d.equals(BigInteger.ONE) || n.signum() == 0) return valueOf(n);
+        BigRational r = new BigRational(n, d);
+        if (n.bitLength() + d.bitLength() > MAX_UNREDUCED_BITS) {
+            r = r.canonical();
+        }
+        return r;
+    }
+
+    private boolean isSmall() {
+        return bnum == null;
+    }
+
+    /*
+     * Parts as BigIntegers (not normalized)
+     */
+    private BigInteger bigNum() {
+        return bnum == null ? BigInteger.valueOf(num) : bnum;
+    }
+
+    private BigInteger bigDen() {
+        return bden == null ? BigInteger.valueOf(den) : bden;
+    }
+
+    /*
+     * Normalized form of this
+     */
+    private BigRational canonical() {
+        BigRational c = canonical;
+        if (c == null) {
+            c = reduce();
+            canonical = c;
         }
+        return c;
+    }
+
+    private BigRational reduce() {
+        if (isSmall() && num != Long.MIN_VALUE) {
+            long g = gcd(Math.abs(num), den);
+            if (g == 1) return this;
+            return den == g ? valueOf(num / g) : new BigRational(num / g, den / g, true);
+        }
+        BigInteger n = bigNum();
+        BigInteger d = bigDen();
+        BigInteger g = n.gcd(d);
+        if (g.equals(BigInteger.ONE) && ! isSmall()) return this;
+        n = n.divide(g);
+        d = d.divide(g);
+        if (d.equals(BigInteger.ONE)) return valueOf(n);
+        return new BigRational(n, d, true);
+    }
+
+    /*
+     * gcd of a >= 0 and b > 0
+     */
+    private static long gcd(long a, long b) {
+        while (a != 0) {
+            long r = b % a;
+            b = a;
+            a = r;
+        }
+        return b;
     }
 
     /**
-     * Accessors
+     * Accessors: these return the normalized numerator and denominator
      */
     public BigInteger getDenominator() {
-        return denominator;
+        return canonical().bigDen();
     }
 
     public BigInteger getNumerator() {
-        return numerator;
+        return canonical().bigNum();
     }
 
     public boolean isInteger() {
-        return denominator.compareTo(BigInteger.ONE) == 0;
+        BigRational c = canonical();
+        return c.isSmall() ? c.den == 1 : c.bden.equals(BigInteger.ONE);
     }
 
     public boolean fitsLong() {
-        return isInteger() && numerator.bitLength() <= 63;
+        BigRational c = canonical();
+        return c.isSmall() && c.den == 1;
     }
 
     public boolean fitsInt() {
-        return isInteger() && numerator.bitLength() <= 31;
+        BigRational c = canonical();
+        return c.isSmall() && c.den == 1 && c.num == (int) c.num;
+    }
+
+    public int signum() {
+        return isSmall() ? Long.signum(num) : bnum.signum();
     }
 
     /**
-     * Round num/den to a BigInteger
+     * Round num/den to a BigInteger (toward zero)
      */
     public BigInteger toInteger()  {
-        return numerator.divide(denominator);
+        if (isSmall()) return BigInteger.valueOf(num / den);
+        return bnum.divide(bden);
     }
 
+    /**
+     * Integer part (rounded toward zero) as a long or int.
+     * As in BigInteger, only the low-order bits are kept if it doesn't fit.
+     */
     public long longValue() {
-        return numerator.longValueExact();
+        if (isSmall()) return num / den;
+        return toInteger().longValue();
     }
 
     public int intValue() {
-        return numerator.intValueExact();
+        if (isSmall()) return (int) (num / den);
+        return toInteger().intValue();
+    }
+
+    /**
+     * Integer part (rounded toward zero) as a long or int
+     * @throws ArithmeticException if it doesn't fit
+     */
+    public long longValueExact() {
+        if (isSmall()) return num / den;
+        return toInteger().longValueExact();
+    }
+
+    public int intValueExact() {
+        return toInteger().intValueExact();
     }
 
     public double doubleValue() {
-        // could use something better here.
-        return numerator.doubleValue()/denominator.doubleValue();
+        if (isSmall()) return (double) num / (double) den;
+        return new BigDecimal(bnum).divide(new BigDecimal(bden), MathContext.DECIMAL64).doubleValue();
     }
 
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    /**
+     * Arithmetic: all operations return a new rational (or an interned one).
+     * They use long arithmetic when the operands are small and there's no overflow.
+     */
+    public BigRational add(BigRational r) {
+        if (isSmall() && r.isSmall()) {
+            try {
+                if (den == r.den) {
+                    return valueOf(Math.addExact(num, r.num), den);
+                }
+                long n = Math.addExact(Math.multiplyExact(num, r.den), Math.multiplyExact(r.num, den));
+                return valueOf(n, Math.multiplyExact(den, r.den));
+            } catch (ArithmeticException e) {
+                // overflow
+            }
+        }
+        return make(bigNum().multiply(r.bigDen()).add(r.bigNum().multiply(bigDen())), bigDen().multiply(r.bigDen()));
+    }
+
+    public BigRational sub(BigRational r) {
+        return add(r.negate());
+    }
+
+    public BigRational mul(BigRational r) {
+        if (isSmall() && r.isSmall()) {
+            try {
+                return valueOf(Math.multiplyExact(num, r.num), Math.multiplyExact(den, r.den));
+            } catch (ArithmeticException e) {
+                // overflow
+            }
+        }
+        return make(bigNum().multiply(r.bigNum()), bigDen().multiply(r.bigDen()));
+    }
+
+    /**
+     * @throws ArithmeticException if r is zero
+     */
+    public BigRational div(BigRational r) {
+        if (r.signum() == 0) throw new ArithmeticException("Division by zero");
+        if (isSmall() && r.isSmall()) {
+            try {
+                return valueOf(Math.multiplyExact(num, r.den), Math.multiplyExact(den, r.num));
+            } catch (ArithmeticException e) {
+                // overflow
+            }
+        }
+        BigInteger n = bigNum().multiply(r.bigDen());
+        BigInteger d = bigDen().multiply(r.bigNum());
+        if (d.signum() < 0) {
+            n = n.negate();
+            d = d.negate();
+        }
+        return make(n, d);
+    }
+
+    public BigRational negate() {
+        if (isSmall() && num != Long.MIN_VALUE) {
+            return den == 1 ? valueOf(-num) : new BigRational(-num, den, canonical == this);
+        }
+        return make(bigNum().negate(), bigDen());
+    }
+
+    public BigRational abs() {
+        return signum() < 0 ? negate() : this;
+    }
+
+    public int compareTo(BigRational r) {
+        if (isSmall() && r.isSmall()) {
+            if (den == r.den) return Long.compare(num, r.num);
+            try {
+                return Long.compare(Math.multiplyExact(num, r.den), Math.multiplyExact(r.num, den));
+            } catch (ArithmeticException e) {
+                // overflow
+            }
+        }
+        return bigNum().multiply(r.bigDen()).compareTo(r.bigNum().multiply(bigDen()));
+    }
+
+    public BigRational min(BigRational r) {
+        return compareTo(r) <= 0 ? this : r;
+    }
+
+    public BigRational max(BigRational r) {
+        return compareTo(r) >= 0 ? this : r;
+    }
 
     /**
      * Get numerator and denominator as arrays of bytes
      */
     protected byte[] numToBytes() {
-        return numerator.toByteArray();
+        return getNumerator().toByteArray();
     }
 
     protected byte[] denToBytes() {
-        return denominator.toByteArray();
+        return getDenominator().toByteArray();
+    }
+
+    /*
+     * Small form for Yices.mkRationalConstant:
+     * stores num and den in a[0] and a[1] and returns true if this is small
+     */
+    boolean toLongs(long[] a) {
+        if (! isSmall()) return false;
+        a[0] = num;
+        a[1] = den;
+        return true;
     }
 
     /**
      * Convert to a string
      */
     public String toString() {
-	String s = numerator.toString();
-	if (! denominator.equals(BigInteger.ONE)) {
-	    s = s + "/" + denominator.toString();
-	}
-	return s;
+        BigRational c = canonical();
+        if (c.isSmall()) {
+            return c.den == 1 ? Long.toString(c.num) : c.num + "/" + c.den;
+        }
+        return c.bnum.toString() + "/" + c.bden.toString();
     }
 
     /**
-     * Remove common factors and force denominator to be positive
+     * Remove common factors.
+     * Since rationals are normalized lazily, this is not required
+     * but it can be used to compute the normalized form in advance.
      */
     public void normalize() {
-        BigInteger d = numerator.gcd(denominator);
-        if (!d.equals(BigInteger.ONE)) {
-            numerator = numerator.divide(d);
-            denominator = denominator.divide(d);
-        }
-        if (denominator.signum() < 0) {
-            numerator = numerator.negate();
-            denominator = denominator.negate();
-        }
+        canonical();
     }
 
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         BigRational r = (BigRational) obj;
-        return denominator.equals(r.denominator) && numerator.equals(r.numerator);
+        if (isSmall() && r.isSmall() && den == r.den) return num == r.num;
+        return compareTo(r) == 0;
     }
 
     public int hashCode() {
-        return Objects.hash(numerator, denominator);
+        BigRational c = canonical();
+        if (c.isSmall()) {
+            return 31 * Long.hashCode(c.num) + Long.hashCode(c.den);
+        }
+        return 31 * c.bnum.hashCode() + c.bden.hashCode();
     }
 }
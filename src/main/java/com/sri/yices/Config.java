@@ -1,5 +1,7 @@
 package com.sri.yices;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /*
  * Context configuration
  */
@@ -7,24 +9,49 @@ public class Config implements AutoCloseable {
     // pointer to the Yices config_t object
     private long ptr;
 
+    // owner of the pointer: frees it on close or after this object is garbage collected
+    private final Reclaimer.Handle handle;
+
     //<PROFILING>
-    static private long population = 0;
+    static private final LongAdder population = new LongAdder();
+    static private final LongAdder reclaimed = new LongAdder();
 
     /**
      * Returns the count of Config objects that have an unfreed
      * pointer to a Yices shared library object.
      */
     public static long getCensus(){
-        return population;
+        return population.sum();
+    }
+
+    /**
+     * Returns the count of Config objects that were garbage collected
+     * without being closed (their Yices config was freed by the Reclaimer).
+     */
+    public static long getReclaimedCount(){
+        return reclaimed.sum();
     }
     //</PROFILING>
 
+    private static final class Handle extends Reclaimer.Handle {
+        Handle(Config owner, long ptr) {
+            super(owner, ptr);
+            population.increment();
+        }
+
+        protected void dispose(long p, boolean leaked) {
+            Yices.freeConfig(p);
+            population.decrement();
+            if (leaked) reclaimed.increment();
+        }
+    }
+
     /*
      * Default configuration
      */
     public Config () {
         ptr = Yices.newConfig();
-        population++;
+        handle = new Handle(this, ptr);
     }
 
     /*
@@ -38,7 +65,7 @@ public class Config implements AutoCloseable {
             throw new YicesException();
         }
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     /*
@@ -50,11 +77,8 @@ public class Config implements AutoCloseable {
      * close
      */
     public void close() {
-        if (ptr != 0) {
-            Yices.freeConfig(ptr);
-            ptr = 0;
-            population--;
-        }
+        ptr = 0;
+        handle.free();
     }
 
 
@@ -65,6 +89,7 @@ public class Config implements AutoCloseable {
      */
     public void set(String name, String value) throws YicesException {
         int code = Yices.setConfig(ptr, name, value);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
     }
 
@@ -1,8 +1,14 @@
 package com.sri.yices;
 
+import java.nio.IntBuffer;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class for wrapping yices contexts
@@ -13,19 +19,72 @@ public class Context implements AutoCloseable {
      */
     private long ptr;
 
+    /*
+     * owner of the pointer: frees it on close or after this object is garbage collected
+     */
+    private final Reclaimer.Handle handle;
+
+    /*
+     * Used by ContextPool:
+     * - level = number of push() not matched by pop() since the last reset
+     * - minLevel = lowest level reached since the last call to markLevel()
+     * - optionChanges = number of calls to enableOption/disableOption
+     */
+    private int level;
+    private int minLevel;
+    private int optionChanges;
+
     /**
-     * A counter used to prevent memory leaks.
+     * Counters used to detect memory leaks.
      */
-    static private long population = 0;
+    static private final LongAdder population = new LongAdder();
+    static private final LongAdder reclaimed = new LongAdder();
 
     /**
      * Returns the count of Context objects that have an unfreed
      * pointer to a Yices shared library object.
      */
     public static long getCensus(){
-        return population;
+        return population.sum();
+    }
+
+    /**
+     * Returns the count of Context objects that were garbage collected
+     * without being closed (their Yices context was freed by the Reclaimer).
+     */
+    public static long getReclaimedCount(){
+        return reclaimed.sum();
     }
 
+    private static final class Handle extends Reclaimer.Handle {
+        Handle(Context owner, long ptr) {
+            super(owner, ptr);
+            population.increment();
+        }
+
+        protected void dispose(long p, boolean leaked) {
+            if (Profiler.active) {
+                long start = System.nanoTime();
+                Yices.freeContext(p);
+                long finish = System.nanoTime();
+                Profiler.delta("Yices.freeContext", start, finish);
+            } else {
+                Yices.freeContext(p);
+            }
+            population.decrement();
+            if (leaked) reclaimed.increment();
+        }
+    }
+
+    /*
+     * Buffered assertions (null if buffering is disabled):
+     * - buffer contains formulas numbered bufferBase, bufferBase+1, ...
+     * - it's flushed when it has threshold elements
+     */
+    private TermVector buffer;
+    private int threshold;
+    private long bufferBase;
+
     static private final int ERROR_STATUS;
 
     static {
@@ -42,7 +101,7 @@ public class Context implements AutoCloseable {
      */
     public Context() {
         ptr = Yices.newContext(0);
-        population++;
+        handle = new Handle(this, ptr);
     }
 
     /*
@@ -50,9 +109,10 @@ public class Context implements AutoCloseable {
      */
     public Context(Config config) throws YicesException {
         long p = Yices.newContext(config.getPtr());
+        Reclaimer.keepAlive(config);
         if (p == 0) throw new YicesException();
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     /*
@@ -73,7 +133,7 @@ public class Context implements AutoCloseable {
         }
         Yices.freeConfig(config);
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     /*
@@ -98,27 +158,120 @@ public class Context implements AutoCloseable {
         }
         Yices.freeConfig(config);
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     protected long getPtr() { return ptr; }
 
+    boolean isClosed() { return ptr == 0; }
+
+    int getLevel() { return level; }
+
+    int getMinLevel() { return minLevel; }
+
+    void markLevel() { minLevel = level; }
+
+    int getOptionChanges() { return optionChanges; }
+
     /*
      * Close: free the Yices data structure
      */
     public void close() {
-	if (ptr != 0) {
-            if (Profiler.enabled) {
+        buffer = null;
+        ptr = 0;
+        handle.free();
+    }
+
+    /*
+     * Buffered mode: assertFormula and assertFormulas store the formulas in a buffer
+     * that's passed to Yices in a single call when it contains threshold formulas,
+     * and before check, push, pop, getModel, and assertBlockingClause.
+     * - threshold <= 0 flushes the buffer and disables buffering
+     * - errors are reported when the buffer is flushed, as an AssertionException
+     *   that gives the index of the formula that failed
+     */
+    public void setBuffering(int threshold) throws YicesException {
+        flush();
+        if (threshold <= 0) {
+            buffer = null;
+        } else {
+            if (buffer == null) {
+                buffer = new TermVector(threshold);
+                bufferBase = 0;
+            }
+            this.threshold = threshold;
+        }
+    }
+
+    public boolean isBuffering() {
+        return buffer != null;
+    }
+
+    /*
+     * Number of formulas waiting in the buffer
+     */
+    public int getBufferedCount() {
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    /*
+     * Assert the buffered formulas
+     * - the buffer is empty after this call, even if there's an error
+     */
+    public void flush() throws AssertionException {
+        TermVector b = buffer;
+        if (b == null || b.isEmpty()) return;
+        long first = bufferBase;
+        int n = b.size();
+        bufferBase += n;
+        int code;
+        try {
+            if (Profiler.active) {
                 long start = System.nanoTime();
-                Yices.freeContext(ptr);
+                code = Yices.assertFormulasPrefix(ptr, b.data(), n);
                 long finish = System.nanoTime();
-                Profiler.delta("Yices.freeContext", start, finish);
+                Profiler.delta("Yices.assertFormulas", start, finish, true);
             } else {
-                Yices.freeContext(ptr);
+                code = Yices.assertFormulasPrefix(ptr, b.data(), n);
+            }
+            Reclaimer.keepAlive(this);
+            if (code < 0) {
+                throw bufferError(b, first);
+            }
+        } finally {
+            b.clear();
+        }
+    }
+
+    /*
+     * Exception for a failed flush: look for the first formula that's not Boolean.
+     * If they're all Boolean, assert the formulas one by one to find the first one
+     * that fails with the same error (e.g., a nonlinear constraint in a linear
+     * logic). The context should be reset after such errors anyway.
+     */
+    private AssertionException bufferError(TermVector b, long first) {
+        int n = b.size();
+        int code = Yices.errorCode();
+        String message = Yices.errorString();
+        int bad = -1;
+        for (int i = 0; i < n; i++) {
+            if (! Yices.termIsBool(b.get(i))) {
+                bad = i;
+                break;
+            }
+        }
+        if (bad < 0) {
+            for (int i = 0; i < n; i++) {
+                if (Yices.assertFormula(ptr, b.get(i)) < 0 && Yices.errorCode() == code) {
+                    bad = i;
+                    break;
+                }
             }
-	    ptr = 0;
-            population--;
-	}
+            Reclaimer.keepAlive(this);
+        }
+        Yices.resetError();
+        if (bad < 0) return new AssertionException(first, first + n - 1, -1, -1, code, message);
+        return new AssertionException(first, first + n - 1, first + bad, b.get(bad), code, message);
     }
 
     /*
@@ -126,11 +279,15 @@ public class Context implements AutoCloseable {
      */
     public void enableOption(String option) throws YicesException {
         int code = Yices.contextEnableOption(ptr, option);
+        Reclaimer.keepAlive(this);
+        optionChanges ++;
         if (code < 0) throw new YicesException();
     }
 
     public void disableOption(String option) throws YicesException {
         int code = Yices.contextDisableOption(ptr, option);
+        Reclaimer.keepAlive(this);
+        optionChanges ++;
         if (code < 0) throw new YicesException();
     }
 
@@ -138,7 +295,9 @@ public class Context implements AutoCloseable {
      * Get the status
      */
     public Status getStatus() {
-        return Status.idToStatus(Yices.contextStatus(ptr));
+        int code = Yices.contextStatus(ptr);
+        Reclaimer.keepAlive(this);
+        return Status.idToStatus(code);
     }
 
     /*
@@ -146,17 +305,31 @@ public class Context implements AutoCloseable {
      * - push and pop may fail if the context does not support them
      */
     public void reset() {
+        if (buffer != null) {
+            bufferBase += buffer.size();
+            buffer.clear();
+        }
         Yices.resetContext(ptr);
+        Reclaimer.keepAlive(this);
+        level = 0;
+        minLevel = 0;
     }
 
     public void push() throws YicesException {
+        flush();
         int code = Yices.push(ptr);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
+        level ++;
     }
 
     public void pop() throws YicesException {
+        flush();
         int code = Yices.pop(ptr);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
+        level --;
+        if (level < minLevel) minLevel = level;
     }
 
     /*
@@ -164,14 +337,16 @@ public class Context implements AutoCloseable {
      */
     public void stopSearch() {
         Yices.stopSearch(ptr);
+        Reclaimer.keepAlive(this);
     }
 
     /*
      * Get a model
      */
     public Model getModel() throws YicesException {
+        flush();
         long model = 0;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             model = Yices.getModel(ptr, 1);
             long finish = System.nanoTime();
@@ -179,6 +354,7 @@ public class Context implements AutoCloseable {
         } else {
             model = Yices.getModel(ptr, 1);
         }
+        Reclaimer.keepAlive(this);
         if (model == 0) throw new YicesException();
         return new Model(model);
     }
@@ -187,8 +363,13 @@ public class Context implements AutoCloseable {
      * Assert a formula f
      */
     public void assertFormula(int f) throws YicesException {
+        if (buffer != null) {
+            buffer.add(f);
+            if (buffer.size() >= threshold) flush();
+            return;
+        }
         int code;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             code = Yices.assertFormula(ptr, f);
             long finish = System.nanoTime();
@@ -196,6 +377,7 @@ public class Context implements AutoCloseable {
         } else {
             code = Yices.assertFormula(ptr, f);
         }
+        Reclaimer.keepAlive(this);
         if (code < 0) {
             throw new YicesException();
         }
@@ -205,8 +387,13 @@ public class Context implements AutoCloseable {
      * Assert an array of formulas a[]
      */
     public void assertFormulas(int[] a) throws YicesException {
+        if (buffer != null) {
+            buffer.addAll(a);
+            if (buffer.size() >= threshold) flush();
+            return;
+        }
         int code;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             code = Yices.assertFormulas(ptr, a);
             long finish = System.nanoTime();
@@ -214,6 +401,7 @@ public class Context implements AutoCloseable {
         } else {
             code = Yices.assertFormulas(ptr, a);
         }
+        Reclaimer.keepAlive(this);
         if (code < 0) {
             throw new YicesException();
         }
@@ -236,11 +424,57 @@ public class Context implements AutoCloseable {
         assertFormulas(a);
     }
 
+    /*
+     * Assert a vector of formulas
+     */
+    public void assertFormulas(TermVector v) throws YicesException {
+        if (buffer != null) {
+            buffer.addAll(v);
+            if (buffer.size() >= threshold) flush();
+            return;
+        }
+        int code;
+        if (Profiler.active) {
+            long start = System.nanoTime();
+            code = Yices.assertFormulasPrefix(ptr, v.data(), v.size());
+            long finish = System.nanoTime();
+            Profiler.delta("Yices.assertFormulas", start, finish, true);
+        } else {
+            code = Yices.assertFormulasPrefix(ptr, v.data(), v.size());
+        }
+        Reclaimer.keepAlive(this);
+        if (code < 0) {
+            throw new YicesException();
+        }
+    }
+
+    /*
+     * Assert the formulas stored in a direct buffer (between position and limit)
+     */
+    public void assertFormulas(IntBuffer b) throws YicesException {
+        flush();
+        int code;
+        if (Profiler.active) {
+            long start = System.nanoTime();
+            code = Yices.directAssertFormulas(ptr, Yices.checkDirect(b), b.position(), b.remaining());
+            long finish = System.nanoTime();
+            Profiler.delta("Yices.directAssertFormulas", start, finish, true);
+        } else {
+            code = Yices.directAssertFormulas(ptr, Yices.checkDirect(b), b.position(), b.remaining());
+        }
+        Reclaimer.keepAlive(this);
+        if (code < 0) {
+            throw new YicesException();
+        }
+    }
+
     /*
      * Assert a blocking clause
      */
     public void assertBlockingClause() throws YicesException {
+        flush();
         int code = Yices.assertBlockingClause(ptr);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
     }
 
@@ -249,7 +483,7 @@ public class Context implements AutoCloseable {
      */
     private static int doCheck(long ptr, long p) throws YicesException {
         int code;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             code = Yices.checkContext(ptr, p);
             long finish = System.nanoTime();
@@ -260,8 +494,11 @@ public class Context implements AutoCloseable {
         return code;
     }
 
-    private int doCheck(long p) throws YicesException {
-        int code = doCheck(ptr, p);
+    private int doCheck(Parameters p) throws YicesException {
+        flush();
+        int code = doCheck(ptr, p == null ? 0 : p.getPtr());
+        Reclaimer.keepAlive(this);
+        Reclaimer.keepAlive(p);
         if (code == ERROR_STATUS) throw new YicesException();
         return code;
     }
@@ -277,10 +514,93 @@ public class Context implements AutoCloseable {
      * Call the solver, use the given parameter set.
      */
     public Status check(Parameters p) throws YicesException {
-        int code = doCheck(p == null ? 0 : p.getPtr());
+        int code = doCheck(p);
         return Status.idToStatus(code);
     }
 
+    /*
+     * Future returned by checkAsync: cancelling it stops the search.
+     *
+     * A cancelled future is done at once, while the check may still be running on
+     * the executor thread until the stop request takes effect. whenTerminated()
+     * completes only after the check has returned (or was skipped): the context
+     * can be used, reset, or closed once it is done.
+     */
+    public static final class CheckFuture extends CompletableFuture<Status> {
+        private final Context context;
+        private final CompletableFuture<Void> terminated = new CompletableFuture<Void>();
+        private boolean running;
+
+        CheckFuture(Context context) {
+            this.context = context;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                // repeated until the check returns, in case it's not searching yet
+                Timeouts.stopUntilDone(this::stopContext);
+            }
+            return cancelled;
+        }
+
+        /*
+         * Completes once the native check has returned or won't be called
+         */
+        public CompletableFuture<Void> whenTerminated() {
+            return terminated;
+        }
+
+        private synchronized boolean stopContext() {
+            if (! running) return false;
+            context.stopSearch();
+            return true;
+        }
+
+        private synchronized boolean started() {
+            running = ! isDone();
+            return running;
+        }
+
+        private void finished() {
+            synchronized (this) {
+                running = false;
+            }
+            terminated.complete(null);
+        }
+    }
+
+    /*
+     * Call the solver on a thread of executor, use the given parameter set (p may be null).
+     * - the future completes with the status, or exceptionally with a YicesException
+     * - cancelling the future stops the search (stopSearch is repeated until the check
+     *   returns, so a search that was about to start is stopped too),
+     *   the context is then left in status INTERRUPTED
+     * - the context must not be used by other threads until future.whenTerminated()
+     *   is done (after cancel, the future itself is done before the check returns)
+     */
+    public CheckFuture checkAsync(Parameters p, Executor executor) {
+        flush();
+        final CheckFuture future = new CheckFuture(this);
+        try {
+            executor.execute(() -> {
+                    try {
+                        if (future.started()) {
+                            future.complete(check(p));
+                        }
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    } finally {
+                        future.finished();
+                    }
+                });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            future.finished();
+        }
+        return future;
+    }
+
     /*
      * Call the solver with the given assumptions.
      */
@@ -289,9 +609,26 @@ public class Context implements AutoCloseable {
         return checkWithAssumptions(p, a);
     }
 
+    public Status checkWithAssumptions(Parameters p, TermVector assumptions){
+        flush();
+        int code;
+        if (Profiler.active) {
+            long start = System.nanoTime();
+            code = Yices.checkContextWithAssumptionsPrefix(ptr, p == null ? 0 : p.getPtr(), assumptions.data(), assumptions.size());
+            long finish = System.nanoTime();
+            Profiler.delta("Yices.checkContextWithAssumptions", start, finish);
+        } else {
+            code = Yices.checkContextWithAssumptionsPrefix(ptr, p == null ? 0 : p.getPtr(), assumptions.data(), assumptions.size());
+        }
+        Reclaimer.keepAlive(this);
+        Reclaimer.keepAlive(p);
+        return Status.idToStatus(code);
+    }
+
     public Status checkWithAssumptions(Parameters p, int[] assumptions){
+        flush();
         int code;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             code = Yices.checkContextWithAssumptions(ptr, p == null ? 0 : p.getPtr(), assumptions);
             long finish = System.nanoTime();
@@ -299,12 +636,14 @@ public class Context implements AutoCloseable {
         } else {
             code = Yices.checkContextWithAssumptions(ptr, p == null ? 0 : p.getPtr(), assumptions);
         }
+        Reclaimer.keepAlive(this);
+        Reclaimer.keepAlive(p);
         return Status.idToStatus(code);
     }
 
     public int[] getUnsatCore(){
         int[] retval;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             retval = Yices.getUnsatCore(ptr);
             long finish = System.nanoTime();
@@ -312,71 +651,83 @@ public class Context implements AutoCloseable {
         } else {
             retval = Yices.getUnsatCore(ptr);
         }
+        Reclaimer.keepAlive(this);
         return retval;
     }
 
     /*
-     * Simple watchdog to stop the search after a timeout
+     * Timed checks:
+     * - the search is stopped by the shared timer in Timeouts when the time runs out,
+     *   then the check returns Status.INTERRUPTED
+     * - a deadline can be reused across several checks: each check gets the time
+     *   that's left; if the deadline has already passed, the check returns
+     *   Status.INTERRUPTED without calling the solver
+     * - in that case the context is not touched: getStatus() still gives the status of
+     *   the previous check (and its model is still available), so callers must use the
+     *   status returned by check, not getStatus()
      */
-    private static class WatchDog implements Runnable {
-        private long ctx;
-        private int timeout; // in seconds
-        private volatile boolean stopped;
-        private Thread thread;
-
-        WatchDog(long ctx, int timeout) {
-            if (timeout < 1) timeout = 1;
-            this.ctx = ctx;
-            this.timeout = timeout;
-            stopped = false;
-            thread = null;
+    private Status doCheckWithTimeout(Parameters p, long nanos) throws YicesException {
+        flush();
+        if (nanos <= 0) return Status.INTERRUPTED;
+        Timeouts.Alarm alarm = Timeouts.arm(this, nanos);
+        int code;
+        try {
+            code = doCheck(ptr, p == null ? 0 : p.getPtr());
+        } finally {
+            alarm.disarm();
         }
+        Reclaimer.keepAlive(this);
+        Reclaimer.keepAlive(p);
+        if (code == ERROR_STATUS) throw new YicesException();
+        return Status.idToStatus(code);
+    }
 
-        public void run() {
-            try {
-                TimeUnit.SECONDS.sleep(timeout);
-            } catch (InterruptedException e) {
-                // don't do anything
-            }
-            if (! stopped) {
-                // stop the context
-                Yices.stopSearch(ctx);
-            }
+    private Status doCheckWithTimeout(Parameters p, int[] assumptions, long nanos) throws YicesException {
+        if (nanos <= 0) return Status.INTERRUPTED;
+        Timeouts.Alarm alarm = Timeouts.arm(this, nanos);
+        try {
+            return checkWithAssumptions(p, assumptions);
+        } finally {
+            alarm.disarm();
         }
+    }
 
-        public synchronized void stop() {
-            stopped = true;
-            if (thread != null && thread.isAlive()) {
-               thread.interrupt();
-               thread = null;
-            }
-        }
+    /*
+     * Check with a timeout in seconds (at least one second)
+     */
+    public Status check(int timeout) throws YicesException {
+        return check(null, timeout);
+    }
 
-        public synchronized void start() {
-            stopped = false;
-            thread =  new Thread(this);
-            thread.start();
-        }
+    public Status check(Parameters p, int timeout) throws YicesException {
+        if (timeout < 1) timeout = 1;
+        return doCheckWithTimeout(p, TimeUnit.SECONDS.toNanos(timeout));
     }
 
     /*
-     * Check with timeout
+     * Check with a timeout of any granularity
      */
-    private Status doCheckWithTimeout(long p, int timeout) throws YicesException {
-        WatchDog watchDog = new WatchDog(ptr, timeout);
-        watchDog.start();
-        int code = doCheck(ptr, p);
-        watchDog.stop();
-        if (code < 0) throw new YicesException();
-        return Status.idToStatus(code);
+    public Status check(Parameters p, long timeout, TimeUnit unit) throws YicesException {
+        return doCheckWithTimeout(p, unit.toNanos(timeout));
     }
 
-    public Status check(int timeout) throws YicesException {
-        return doCheckWithTimeout(0, timeout);
+    public Status check(Parameters p, Duration timeout) throws YicesException {
+        return doCheckWithTimeout(p, timeout.toNanos());
     }
 
-    public Status check(Parameters p, int timeout) throws YicesException {
-        return doCheckWithTimeout(p.getPtr(), timeout);
+    /*
+     * Check that must complete before deadline d
+     */
+    public Status check(Parameters p, Deadline d) throws YicesException {
+        return doCheckWithTimeout(p, d.remainingNanos());
+    }
+
+    public Status checkWithAssumptions(Parameters p, int[] assumptions, Duration timeout) {
+        return doCheckWithTimeout(p, assumptions, timeout.toNanos());
+    }
+
+    public Status checkWithAssumptions(Parameters p, int[] assumptions, Deadline d) {
+        return doCheckWithTimeout(p, assumptions, d.remainingNanos());
     }
 
  }
@@ -0,0 +1,422 @@
+package com.sri.yices;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pre-built contexts.
+ *
+ * Building a context for a given logic and mode means creating a config,
+ * a context, then freeing the config. The pool keeps contexts that have been
+ * returned so that they can be handed out again:
+ *
+ *   try (ContextPool.Lease lease = pool.acquire(key)) {
+ *       Context ctx = lease.context();
+ *       ...
+ *   }
+ *
+ * - contexts are grouped by Key: logic, mode, configuration parameters and
+ *   context options
+ * - a context is reset when it's returned to the pool, or with the POP_TO_BASE
+ *   policy, push-pop contexts are popped back to their base level (see ReleasePolicy)
+ * - contexts that were closed by the borrower are dropped, and contexts whose
+ *   options were changed during the lease are closed: they no longer match their key.
+ *   Buffering is turned off before a context goes back to the pool.
+ * - at most maxIdle contexts are kept (all keys together), extra contexts are closed
+ * - contexts that stayed idle for longer than the idle timeout are closed
+ *
+ * The pool is thread safe but a leased context must be used by one thread
+ * at a time. Idle contexts are closed on the threads that call acquire,
+ * release or evictIdle, never from a background thread.
+ *
+ * The pool does not hold the leased contexts. If a lease is dropped without
+ * being closed, its context is freed by the garbage collector like any other
+ * context, so Context.getCensus() stays accurate.
+ */
+public final class ContextPool implements AutoCloseable {
+
+    /**
+     * Description of the contexts in a group.
+     * Keys are immutable: config and enable return a new key.
+     */
+    public static final class Key {
+        private final String logic;
+        private final String mode;
+        private final SortedMap<String, String> params;
+        private final SortedSet<String> options;
+
+        private Key(String logic, String mode, SortedMap<String, String> params, SortedSet<String> options) {
+            this.logic = logic;
+            this.mode = mode;
+            this.params = params;
+            this.options = options;
+        }
+
+        /*
+         * Key for the given logic and mode (either can be null for the defaults)
+         */
+        public Key(String logic, String mode) {
+            this(logic, mode, Collections.<String, String>emptySortedMap(), Collections.<String>emptySortedSet());
+        }
+
+        /*
+         * Same key with configuration parameter name set to value
+         */
+        public Key config(String name, String value) {
+            TreeMap<String, String> p = new TreeMap<String, String>(params);
+            p.put(name, value);
+            return new Key(logic, mode, Collections.unmodifiableSortedMap(p), options);
+        }
+
+        /*
+         * Same key with context option enabled
+         */
+        public Key enable(String option) {
+            TreeSet<String> o = new TreeSet<String>(options);
+            o.add(option);
+            return new Key(logic, mode, params, Collections.unmodifiableSortedSet(o));
+        }
+
+        public String getLogic() { return logic; }
+
+        public String getMode() { return mode; }
+
+        public Map<String, String> getConfig() { return params; }
+
+        /*
+         * The default mode is push-pop
+         */
+        boolean supportsPushPop() {
+            return mode == null || mode.equals("push-pop") || mode.equals("interactive");
+        }
+
+        /*
+         * Build a context
+         */
+        Context newContext() throws YicesException {
+            Context ctx;
+            try (Config config = logic == null ? new Config() : new Config(logic)) {
+                if (mode != null) config.set("mode", mode);
+                for (Map.Entry<String, String> e : params.entrySet()) {
+                    config.set(e.getKey(), e.getValue());
+                }
+                ctx = new Context(config);
+            }
+            try {
+                for (String o : options) {
+                    ctx.enableOption(o);
+                }
+            } catch (YicesException e) {
+                ctx.close();
+                throw e;
+            }
+            return ctx;
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Key k = (Key) obj;
+            return eq(logic, k.logic) && eq(mode, k.mode) && params.equals(k.params) && options.equals(k.options);
+        }
+
+        private static boolean eq(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        public int hashCode() {
+            int h = logic == null ? 0 : logic.hashCode();
+            h = 31 * h + (mode == null ? 0 : mode.hashCode());
+            h = 31 * h + params.hashCode();
+            return 31 * h + options.hashCode();
+        }
+
+        public String toString() {
+            return "Key(" + logic + ", " + mode + ", " + params + ", " + options + ")";
+        }
+    }
+
+    /**
+     * How contexts are cleaned up when they are returned.
+     * - RESET: the context is reset
+     * - POP_TO_BASE: for contexts that support push and pop, the pool pushes
+     *   a level before handing out the context and pops back to the base level
+     *   when it's returned. This is cheaper than a reset when the borrower only
+     *   added a few assertions to a large context. If the borrower popped below
+     *   the level it was given, or if pop fails, the context is reset.
+     *   Other contexts are reset.
+     */
+    public enum ReleasePolicy { RESET, POP_TO_BASE }
+
+    /**
+     * A context borrowed from the pool. Closing the lease returns the context.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final ContextPool pool;
+        private final Key key;
+        private final int optionChanges; // option changes of the context when it was leased
+        private final boolean pushed;    // true if the pool pushed a level
+        private Context context;
+
+        private Lease(ContextPool pool, Key key, Context context, boolean pushed) {
+            this.pool = pool;
+            this.key = key;
+            this.context = context;
+            this.optionChanges = context.getOptionChanges();
+            this.pushed = pushed;
+        }
+
+        public Key getKey() { return key; }
+
+        public Context context() {
+            if (context == null) throw new IllegalStateException("lease closed");
+            return context;
+        }
+
+        /*
+         * Return the context to the pool
+         */
+        public void close() {
+            Context c = context;
+            if (c != null) {
+                context = null;
+                pool.release(this, c);
+            }
+        }
+
+        /*
+         * Close the context instead of returning it to the pool
+         * (e.g., if it's in a bad state)
+         */
+        public void discard() {
+            Context c = context;
+            if (c != null) {
+                context = null;
+                c.close();
+            }
+        }
+    }
+
+    /*
+     * Idle context and the time it was returned
+     */
+    private static final class Idle {
+        final Context context;
+        final long since;
+
+        Idle(Context context, long since) {
+            this.context = context;
+            this.since = since;
+        }
+    }
+
+    private final int maxIdle;
+    private final long idleTimeout; // in nanoseconds
+    private final ReleasePolicy policy;
+    private final Map<Key, ConcurrentLinkedDeque<Idle>> idle = new ConcurrentHashMap<Key, ConcurrentLinkedDeque<Idle>>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder creationTime = new LongAdder();
+
+    /*
+     * Pool that keeps at most maxIdle contexts, each for at most idleTimeout,
+     * and cleans up returned contexts as specified by policy
+     */
+    public ContextPool(int maxIdle, long idleTimeout, TimeUnit unit, ReleasePolicy policy) {
+        if (maxIdle < 0) throw new IllegalArgumentException("negative maxIdle");
+        this.maxIdle = maxIdle;
+        this.idleTimeout = unit.toNanos(idleTimeout);
+        this.policy = policy;
+    }
+
+    /*
+     * Pool that keeps at most maxIdle contexts, each for at most idleTimeout,
+     * and resets returned contexts
+     */
+    public ContextPool(int maxIdle, long idleTimeout, TimeUnit unit) {
+        this(maxIdle, idleTimeout, unit, ReleasePolicy.RESET);
+    }
+
+    /*
+     * Pool with at most 64 idle contexts, kept for at most one minute
+     */
+    public ContextPool() {
+        this(64, 1, TimeUnit.MINUTES);
+    }
+
+    private ConcurrentLinkedDeque<Idle> group(Key key) {
+        ConcurrentLinkedDeque<Idle> q = idle.get(key);
+        if (q == null) {
+            q = idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<Idle>());
+        }
+        return q;
+    }
+
+    /*
+     * Get a context for key: reuse an idle context if possible, otherwise build one
+     */
+    public Lease acquire(Key key) throws YicesException {
+        if (closed) throw new IllegalStateException("pool closed");
+        maybeSweep();
+        // most recently returned first: the others are more likely to be evicted
+        Idle i = group(key).pollFirst();
+        Context ctx;
+        if (i != null) {
+            idleCount.decrementAndGet();
+            hits.increment();
+            ctx = i.context;
+        } else {
+            misses.increment();
+            long start = System.nanoTime();
+            ctx = key.newContext();
+            creationTime.add(System.nanoTime() - start);
+        }
+        boolean pushed = policy == ReleasePolicy.POP_TO_BASE && key.supportsPushPop();
+        if (pushed) {
+            try {
+                ctx.push();
+            } catch (YicesException e) {
+                ctx.close();
+                throw e;
+            }
+            ctx.markLevel();
+        }
+        return new Lease(this, key, ctx, pushed);
+    }
+
+    public Lease acquire(String logic, String mode) throws YicesException {
+        return acquire(new Key(logic, mode));
+    }
+
+    private void release(Lease lease, Context ctx) {
+        // the borrower closed the context
+        if (ctx.isClosed()) return;
+        // the options no longer match the key
+        if (ctx.getOptionChanges() != lease.optionChanges) {
+            ctx.close();
+            return;
+        }
+        restore(lease, ctx);
+        if (closed || idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            ctx.close();
+            return;
+        }
+        group(lease.key).offerFirst(new Idle(ctx, System.nanoTime()));
+        if (closed) clear();
+        maybeSweep();
+    }
+
+    /*
+     * Bring a returned context back to level 0, without buffering
+     */
+    private static void restore(Lease lease, Context ctx) {
+        if (lease.pushed && ctx.getMinLevel() >= 1) {
+            try {
+                ctx.setBuffering(0);
+                while (ctx.getLevel() > 0) ctx.pop();
+                return;
+            } catch (YicesException e) {
+                Yices.resetError();
+            }
+        }
+        ctx.reset();
+        ctx.setBuffering(0); // the buffer is empty after reset
+    }
+
+    private void maybeSweep() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last >= idleTimeout / 2 && lastSweep.compareAndSet(last, now)) {
+            evictIdle();
+        }
+    }
+
+    /*
+     * Close the contexts that have been idle for longer than the timeout
+     * - return the number of contexts closed
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int n = 0;
+        for (ConcurrentLinkedDeque<Idle> q : idle.values()) {
+            // oldest contexts are at the end
+            Idle i;
+            while ((i = q.peekLast()) != null && now - i.since >= idleTimeout) {
+                if (q.removeLastOccurrence(i)) {
+                    idleCount.decrementAndGet();
+                    i.context.close();
+                    n ++;
+                }
+            }
+        }
+        evictions.add(n);
+        return n;
+    }
+
+    /*
+     * Close all idle contexts
+     */
+    public void clear() {
+        for (ConcurrentLinkedDeque<Idle> q : idle.values()) {
+            Idle i;
+            while ((i = q.pollLast()) != null) {
+                idleCount.decrementAndGet();
+                i.context.close();
+            }
+        }
+    }
+
+    /*
+     * Close the pool: idle contexts are freed, leased contexts are
+     * freed when they are returned
+     */
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    /*
+     * Metrics
+     */
+    public int getIdleCount() { return idleCount.get(); }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+    /*
+     * Total time spent building contexts in nanoseconds
+     */
+    public long getCreationNanos() { return creationTime.sum(); }
+
+    /*
+     * Average time to build a context in nanoseconds
+     */
+    public long getMeanCreationNanos() {
+        long m = misses.sum();
+        return m == 0 ? 0 : creationTime.sum() / m;
+    }
+
+    public String toString() {
+        return "ContextPool(idle: " + getIdleCount() + ", hits: " + getHits() + ", misses: " + getMisses()
+            + ", evictions: " + getEvictions() + ", mean creation: " + getMeanCreationNanos() + " ns)";
+    }
+}
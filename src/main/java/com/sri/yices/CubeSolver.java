@@ -0,0 +1,385 @@
+package com.sri.yices;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cube-and-conquer: split one query into 2^K subproblems.
+ *
+ * Given K Boolean split variables x_0 ... x_{K-1}, cube number b is the
+ * conjunction of the literals x_i (if bit i of b is 1) or (not x_i) otherwise.
+ * The formulas are asserted once in one context per worker, then the workers
+ * check the cubes with Context.checkWithAssumptions:
+ * - if a cube is SAT, the formulas are SAT: the model is returned and the
+ *   other workers are stopped
+ * - if a cube is UNSAT, its unsat core is a subset of the cube's literals;
+ *   every cube that contains the same literals is UNSAT too and is skipped
+ * - the formulas are UNSAT if all the cubes are UNSAT (or skipped)
+ *
+ * The split variables can be given or picked with pickSplitVariables.
+ * This requires Yices to be compiled in thread-safe mode.
+ */
+public final class CubeSolver {
+    // to keep the number of cubes reasonable
+    public static final int MAX_SPLIT_VARIABLES = 30;
+
+    /**
+     * Outcome of solve
+     */
+    public static final class Result implements AutoCloseable {
+        private final Status status;
+        private final Model model;
+        private final int[] cube;
+        private final int solved;
+        private final int pruned;
+        private final long nanos;
+
+        private Result(Status status, Model model, int[] cube, int solved, int pruned, long nanos) {
+            this.status = status;
+            this.model = model;
+            this.cube = cube;
+            this.solved = solved;
+            this.pruned = pruned;
+            this.nanos = nanos;
+        }
+
+        /*
+         * SAT, UNSAT, or UNKNOWN/INTERRUPTED if some cubes could not be solved
+         */
+        public Status getStatus() { return status; }
+
+        /*
+         * Model if the status is SAT, null otherwise
+         */
+        public Model getModel() { return model; }
+
+        /*
+         * Literals of the cube that was found SAT (null if the status is not SAT)
+         */
+        public int[] getCube() { return cube; }
+
+        /*
+         * Number of cubes checked by the solver and number of cubes skipped
+         * because of an unsat core
+         */
+        public int getSolvedCount() { return solved; }
+
+        public int getPrunedCount() { return pruned; }
+
+        public long getNanos() { return nanos; }
+
+        public void close() {
+            if (model != null) model.close();
+        }
+
+        public String toString() {
+            return "Result(" + status + ", solved: " + solved + ", pruned: " + pruned + ", " + nanos/1000000 + " ms)";
+        }
+    }
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Config config;
+    private final Parameters params;
+
+    /*
+     * Solver that uses parallelism workers on executor:
+     * - each worker builds its context from config (null means default)
+     * - cubes are checked with params (null means default)
+     */
+    public CubeSolver(Executor executor, int parallelism, Config config, Parameters params) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.config = config;
+        this.params = params;
+    }
+
+    /*
+     * Pick up to k Boolean split variables: the uninterpreted Boolean terms
+     * that occur most often in the formulas (the first ones found are
+     * preferred in case of ties).
+     */
+    public static int[] pickSplitVariables(int[] formulas, int k) throws YicesException {
+        Map<Integer, Integer> counts = new LinkedHashMap<Integer, Integer>();
+        HashMap<Integer, Boolean> visited = new HashMap<Integer, Boolean>();
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int f : formulas) queue.add(f);
+        while (! queue.isEmpty()) {
+            int t = queue.poll();
+            if (Terms.constructor(t) == Constructor.UNINTERPRETED_TERM) {
+                if (Terms.isBool(t)) counts.merge(t, 1, Integer::sum);
+            } else if (visited.put(t, Boolean.TRUE) == null && ! Terms.isAtomic(t)) {
+                for (int c : Terms.children(t)) queue.add(c);
+            }
+        }
+        List<Map.Entry<Integer, Integer>> list = new ArrayList<Map.Entry<Integer, Integer>>(counts.entrySet());
+        list.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        int n = Math.min(k, list.size());
+        int[] vars = new int[n];
+        for (int i = 0; i < n; i++) vars[i] = list.get(i).getKey();
+        return vars;
+    }
+
+    /*
+     * Solve formulas by splitting on the k split variables picked by pickSplitVariables
+     */
+    public Result solve(int[] formulas, int k) throws YicesException {
+        return solve(formulas, pickSplitVariables(formulas, k), null);
+    }
+
+    /*
+     * Solve formulas by splitting on vars (Boolean terms), within deadline d (d may be null)
+     */
+    public Result solve(int[] formulas, int[] vars, Deadline d) throws YicesException {
+        if (vars.length > MAX_SPLIT_VARIABLES) throw new IllegalArgumentException("too many split variables");
+        for (int x : vars) {
+            if (! Terms.isBool(x)) throw new IllegalArgumentException("split variable is not Boolean");
+        }
+        Conquest q = new Conquest(formulas, vars, Math.min(parallelism, 1 << vars.length));
+        for (Worker w : q.workers) {
+            try {
+                executor.execute(w);
+            } catch (RejectedExecutionException e) {
+                q.fail(e);
+            }
+        }
+        try {
+            if (d == null) {
+                q.over.await();
+            } else if (! q.over.await(d.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                q.stopAll();
+            }
+        } catch (InterruptedException e) {
+            q.stopAll();
+            Thread.currentThread().interrupt();
+        }
+        return q.result();
+    }
+
+    /*
+     * Unsat core as a pattern: the cubes b such that (b & mask) == bits are UNSAT
+     */
+    private static final class Core {
+        final int mask;
+        final int bits;
+
+        Core(int mask, int bits) {
+            this.mask = mask;
+            this.bits = bits;
+        }
+    }
+
+    /*
+     * State of one call to solve
+     */
+    private final class Conquest {
+        final int[] formulas;
+        final int[] pos;        // literal x_i
+        final int[] neg;        // literal (not x_i)
+        final Map<Integer, Integer> literals = new HashMap<Integer, Integer>(); // literal -> (i << 1 | polarity)
+        final int ncubes;
+        final Worker[] workers;
+        final long start = System.nanoTime();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining;
+        final CountDownLatch over = new CountDownLatch(1);
+        final List<Core> cores = new CopyOnWriteArrayList<Core>();
+        final LongAdder solved = new LongAdder();
+        final LongAdder pruned = new LongAdder();
+        final LongAdder unsat = new LongAdder();
+        final AtomicReference<Result> sat = new AtomicReference<Result>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        volatile boolean unknown;
+        volatile boolean refuted;  // empty unsat core
+        volatile boolean stopped;
+
+        Conquest(int[] formulas, int[] vars, int nworkers) {
+            this.formulas = formulas;
+            this.pos = vars.clone();
+            this.neg = new int[vars.length];
+            for (int i = 0; i < vars.length; i++) {
+                neg[i] = Terms.not(vars[i]);
+                literals.put(pos[i], i << 1 | 1);
+                literals.put(neg[i], i << 1);
+            }
+            this.ncubes = 1 << vars.length;
+            this.workers = new Worker[nworkers];
+            for (int i = 0; i < nworkers; i++) workers[i] = new Worker(this);
+            this.remaining = new AtomicInteger(nworkers);
+        }
+
+        int[] cube(int b) {
+            int[] a = new int[pos.length];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = (b & (1 << i)) != 0 ? pos[i] : neg[i];
+            }
+            return a;
+        }
+
+        boolean isPruned(int b) {
+            for (Core c : cores) {
+                if ((b & c.mask) == c.bits) return true;
+            }
+            return false;
+        }
+
+        void addCore(int[] core) {
+            int mask = 0;
+            int bits = 0;
+            for (int l : core) {
+                Integer code = literals.get(l);
+                if (code == null) return;  // should not happen
+                mask |= 1 << (code >> 1);
+                bits |= (code & 1) << (code >> 1);
+            }
+            cores.add(new Core(mask, bits));
+        }
+
+        /*
+         * Claim the next cube to solve (-1 if there's none left)
+         */
+        int claim() {
+            while (! stopped) {
+                int b = next.getAndIncrement();
+                if (b >= ncubes) return -1;
+                if (isPruned(b)) {
+                    pruned.increment();
+                    unsat.increment();
+                } else {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        void found(int b, Model m) {
+            Result r = new Result(Status.SAT, m, cube(b), solved.intValue(), pruned.intValue(), System.nanoTime() - start);
+            if (sat.compareAndSet(null, r)) {
+                stopAll();
+                over.countDown();
+            } else {
+                m.close();
+            }
+        }
+
+        void stopAll() {
+            stopped = true;
+            for (Worker w : workers) w.stop();
+        }
+
+        void fail(Throwable e) {
+            error.compareAndSet(null, e);
+            stopAll();
+            arrived();
+        }
+
+        void arrived() {
+            if (remaining.decrementAndGet() == 0) over.countDown();
+        }
+
+        Result result() throws YicesException {
+            Result r = sat.get();
+            if (r != null) return r;
+            Throwable e = error.get();
+            if (e != null) {
+                if (e instanceof RuntimeException) throw (RuntimeException) e;
+                if (e instanceof Error) throw (Error) e;
+                throw new RuntimeException(e);
+            }
+            Status s;
+            if (refuted || unsat.intValue() == ncubes) {
+                s = Status.UNSAT;
+            } else {
+                s = unknown ? Status.UNKNOWN : Status.INTERRUPTED;
+            }
+            return new Result(s, null, null, solved.intValue(), pruned.intValue(), System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Worker: owns one context
+     */
+    private final class Worker implements Runnable {
+        private final Conquest q;
+        private Context context; // set while searching
+        private boolean stopped;
+
+        Worker(Conquest q) {
+            this.q = q;
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            Timeouts.stopUntilDone(this::stopContext);
+        }
+
+        // stop the current check: false once it has returned
+        private synchronized boolean stopContext() {
+            if (context == null) return false;
+            context.stopSearch();
+            return true;
+        }
+
+        private synchronized boolean start(Context c) {
+            if (stopped) return false;
+            context = c;
+            return true;
+        }
+
+        private synchronized void done() {
+            context = null;
+        }
+
+        public void run() {
+            try (Context c = config == null ? new Context() : new Context(config)) {
+                c.assertFormulas(q.formulas);
+                int b;
+                while ((b = q.claim()) >= 0) {
+                    if (! start(c)) break;
+                    Status s;
+                    try {
+                        s = c.checkWithAssumptions(params, q.cube(b));
+                    } finally {
+                        done();
+                    }
+                    q.solved.increment();
+                    if (s == Status.SAT) {
+                        q.found(b, c.getModel());
+                        break;
+                    } else if (s == Status.UNSAT) {
+                        q.unsat.increment();
+                        int[] core = c.getUnsatCore();
+                        if (core.length == 0) {
+                            // the formulas are UNSAT
+                            q.refuted = true;
+                            q.stopAll();
+                            break;
+                        }
+                        q.addCore(core);
+                    } else if (s == Status.ERROR) {
+                        throw new YicesException();
+                    } else if (s == Status.UNKNOWN) {
+                        q.unknown = true;
+                    }
+                }
+            } catch (Throwable e) {
+                q.fail(e);
+                return;
+            }
+            q.arrived();
+        }
+    }
+}
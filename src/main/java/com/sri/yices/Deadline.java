@@ -0,0 +1,56 @@
+package com.sri.yices;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time after which a search must be stopped.
+ *
+ * A deadline is created once and can be passed to several calls to
+ * Context.check or Context.checkWithAssumptions: each call gets only the
+ * time that remains. This makes it easy to bound the total time of a
+ * chain of checks.
+ */
+public final class Deadline {
+    // in System.nanoTime() units
+    private final long expiry;
+
+    private Deadline(long expiry) {
+        this.expiry = expiry;
+    }
+
+    /*
+     * Deadline that expires after the given delay from now
+     */
+    public static Deadline after(long delay, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(delay));
+    }
+
+    public static Deadline after(Duration timeout) {
+        return after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public static Deadline afterMillis(long timeout) {
+        return after(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Time left before expiry in nanoseconds (0 if the deadline has passed)
+     */
+    public long remainingNanos() {
+        long r = expiry - System.nanoTime();
+        return r > 0 ? r : 0;
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return expiry - System.nanoTime() <= 0;
+    }
+
+    public String toString() {
+        return "Deadline(" + remainingMillis() + " ms left)";
+    }
+}
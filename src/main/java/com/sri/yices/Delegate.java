@@ -1,5 +1,21 @@
 package com.sri.yices;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  *  Providing access to yices's third party SAT solvers.
  *
@@ -44,4 +60,160 @@ public class  Delegate {
 
 
 
+    /**
+     * Outcome of a race between delegates
+     */
+    public static final class Result implements AutoCloseable {
+        private final Status status;
+        private final Model model;
+        private final String delegate;
+        private final long nanos;
+        private final Map<String, Long> times;
+
+        private Result(Status status, Model model, String delegate, long nanos, Map<String, Long> times) {
+            this.status = status;
+            this.model = model;
+            this.delegate = delegate;
+            this.nanos = nanos;
+            this.times = Collections.unmodifiableMap(new HashMap<String, Long>(times));
+        }
+
+        /*
+         * SAT or UNSAT if a delegate won, UNKNOWN or INTERRUPTED otherwise
+         */
+        public Status getStatus() { return status; }
+
+        /*
+         * Model if the status is SAT, null otherwise
+         */
+        public Model getModel() { return model; }
+
+        /*
+         * Winning delegate (null if there's no winner)
+         */
+        public String getDelegate() { return delegate; }
+
+        /*
+         * Wall-clock time of the winner in nanoseconds
+         */
+        public long getNanos() { return nanos; }
+
+        /*
+         * Wall-clock time in nanoseconds of each delegate that had completed
+         * when the race ended (the losers still running are not included)
+         */
+        public Map<String, Long> getTimes() { return times; }
+
+        public void close() {
+            if (model != null) model.close();
+        }
+
+        public String toString() {
+            return "Result(" + status + ", delegate: " + delegate + ", " + nanos/1000000 + " ms)";
+        }
+    }
+
+    /*
+     * Threads for race: a delegate call can't be interrupted so the losers
+     * keep running after the race is over. There's one daemon thread per
+     * processor at most: the delegates of later races wait in the queue
+     * rather than piling up new threads behind the losers.
+     */
+    private static final class Pool {
+        static final ThreadPoolExecutor executor;
+
+        static {
+            int n = Runtime.getRuntime().availableProcessors();
+            executor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                    Thread t = new Thread(r, "yices-delegate");
+                    t.setDaemon(true);
+                    return t;
+                });
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /*
+     * Check the conjunction of terms with all the available delegates in parallel.
+     */
+    public static Result race(int[] terms, String logic, Set<String> delegates) throws DelegateException {
+        return race(terms, logic, delegates, Pool.executor);
+    }
+
+    /*
+     * Check the conjunction of terms with all the available delegates in parallel.
+     * - the delegates that are not supported (Yices.hasDelegate is false) are ignored
+     * - the first delegate that returns SAT or UNSAT wins, the call returns immediately
+     * - the losers that are already running can't be stopped, but those that haven't
+     *   started yet when the race is over are skipped
+     * - if no delegate wins, the status is UNKNOWN
+     * - if all delegates fail, the first failure is thrown with the others as suppressed exceptions
+     * This requires Yices to be compiled in thread-safe mode.
+     */
+    public static Result race(int[] terms, String logic, Set<String> delegates, Executor executor) throws DelegateException {
+        List<String> available = new ArrayList<String>();
+        for (String d : delegates) {
+            if (Yices.hasDelegate(d)) available.add(d);
+        }
+        if (available.isEmpty()) {
+            throw new DelegateException(null, "no delegate available in " + delegates);
+        }
+
+        final CompletableFuture<Result> winner = new CompletableFuture<Result>();
+        final Map<String, Long> times = new ConcurrentHashMap<String, Long>();
+        final List<DelegateException> failures = Collections.synchronizedList(new ArrayList<DelegateException>());
+        final AtomicInteger remaining = new AtomicInteger(available.size());
+
+        for (String d : available) {
+            Runnable task = () -> {
+                try {
+                    if (winner.isDone()) return;
+                    long[] larr = new long[1];
+                    long start = System.nanoTime();
+                    Status s = Status.idToStatus(Yices.checkFormulas(terms, logic, d, larr));
+                    long nanos = System.nanoTime() - start;
+                    times.put(d, nanos);
+                    if (s == Status.ERROR) {
+                        failures.add(new DelegateException(d));
+                    } else if (s == Status.SAT || s == Status.UNSAT) {
+                        Model m = s == Status.SAT ? new Model(larr[0]) : null;
+                        if (! winner.complete(new Result(s, m, d, nanos, times)) && m != null) {
+                            m.close();
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(new DelegateException(d, e.toString()));
+                } finally {
+                    if (remaining.decrementAndGet() == 0) winner.complete(null);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                failures.add(new DelegateException(d, "rejected by executor"));
+                if (remaining.decrementAndGet() == 0) winner.complete(null);
+            }
+        }
+
+        Result r;
+        try {
+            r = winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(Status.INTERRUPTED, null, null, 0, times);
+        } catch (ExecutionException e) {
+            throw new DelegateException(null, e.getCause().toString());
+        }
+        if (r != null) return r;
+
+        synchronized (failures) {
+            if (failures.size() == available.size()) {
+                DelegateException first = failures.get(0);
+                for (int i = 1; i < failures.size(); i++) first.addSuppressed(failures.get(i));
+                throw first;
+            }
+        }
+        return new Result(Status.UNKNOWN, null, null, 0, times);
+    }
+
 }
@@ -0,0 +1,30 @@
+package com.sri.yices;
+
+/**
+ * Failure of a delegate SAT solver (or no delegate available).
+ */
+public class DelegateException extends YicesException {
+    private final String delegate;
+
+    // built from the Yices error on the thread that called the delegate
+    protected DelegateException(String delegate) {
+        super();
+        this.delegate = delegate;
+    }
+
+    protected DelegateException(String delegate, String message) {
+        super(message);
+        this.delegate = delegate;
+    }
+
+    /*
+     * Name of the delegate that failed (null if none was available)
+     */
+    public String getDelegate() {
+        return delegate;
+    }
+
+    public String getMessage() {
+        return delegate == null ? super.getMessage() : delegate + ": " + super.getMessage();
+    }
+}
@@ -1,7 +1,28 @@
 package com.sri.yices;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
 /*
- * Bit-blast then export the CNF to a file
+ * Bit-blast then export the CNF to a file, a channel, or memory
  */
 
 public class Dimacs {
@@ -51,7 +72,450 @@ public class Dimacs {
         return code == 1;
     }
 
+    /*
+     * CNF in memory
+     * - the literals of all clauses are stored in a direct IntBuffer (without the 0 terminators)
+     * - clause i is literals[clauseStarts[i] ... clauseStarts[i+1] - 1]
+     * Literals are DIMACS literals: v or -v for variable v in 1 ... numVars.
+     */
+    public static final class Cnf {
+        private final int numVars;
+        private final int numClauses;
+        private final IntBuffer literals;
+        private final IntBuffer clauseStarts;
+
+        Cnf(int numVars, int numClauses, IntBuffer literals, IntBuffer clauseStarts) {
+            this.numVars = numVars;
+            this.numClauses = numClauses;
+            this.literals = literals;
+            this.clauseStarts = clauseStarts;
+        }
+
+        public int getNumVars() { return numVars; }
+
+        public int getNumClauses() { return numClauses; }
+
+        public int getNumLiterals() { return literals.limit(); }
+
+        // read-only views (position 0)
+        public IntBuffer getLiterals() { return literals.asReadOnlyBuffer(); }
+
+        public IntBuffer getClauseStarts() { return clauseStarts.asReadOnlyBuffer(); }
+
+        public int clauseSize(int i) {
+            return clauseStarts.get(i + 1) - clauseStarts.get(i);
+        }
+
+        // j-th literal of clause i
+        public int literal(int i, int j) {
+            if (j < 0 || j >= clauseSize(i)) throw new IndexOutOfBoundsException("literal index " + j);
+            return literals.get(clauseStarts.get(i) + j);
+        }
+
+        public String toString() {
+            return "Dimacs.Cnf(" + numVars + " vars, " + numClauses + " clauses)";
+        }
+    }
+
+    /*
+     * Bit-blast n formulas and return the CNF in memory.
+     * Yices writes the CNF to an anonymous in-memory file (a memfd on Linux),
+     * which is memory-mapped and parsed directly into direct buffers.
+     *  returns:
+     *   the CNF
+     *   null if the formulas are solved without CNF or after simplifying
+     *   throws an exception if there's an error
+     */
+    public static Cnf exportToBuffer(int[] terms, boolean simplify, Status[] status) throws YicesException, IOException {
+        try (FileChannel ch = exportToChannel(terms, simplify, status)) {
+            return ch == null ? null : parse(ch);
+        }
+    }
+
+    public static Cnf exportToBuffer(int term, boolean simplify, Status[] status) throws YicesException, IOException {
+        return exportToBuffer(new int[] { term }, simplify, status);
+    }
+
+    /*
+     * Bit-blast n formulas and copy the DIMACS text to out (without an intermediate file
+     * on Linux; the copy is done by FileChannel.transferTo).
+     *  returns:
+     *   true if the CNF was written to out
+     *   false if the formulas are solved without CNF or after simplifying
+     *   throws an exception if there's an error
+     */
+    public static boolean export(int[] terms, boolean simplify, Status[] status, WritableByteChannel out) throws YicesException, IOException {
+        try (FileChannel ch = exportToChannel(terms, simplify, status)) {
+            if (ch == null) return false;
+            long size = ch.size();
+            long pos = 0;
+            while (pos < size) {
+                pos += ch.transferTo(pos, size - pos, out);
+            }
+            return true;
+        }
+    }
+
+    public static boolean export(int term, boolean simplify, Status[] status, WritableByteChannel out) throws YicesException, IOException {
+        return export(new int[] { term }, simplify, status, out);
+    }
+
+    /*
+     * Output options for export(terms, file, options, status)
+     * - simplify: simplify the CNF (false by default)
+     * - gzip: compress each file with GZIPOutputStream
+     * - chunkSize: if positive, split the CNF into files of at most that many clauses;
+     *   chunk k is written to <file>.k and is a complete DIMACS file (with its own header)
+     */
+    public static final class Options {
+        private boolean simplify;
+        private boolean gzip;
+        private int chunkSize;
+
+        public Options simplify(boolean b) {
+            simplify = b;
+            return this;
+        }
+
+        public Options gzip(boolean b) {
+            gzip = b;
+            return this;
+        }
+
+        public Options chunkSize(int clauses) {
+            if (clauses < 0) throw new IllegalArgumentException("negative chunk size");
+            chunkSize = clauses;
+            return this;
+        }
+    }
+
+    /*
+     * Bit-blast n formulas and write the CNF to file (or to chunk files) as specified by options.
+     *  returns:
+     *   the list of files written (empty if the formulas are solved without CNF or after simplifying)
+     *   throws an exception if there's an error
+     */
+    public static List<Path> export(int[] terms, Path file, Options options, Status[] status) throws YicesException, IOException {
+        List<Path> files = new ArrayList<Path>();
+        if (options.chunkSize == 0) {
+            try (FileChannel ch = exportToChannel(terms, options.simplify, status)) {
+                if (ch == null) return files;
+                try (OutputStream out = open(file, options.gzip)) {
+                    WritableByteChannel w = Channels.newChannel(out);
+                    long size = ch.size();
+                    long pos = 0;
+                    while (pos < size) {
+                        pos += ch.transferTo(pos, size - pos, w);
+                    }
+                }
+                files.add(file);
+            }
+        } else {
+            Cnf cnf = exportToBuffer(terms, options.simplify, status);
+            if (cnf == null) return files;
+            int n = cnf.getNumClauses();
+            for (int k = 0; k == 0 || (long) k * options.chunkSize < n; k++) {
+                int first = k * options.chunkSize;
+                int last = (int) Math.min((long) first + options.chunkSize, n);
+                Path chunk = file.resolveSibling(file.getFileName() + "." + k);
+                try (OutputStream out = open(chunk, options.gzip)) {
+                    writeClauses(out, cnf, first, last);
+                }
+                files.add(chunk);
+            }
+        }
+        return files;
+    }
+
+    private static OutputStream open(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        return gzip ? new GZIPOutputStream(out, 1 << 16) : new BufferedOutputStream(out, 1 << 16);
+    }
+
+    /*
+     * Write clauses first ... last - 1 of cnf in DIMACS format
+     */
+    private static void writeClauses(OutputStream out, Cnf cnf, int first, int last) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        int k = 0;
+        byte[] header = ("p cnf " + cnf.getNumVars() + " " + (last - first) + "\n").getBytes(StandardCharsets.US_ASCII);
+        out.write(header);
+        for (int i = first; i < last; i++) {
+            int n = cnf.clauseSize(i);
+            for (int j = 0; j <= n; j++) {
+                if (k > buffer.length - 12) {
+                    out.write(buffer, 0, k);
+                    k = 0;
+                }
+                k = putInt(buffer, k, j < n ? cnf.literal(i, j) : 0);
+                buffer[k++] = (byte) (j < n ? ' ' : '\n');
+            }
+        }
+        out.write(buffer, 0, k);
+    }
+
+    // decimal representation of x in b[k ...], returns the end position
+    private static int putInt(byte[] b, int k, int x) {
+        long v = x;
+        if (v < 0) {
+            b[k++] = '-';
+            v = -v;
+        }
+        int start = k;
+        do {
+            b[k++] = (byte) ('0' + (int) (v % 10));
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = k - 1; i < j; i++, j--) {
+            byte t = b[i];
+            b[i] = b[j];
+            b[j] = t;
+        }
+        return k;
+    }
+
+    /*
+     * Variable index: DIMACS variables and the Boolean terms they stand for.
+     * File format: comment lines start with 'c', other lines are '<variable> <term>'.
+     *
+     * This is an internal helper for CNF encodings whose variable numbering is known
+     * (for example, CNF built by the caller). It can't be used with the output of
+     * export: libyices does not report the variables its bit-blaster assigns to terms.
+     */
+    static final class VarIndex {
+        private final int[] vars;
+        private final int[] terms;
+
+        VarIndex(int[] vars, int[] terms) {
+            this.vars = vars;
+            this.terms = terms;
+        }
+
+        int size() { return vars.length; }
 
+        int getVar(int i) { return vars[i]; }
 
+        int getTerm(int i) { return terms[i]; }
 
+        /*
+         * Model from a SAT assignment: assignment contains DIMACS literals (v or -v),
+         * as in the 'v' lines of a SAT solver, 0 is ignored. Terms whose variable is
+         * not assigned are left out of the model.
+         */
+        Model toModel(int[] assignment) throws YicesException {
+            int max = 0;
+            for (int l : assignment) max = Math.max(max, Math.abs(l));
+            byte[] value = new byte[max + 1];  // 0: unassigned, 1: true, 2: false
+            for (int l : assignment) {
+                if (l > 0) value[l] = 1;
+                else if (l < 0) value[-l] = 2;
+            }
+            int[] t = new int[vars.length];
+            int[] v = new int[vars.length];
+            int n = 0;
+            for (int i = 0; i < vars.length; i++) {
+                int x = vars[i];
+                if (x <= max && value[x] != 0) {
+                    t[n] = terms[i];
+                    v[n] = value[x] == 1 ? Terms.mkTrue() : Terms.mkFalse();
+                    n ++;
+                }
+            }
+            return new Model(Arrays.copyOf(t, n), Arrays.copyOf(v, n));
+        }
+
+        public String toString() {
+            return "Dimacs.VarIndex(" + vars.length + " variables)";
+        }
+    }
+
+    static void writeIndex(Path file, int[] vars, int[] terms) throws IOException {
+        if (vars.length != terms.length) {
+            throw new IllegalArgumentException("vars and terms must have the same length");
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write("c DIMACS variable to Yices term\n".getBytes(StandardCharsets.US_ASCII));
+            byte[] line = new byte[24];
+            for (int i = 0; i < vars.length; i++) {
+                int k = putInt(line, 0, vars[i]);
+                line[k++] = ' ';
+                k = putInt(line, k, terms[i]);
+                line[k++] = '\n';
+                out.write(line, 0, k);
+            }
+        }
+    }
+
+    static VarIndex readIndex(Path file) throws IOException {
+        TermVector vars = new TermVector();
+        TermVector terms = new TermVector();
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineno = 0;
+            while ((line = r.readLine()) != null) {
+                lineno ++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == 'c') continue;
+                int sp = line.indexOf(' ');
+                try {
+                    if (sp < 0) throw new NumberFormatException();
+                    vars.add(Integer.parseInt(line.substring(0, sp)));
+                    terms.add(Integer.parseInt(line.substring(sp + 1).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ": invalid index entry at line " + lineno);
+                }
+            }
+        }
+        return new VarIndex(vars.toArray(), terms.toArray());
+    }
+
+    /*
+     * Export to an anonymous file, return a channel to read it or null if there's no CNF
+     */
+    private static FileChannel exportToChannel(int[] terms, boolean simplify, Status[] status) throws YicesException, IOException {
+        if (status == null || status.length == 0){
+            throw new IllegalArgumentException("status array null or too small");
+        }
+        int[] result = { -1, -1 };
+        int code = Yices.exportToDimacsFd(terms, simplify, result);
+        switch (code) {
+        case -2:
+            throw new IllegalArgumentException("result array too small");
+        case -3:
+            throw new IllegalArgumentException("no formulas to export");
+        case -4:
+            throw new IOException("can't create a temporary file for the CNF");
+        default:
+            if (code < 0) throw new YicesException();
+        }
+        status[0] = Status.idToStatus(result[0]);
+        if (code == 0) return null;
+        try {
+            return FileChannel.open(descriptorPath(result[1]), StandardOpenOption.READ);
+        } finally {
+            Yices.closeFileDescriptor(result[1]);
+        }
+    }
+
+    private static Path descriptorPath(int fd) {
+        Path proc = Paths.get("/proc/self/fd");
+        return Files.isDirectory(proc) ? proc.resolve(Integer.toString(fd)) : Paths.get("/dev/fd", Integer.toString(fd));
+    }
+
+    /*
+     * Parse the DIMACS text in ch: one pass to count, one pass to fill the buffers.
+     * The file is mapped in windows of at most MAP_WINDOW bytes.
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    static Cnf parse(FileChannel ch) throws IOException {
+        CnfScanner counter = new CnfScanner(null, null);
+        counter.scan(ch);
+        if (counter.nliterals > Integer.MAX_VALUE / 4 || counter.nclauses >= Integer.MAX_VALUE / 4) {
+            throw new IOException("CNF too large for a single buffer");
+        }
+        IntBuffer literals = ByteBuffer.allocateDirect(4 * (int) counter.nliterals).order(ByteOrder.nativeOrder()).asIntBuffer();
+        IntBuffer starts = ByteBuffer.allocateDirect(4 * ((int) counter.nclauses + 1)).order(ByteOrder.nativeOrder()).asIntBuffer();
+        CnfScanner filler = new CnfScanner(literals, starts);
+        starts.put(0);
+        filler.scan(ch);
+        literals.flip();
+        starts.flip();
+        int nvars = counter.nvars >= 0 ? counter.nvars : filler.maxVar;
+        return new Cnf(nvars, (int) counter.nclauses, literals, starts);
+    }
+
+    /*
+     * Tokenizer for DIMACS: comment lines start with 'c', the header is 'p cnf <vars> <clauses>',
+     * clauses are lists of integers terminated by 0.
+     */
+    private static final class CnfScanner {
+        final IntBuffer literals;   // null when counting
+        final IntBuffer starts;
+        long nliterals;
+        long nclauses;
+        int nvars = -1;
+        int maxVar;
+
+        private boolean lineStart = true;
+        private boolean comment;
+        private boolean header;
+        private int headerFields;
+        private boolean digits;
+        private boolean negative;
+        private long value;
+
+        CnfScanner(IntBuffer literals, IntBuffer starts) {
+            this.literals = literals;
+            this.starts = starts;
+        }
+
+        void scan(FileChannel ch) throws IOException {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+                int n = b.limit();
+                for (int i = 0; i < n; i++) {
+                    accept(b.get(i));
+                }
+            }
+            endToken();
+        }
+
+        private void accept(byte c) throws IOException {
+            if (comment) {
+                if (c == '\n') {
+                    comment = false;
+                    lineStart = true;
+                }
+                return;
+            }
+            if (c >= '0' && c <= '9') {
+                value = 10 * value + (c - '0');
+                if (value > Integer.MAX_VALUE) throw new IOException("DIMACS: integer too large");
+                digits = true;
+                lineStart = false;
+                return;
+            }
+            endToken();
+            if (c == '\n') {
+                header = false;
+                lineStart = true;
+            } else if (c == '-') {
+                negative = true;
+                lineStart = false;
+            } else if (lineStart && c == 'c') {
+                comment = true;
+            } else if (lineStart && c == 'p') {
+                header = true;
+                lineStart = false;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                lineStart = false;
+                if (! header) throw new IOException("DIMACS: unexpected character '" + (char) c + "'");
+            }
+        }
+
+        private void endToken() throws IOException {
+            if (! digits) {
+                if (negative) throw new IOException("DIMACS: '-' without a number");
+                return;
+            }
+            int v = (int) value;
+            if (header) {
+                if (headerFields == 0) nvars = v;
+                headerFields ++;
+            } else if (v == 0) {
+                if (negative) throw new IOException("DIMACS: invalid literal -0");
+                nclauses ++;
+                if (starts != null) starts.put((int) nliterals);
+            } else {
+                nliterals ++;
+                if (literals != null) literals.put(negative ? -v : v);
+                if (v > maxVar) maxVar = v;
+            }
+            digits = false;
+            negative = false;
+            value = 0;
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.sri.yices;
 
 import java.math.BigInteger;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class for Yices models
@@ -11,23 +13,50 @@ public class Model implements AutoCloseable {
      */
     private long ptr;
 
+    /*
+     * owner of the pointer: frees it on close or after this object is garbage collected
+     */
+    private final Reclaimer.Handle handle;
+
     protected Model(long p) {
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     //<PROFILING>
-    static private long population = 0;
+    static private final LongAdder population = new LongAdder();
+    static private final LongAdder reclaimed = new LongAdder();
 
     /**
-     * Returns the count of Model objects that have an unfreed pointer
-     * to a Yices shared library object.
+     * Returns the count of Model objects that have an unfreed
+     * pointer to a Yices shared library object.
      */
     public static long getCensus(){
-        return population;
+        return population.sum();
+    }
+
+    /**
+     * Returns the count of Model objects that were garbage collected
+     * without being closed (their Yices model was freed by the Reclaimer).
+     */
+    public static long getReclaimedCount(){
+        return reclaimed.sum();
     }
     //</PROFILING>
 
+    private static final class Handle extends Reclaimer.Handle {
+        Handle(Model owner, long ptr) {
+            super(owner, ptr);
+            population.increment();
+        }
+
+        protected void dispose(long p, boolean leaked) {
+            Yices.freeModel(p);
+            population.decrement();
+            if (leaked) reclaimed.increment();
+        }
+    }
+
     /*
      * Constructor from a map:
      * - var and map must be arrays of the same length
@@ -40,18 +69,15 @@ public class Model implements AutoCloseable {
         long p = Yices.modelFromMap(var, map);
         if (p == 0) throw new YicesException();
         ptr = p;
-        population++;
+        handle = new Handle(this, p);
     }
 
     /*
      * Close: free the Yices internal model
      */
     public void close() {
-        if (ptr != 0) {
-            Yices.freeModel(ptr);
-            ptr = 0;
-            population--;
-        }
+        ptr = 0;
+        handle.free();
     }
 
 
@@ -62,16 +88,22 @@ public class Model implements AutoCloseable {
      * - the second version uses numColumns and numLines
      */
     public String toString() {
-        return Yices.modelToString(ptr);
+        String result = Yices.modelToString(ptr);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public String toString(int numColumns, int numLines) {
-        return Yices.modelToString(ptr, numColumns, numLines);
+        String result = Yices.modelToString(ptr, numColumns, numLines);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
 
     public int[] collectDefinedTerms(){
-        return Yices.collectDefinedTerms(ptr);
+        int[] result = Yices.collectDefinedTerms(ptr);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     /*
@@ -79,6 +111,7 @@ public class Model implements AutoCloseable {
      */
     public boolean boolValue(int t) throws YicesException {
         int x = Yices.getBoolValue(ptr, t);
+        Reclaimer.keepAlive(this);
         // x is either -1 (error), 0 (false), or 1 (true).
         if (x < 0) throw new YicesException();
         return x != 0;
@@ -87,6 +120,7 @@ public class Model implements AutoCloseable {
     public long integerValue(int t) throws YicesException {
         long[] aux = new long[1];
         int code = Yices.getIntegerValue(ptr, t, aux);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return aux[0];
     }
@@ -94,6 +128,7 @@ public class Model implements AutoCloseable {
     public double doubleValue(int t) throws YicesException {
         double[] aux = new double[1];
         int code = Yices.getDoubleValue(ptr, t, aux);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return aux[0];
     }
@@ -103,35 +138,131 @@ public class Model implements AutoCloseable {
     public void rationalValue(int t, long[] a) throws YicesException {
         if (a.length < 2) throw new IllegalArgumentException("array too small");
         int code = Yices.getRationalValue(ptr, t, a);
+        Reclaimer.keepAlive(this);
+        if (code < 0) throw new YicesException();
+    }
+
+    /*
+     * Bulk versions: get the values of terms[0 ... n-1] in one native call.
+     * - out (and ok) must have at least n elements
+     * - boolValues and doubleValues store the value of terms[i] in out[i]
+     *   and throw a YicesException if one of the terms has no value of the
+     *   right type
+     * - longValues stores the value of terms[i] in out[i] and sets ok[i] to true
+     *   if this value is an integer that fits in 64 bits; otherwise ok[i] is false.
+     *   It returns the number of values stored in out.
+     */
+    public void boolValues(int[] terms, boolean[] out) throws YicesException {
+        if (out.length < terms.length) throw new IllegalArgumentException("array too small");
+        int code = Yices.getBoolValues(ptr, terms, out);
+        Reclaimer.keepAlive(this);
+        if (code < 0) throw new YicesException();
+    }
+
+    public int longValues(int[] terms, long[] out, boolean[] ok) {
+        if (out.length < terms.length || ok.length < terms.length) {
+            throw new IllegalArgumentException("array too small");
+        }
+        int result = Yices.getIntegerValues(ptr, terms, out, ok);
+        Reclaimer.keepAlive(this);
+        return result;
+    }
+
+    public void doubleValues(int[] terms, double[] out) throws YicesException {
+        if (out.length < terms.length) throw new IllegalArgumentException("array too small");
+        int code = Yices.getDoubleValues(ptr, terms, out);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
     }
 
     public BigInteger bigIntegerValue(int t) throws YicesException {
         BigInteger v = Yices.getIntegerValue(ptr, t);
+        Reclaimer.keepAlive(this);
         if (v == null) throw new YicesException();
         return v;
     }
 
+    /*
+     * Value of an arithmetic term t as a compact Number:
+     * - a Long if the value is an integer that fits in 64 bits
+     * - a BigInteger for larger integers
+     * - a BigRational otherwise
+     */
+    public Number numericValue(int t) throws YicesException {
+        long[] a = new long[2];
+        int code = Yices.getNumericValue(ptr, t, a);
+        Reclaimer.keepAlive(this);
+        switch (code) {
+        case 0:
+            return Long.valueOf(a[0]);
+        case 1:
+            return BigRational.valueOf(a[0], a[1]);
+        case 2:
+            BigRational r = Yices.getRationalValue(ptr, t);
+            Reclaimer.keepAlive(this);
+            if (r == null) throw new YicesException();
+            return r.isInteger() ? r.getNumerator() : r;
+        default:
+            throw new YicesException();
+        }
+    }
+
     public BigRational bigRationalValue(int t) throws YicesException {
         BigRational v = Yices.getRationalValue(ptr, t);
+        Reclaimer.keepAlive(this);
         if (v == null) throw new YicesException();
         return v;
     }
 
     public boolean[] bvValue(int t) throws YicesException {
         boolean[] b = Yices.getBvValue(ptr, t);
+        Reclaimer.keepAlive(this);
         if (b == null) throw new YicesException();
         return b;
     }
 
+    /*
+     * Bitvector values packed into 64bit words instead of boolean arrays
+     * - bvValueAsLong: t must have at most 64 bits. The value is zero-extended.
+     * - bvValueAsWords: stores the value in words[0 ... (n+63)/64 - 1] where
+     *   n = number of bits in t, words[0] = low-order 64 bits. Returns n.
+     * - bvValueAsBigInteger: the value as an unsigned BigInteger.
+     */
+    public long bvValueAsLong(int t) throws YicesException {
+        long[] w = new long[1];
+        int n = Yices.getBvValueAsWords(ptr, t, w);
+        Reclaimer.keepAlive(this);
+        if (n == -2) throw new IllegalArgumentException("bitvector has more than 64 bits");
+        if (n < 0) throw new YicesException();
+        return w[0];
+    }
+
+    public int bvValueAsWords(int t, long[] words) throws YicesException {
+        int n = Yices.getBvValueAsWords(ptr, t, words);
+        Reclaimer.keepAlive(this);
+        if (n == -2) throw new IllegalArgumentException("array too small");
+        if (n < 0) throw new YicesException();
+        return n;
+    }
+
+    public BigInteger bvValueAsBigInteger(int t) throws YicesException {
+        int n = Yices.termBitSize(t);
+        if (n <= 0) throw new YicesException();
+        long[] w = new long[(n + 63) >>> 6];
+        bvValueAsWords(t, w);
+        return Yices.wordsToBigInteger(w);
+    }
+
     public int scalarValue(int t) throws YicesException {
         int v = Yices.getScalarValue(ptr, t);
+        Reclaimer.keepAlive(this);
         if (v < 0) throw new YicesException();
         return v;
     }
 
     public int valueAsTerm(int t) throws YicesException {
         int v = Yices.valueAsTerm(ptr, t);
+        Reclaimer.keepAlive(this);
         if (v < 0) throw new YicesException();
         return v;
     }
@@ -142,10 +273,32 @@ public class Model implements AutoCloseable {
         }
         int[] output = new int[terms.length];
         int v = Yices.valuesAsTerms(ptr, terms, output);
+        Reclaimer.keepAlive(this);
         if (v < 0) throw new YicesException();
         return output;
     }
 
+    public TermVector valuesAsTerms(TermVector terms) throws YicesException {
+        int[] output = new int[terms.size()];
+        int v = Yices.valuesAsTermsPrefix(ptr, terms.data(), terms.size(), output);
+        Reclaimer.keepAlive(this);
+        if (v < 0) throw new YicesException();
+        return TermVector.wrap(output);
+    }
+
+    /*
+     * Direct buffer variant: the values of the terms in in (between position and limit)
+     * are stored in out, starting at out's position. Both buffers must be direct.
+     */
+    public void valuesAsTerms(IntBuffer in, IntBuffer out) throws YicesException {
+        int n = in.remaining();
+        if (out.remaining() < n) throw new IllegalArgumentException("output buffer too small");
+        int code = Yices.directValuesAsTerms(ptr, Yices.checkDirect(in), in.position(),
+                                             Yices.checkDirect(out), out.position(), n);
+        Reclaimer.keepAlive(this);
+        if (code < 0) throw new YicesException();
+    }
+
 
     /*
      * Implicants
@@ -162,7 +315,9 @@ public class Model implements AutoCloseable {
      * The implicant is returned in an int array, or null indicating an error.
      */
     public int[] implicant(int t){
-        return Yices.implicantForFormula(ptr, t);
+        int[] result = Yices.implicantForFormula(ptr, t);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     /*
@@ -176,7 +331,9 @@ public class Model implements AutoCloseable {
      * The implicant is returned in an int array, or null indicating an error.
      */
     public int[] implicant(int[] terms){
-        return Yices.implicantForFormulas(ptr, terms);
+        int[] result = Yices.implicantForFormulas(ptr, terms);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
 
@@ -191,12 +348,14 @@ public class Model implements AutoCloseable {
 
     public int[] support(int term) throws YicesException {
         int[] retval = Yices.getSupport(ptr, term);
+        Reclaimer.keepAlive(this);
         if (retval == null) throw new YicesException();
         return retval;
     }
 
     public int[] support(int[] terms) throws YicesException {
         int[] retval = Yices.getSupport(ptr, terms);
+        Reclaimer.keepAlive(this);
         if (retval == null) throw new YicesException();
         return retval;
     }
@@ -205,43 +364,62 @@ public class Model implements AutoCloseable {
      * Term exploration in a model
      */
     public YVal getValue(int t){
-        return Yices.getValue(ptr, t);
+        YVal result = Yices.getValue(ptr, t);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public boolean isInt(YVal yval){
-        return Yices.valIsInt(ptr, yval.tag.ordinal(), yval.id);
+        boolean result = Yices.valIsInt(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public boolean isLong(YVal yval){
-        return Yices.valIsLong(ptr, yval.tag.ordinal(), yval.id);
+        boolean result = Yices.valIsLong(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public boolean isInteger(YVal yval){
-        return Yices.valIsLong(ptr, yval.tag.ordinal(), yval.id);
+        boolean result = Yices.valIsLong(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public int bitSize(YVal yval){
-        return Yices.valBitSize(ptr, yval.tag.ordinal(), yval.id);
+        int result = Yices.valBitSize(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public int tupleArity(YVal yval){
-        return Yices.valTupleArity(ptr, yval.tag.ordinal(), yval.id);
+        int result = Yices.valTupleArity(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public int mappingArity(YVal yval){
-        return Yices.valMappingArity(ptr, yval.tag.ordinal(), yval.id);
+        int result = Yices.valMappingArity(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public int functionArity(YVal yval){
-        return Yices.valFunctionArity(ptr, yval.tag.ordinal(), yval.id);
+        int result = Yices.valFunctionArity(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public int functionType(YVal yval){
-        return Yices.valFunctionType(ptr, yval.tag.ordinal(), yval.id);
+        int result = Yices.valFunctionType(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
+        return result;
     }
 
     public boolean boolValue(YVal yval) throws YicesException {
         int code = Yices.valGetBool(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return code == 1;
     }
@@ -249,6 +427,7 @@ public class Model implements AutoCloseable {
     public long integerValue(YVal yval) throws YicesException {
         long[] aux = new long[1];
         int code = Yices.valGetInteger(ptr, yval.tag.ordinal(), yval.id, aux);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return aux[0];
     }
@@ -256,6 +435,7 @@ public class Model implements AutoCloseable {
     public double doubleValue(YVal yval) throws YicesException {
         double[] aux = new double[1];
         int code = Yices.valGetDouble(ptr, yval.tag.ordinal(), yval.id, aux);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return aux[0];
     }
@@ -265,23 +445,27 @@ public class Model implements AutoCloseable {
     public void rationalValue(YVal yval, long[] a) throws YicesException {
         if (a.length < 2) throw new IllegalArgumentException("array too small");
         int code = Yices.valGetRational(ptr, yval.tag.ordinal(), yval.id, a);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
     }
 
     public BigInteger bigIntegerValue(YVal yval) throws YicesException {
         BigInteger v = Yices.valGetInteger(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
         if (v == null) throw new YicesException();
         return v;
     }
 
     public BigRational bigRationalValue(YVal yval) throws YicesException {
         BigRational v = Yices.valGetRational(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
         if (v == null) throw new YicesException();
         return v;
     }
 
     public boolean[] bvValue(YVal yval) throws YicesException {
         boolean[] b = Yices.valGetBV(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
         if (b == null) throw new YicesException();
         return b;
     }
@@ -291,6 +475,7 @@ public class Model implements AutoCloseable {
     public boolean scalarValue(YVal yval, int[] a) throws YicesException {
         if (a.length < 2) throw new IllegalArgumentException("array too small");
         int v = Yices.valGetScalar(ptr, yval.tag.ordinal(), yval.id, a);
+        Reclaimer.keepAlive(this);
         if (v < 0) return false;
         return true;
     }
@@ -301,6 +486,7 @@ public class Model implements AutoCloseable {
         if (n > 0) {
             retval = new YVal[n];
             int code = Yices.valExpandTuple(ptr, yval.tag.ordinal(), yval.id, retval);
+            Reclaimer.keepAlive(this);
             if (code < 0) throw new YicesException();
         } else {
             throw new YicesException();
@@ -310,10 +496,12 @@ public class Model implements AutoCloseable {
 
     public VectorValue expandFunction(YVal yval) throws YicesException {
         int n = Yices.valFunctionCardinality(ptr, yval.tag.ordinal(), yval.id);
+        Reclaimer.keepAlive(this);
         if (n <= 0) throw new YicesException();
         YVal[] vector =  new YVal[n];
         YVal[] value = new YVal[1];
         int code = Yices.valExpandFunction(ptr, yval.tag.ordinal(), yval.id, value, vector);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return new VectorValue(vector, value[0]);
     }
@@ -324,6 +512,7 @@ public class Model implements AutoCloseable {
         if (n <= 0) throw new YicesException();
         YVal[] vector =  new YVal[n];
         int code = Yices.valExpandMapping(ptr, yval.tag.ordinal(), yval.id, vector, value);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
         return new VectorValue(vector, value[0]);
     }
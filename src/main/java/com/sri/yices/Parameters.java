@@ -1,5 +1,7 @@
 package com.sri.yices;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /*
  * Wrapper around a Yices param_t structure
  */
@@ -7,35 +9,57 @@ public class Parameters implements AutoCloseable {
     // pointer to the parameter record
     private long ptr;
 
+    // owner of the pointer: frees it on close or after this object is garbage collected
+    private final Reclaimer.Handle handle;
+
     //<PROFILING>
-    static private long population = 0;
+    static private final LongAdder population = new LongAdder();
+    static private final LongAdder reclaimed = new LongAdder();
 
     /**
      * Returns the count of Parameters objects that have an unfreed
      * pointer to a Yices shared library object.
      */
     public static long getCensus(){
-        return population;
+        return population.sum();
+    }
+
+    /**
+     * Returns the count of Parameters objects that were garbage collected
+     * without being closed (their Yices parameter record was freed by the Reclaimer).
+     */
+    public static long getReclaimedCount(){
+        return reclaimed.sum();
     }
     //</PROFILING>
 
+    private static final class Handle extends Reclaimer.Handle {
+        Handle(Parameters owner, long ptr) {
+            super(owner, ptr);
+            population.increment();
+        }
+
+        protected void dispose(long p, boolean leaked) {
+            Yices.freeParamRecord(p);
+            population.decrement();
+            if (leaked) reclaimed.increment();
+        }
+    }
+
     /*
      * Constructor: all search parameters are set to their defaults
      */
     public Parameters() {
         ptr = Yices.newParamRecord();
-        population++;
+        handle = new Handle(this, ptr);
     }
 
     /*
      * Close: free the record
      */
     public void close() {
-        if (ptr != 0) {
-            Yices.freeParamRecord(ptr);
-            ptr = 0;
-            population--;
-        }
+        ptr = 0;
+        handle.free();
     }
 
 
@@ -46,6 +70,7 @@ public class Parameters implements AutoCloseable {
      */
     public void setParam(String name, String value) throws YicesException {
         int code = Yices.setParam(ptr, name, value);
+        Reclaimer.keepAlive(this);
         if (code < 0) throw new YicesException();
     }
 
@@ -54,5 +79,7 @@ public class Parameters implements AutoCloseable {
      */
     public void defaultsForContext(Context ctx) {
         Yices.defaultParamsForContext(ctx.getPtr(), ptr);
+        Reclaimer.keepAlive(ctx);
+        Reclaimer.keepAlive(this);
     }
 }
@@ -0,0 +1,86 @@
+package com.sri.yices;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of Terms.parseAll: the terms and the expressions that could not be parsed.
+ */
+public final class ParseResult {
+
+    /**
+     * Expression that could not be parsed.
+     * Line and column give the position of the error in the source
+     * (for parseAll(String[], int[]) they are relative to the expression).
+     * Columns count bytes of the UTF-8 encoding.
+     */
+    public static final class Failure {
+        private final int index;
+        private final int line;
+        private final int column;
+        private final int errorCode;
+        private final String message;
+
+        Failure(int index, int line, int column, int errorCode, String message) {
+            this.index = index;
+            this.line = line;
+            this.column = column;
+            this.errorCode = errorCode;
+            this.message = message;
+        }
+
+        // index of the expression (starting from 0)
+        public int getIndex() { return index; }
+
+        public int getLine() { return line; }
+
+        public int getColumn() { return column; }
+
+        public int getErrorCode() { return errorCode; }
+
+        public String getMessage() { return message; }
+
+        public String toString() {
+            return "expression " + index + " (line " + line + ", column " + column + "): " + message;
+        }
+    }
+
+    private final int[] terms;
+    private final int count;
+    private final List<Failure> failures;
+
+    ParseResult(int[] terms, int count, List<Failure> failures) {
+        this.terms = terms;
+        this.count = count;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /*
+     * Number of expressions
+     */
+    public int size() { return count; }
+
+    /*
+     * Term for expression i (-1 if it could not be parsed)
+     */
+    public int getTerm(int i) {
+        if (i < 0 || i >= count) throw new IndexOutOfBoundsException("index " + i);
+        return terms[i];
+    }
+
+    /*
+     * Terms for all the expressions (-1 for failures)
+     */
+    public int[] getTerms() {
+        return terms.length == count ? terms : Arrays.copyOf(terms, count);
+    }
+
+    public boolean isOk() { return failures.isEmpty(); }
+
+    public List<Failure> getFailures() { return failures; }
+
+    public String toString() {
+        return "ParseResult(" + count + " expressions, " + failures.size() + " failures)";
+    }
+}
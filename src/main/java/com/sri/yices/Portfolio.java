@@ -0,0 +1,347 @@
+package com.sri.yices;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Portfolio solving: race several configurations on the same formulas.
+ *
+ * Each entry is a named pair (Config, Parameters). A call to solve builds
+ * one context per entry, asserts the formulas in all of them, and checks them
+ * in parallel on the executor. The first context that returns SAT or UNSAT
+ * wins: its status and model are returned and the search is stopped in all
+ * the other contexts.
+ *
+ * The portfolio counts how many times each entry won, so the set of
+ * configurations can be tuned over time.
+ *
+ * The Config and Parameters objects are owned by the caller and must stay
+ * open while the portfolio is in use. Each context is built, used, and
+ * closed on a single executor thread.
+ */
+public final class Portfolio {
+
+    /**
+     * Outcome of a race
+     */
+    public static final class Result implements AutoCloseable {
+        private final Status status;
+        private final Model model;
+        private final String winner;
+        private final int index;
+        private final long nanos;
+
+        private Result(Status status, Model model, String winner, int index, long nanos) {
+            this.status = status;
+            this.model = model;
+            this.winner = winner;
+            this.index = index;
+            this.nanos = nanos;
+        }
+
+        /*
+         * SAT or UNSAT if an entry won, UNKNOWN or INTERRUPTED otherwise
+         */
+        public Status getStatus() { return status; }
+
+        /*
+         * Model found by the winner if the status is SAT, null otherwise
+         */
+        public Model getModel() { return model; }
+
+        /*
+         * Name and index of the winning entry (null and -1 if there's no winner)
+         */
+        public String getWinner() { return winner; }
+
+        public int getWinnerIndex() { return index; }
+
+        /*
+         * Wall-clock time of the race in nanoseconds
+         */
+        public long getNanos() { return nanos; }
+
+        public void close() {
+            if (model != null) model.close();
+        }
+
+        public String toString() {
+            return "Result(" + status + ", winner: " + winner + ", " + nanos/1000000 + " ms)";
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final Config config;
+        final Parameters params;
+        final LongAdder wins = new LongAdder();
+
+        Entry(String name, Config config, Parameters params) {
+            this.name = name;
+            this.config = config;
+            this.params = params;
+        }
+    }
+
+    /*
+     * One context in a race
+     */
+    private static final class Racer implements Runnable {
+        private final Race race;
+        private final int index;
+        private final Entry entry;
+        private Context context;  // set while the context is searching
+        private boolean stopped;
+
+        Racer(Race race, int index, Entry entry) {
+            this.race = race;
+            this.index = index;
+            this.entry = entry;
+        }
+
+        /*
+         * Stop the search (or prevent it from starting)
+         */
+        synchronized void stop() {
+            stopped = true;
+            Timeouts.stopUntilDone(this::stopContext);
+        }
+
+        // stop the current check: false once it has returned
+        private synchronized boolean stopContext() {
+            if (context == null) return false;
+            context.stopSearch();
+            return true;
+        }
+
+        private synchronized boolean start(Context c) {
+            if (stopped) return false;
+            context = c;
+            return true;
+        }
+
+        private synchronized void done() {
+            context = null;
+        }
+
+        public void run() {
+            Context c = null;
+            Status s;
+            try {
+                c = entry.config == null ? new Context() : new Context(entry.config);
+                c.assertFormulas(race.formulas);
+                if (start(c)) {
+                    try {
+                        s = c.check(entry.params);
+                    } finally {
+                        done();
+                    }
+                } else {
+                    s = Status.INTERRUPTED;
+                }
+            } catch (Throwable e) {
+                if (c != null) c.close();
+                race.fail(e);
+                return;
+            }
+            try {
+                race.finish(this, c, s);
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    /*
+     * State of one call to solve
+     */
+    private static final class Race {
+        final int[] formulas;
+        final Racer[] racers;
+        final long start;
+        final CountDownLatch over = new CountDownLatch(1);
+        final AtomicInteger remaining;
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        volatile boolean unknown;
+        // set by solve once it stops waiting: later results are dropped
+        private boolean finished;
+        private Result result;
+
+        Race(int[] formulas, List<Entry> entries) {
+            this.formulas = formulas;
+            this.racers = new Racer[entries.size()];
+            for (int i = 0; i < racers.length; i++) {
+                racers[i] = new Racer(this, i, entries.get(i));
+            }
+            this.remaining = new AtomicInteger(racers.length);
+            this.start = System.nanoTime();
+        }
+
+        void stopAll() {
+            for (Racer r : racers) r.stop();
+        }
+
+        void finish(Racer racer, Context c, Status s) {
+            try {
+                if ((s == Status.SAT || s == Status.UNSAT) && isOpen()) {
+                    Model m = s == Status.SAT ? c.getModel() : null;
+                    Result r = new Result(s, m, racer.entry.name, racer.index, System.nanoTime() - start);
+                    if (claim(r)) {
+                        racer.entry.wins.increment();
+                        stopAll();
+                        over.countDown();
+                    } else if (m != null) {
+                        m.close();
+                    }
+                } else if (s == Status.UNKNOWN) {
+                    unknown = true;
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            } finally {
+                arrived();
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return ! finished && result == null;
+        }
+
+        /*
+         * Record r as the result: fails if there's already a winner or solve has returned
+         */
+        private synchronized boolean claim(Result r) {
+            if (finished || result != null) return false;
+            result = r;
+            return true;
+        }
+
+        /*
+         * Called by solve when it stops waiting
+         */
+        synchronized Result end() {
+            finished = true;
+            return result;
+        }
+
+        void fail(Throwable e) {
+            error.compareAndSet(null, e);
+            arrived();
+        }
+
+        private void arrived() {
+            if (remaining.decrementAndGet() == 0) over.countDown();
+        }
+
+        /*
+         * Result when no entry won
+         */
+        Result noWinner() throws YicesException {
+            Throwable e = error.get();
+            if (e != null && ! unknown && remaining.get() == 0) {
+                if (e instanceof RuntimeException) throw (RuntimeException) e;
+                if (e instanceof Error) throw (Error) e;
+                throw new RuntimeException(e);
+            }
+            Status s = unknown && remaining.get() == 0 ? Status.UNKNOWN : Status.INTERRUPTED;
+            return new Result(s, null, null, -1, System.nanoTime() - start);
+        }
+    }
+
+    private final Executor executor;
+    private final List<Entry> entries = new CopyOnWriteArrayList<Entry>();
+
+    /*
+     * Portfolio that runs the checks on executor: it should
+     * be able to run all the entries in parallel
+     */
+    public Portfolio(Executor executor) {
+        this.executor = executor;
+    }
+
+    /*
+     * Add an entry:
+     * - config: configuration for the context (null means default)
+     * - params: search parameters (null means default)
+     */
+    public Portfolio add(String name, Config config, Parameters params) {
+        entries.add(new Entry(name, config, params));
+        return this;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /*
+     * Race all the entries on the given formulas
+     */
+    public Result solve(int[] formulas) throws YicesException {
+        return solve(formulas, null);
+    }
+
+    /*
+     * Race all the entries until one wins or the deadline expires (d may be null)
+     * - if no entry wins the result has status UNKNOWN if an entry returned UNKNOWN,
+     *   or INTERRUPTED if the deadline expired or the thread was interrupted
+     * - if all entries fail with an exception, the first exception is rethrown
+     * - this method returns as soon as there's a winner: the other contexts are
+     *   stopped and closed on their executor threads
+     * - entries that finish after this method has returned don't win: their
+     *   models are closed
+     */
+    public Result solve(int[] formulas, Deadline d) throws YicesException {
+        if (entries.isEmpty()) throw new IllegalStateException("empty portfolio");
+        Race race = new Race(formulas, entries);
+        for (Racer r : race.racers) {
+            try {
+                executor.execute(r);
+            } catch (RejectedExecutionException e) {
+                race.fail(e);
+            }
+        }
+        try {
+            if (d == null) {
+                race.over.await();
+            } else if (! race.over.await(d.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                race.stopAll();
+            }
+        } catch (InterruptedException e) {
+            race.stopAll();
+            Thread.currentThread().interrupt();
+        }
+        Result r = race.end();
+        return r != null ? r : race.noWinner();
+    }
+
+    /*
+     * Number of races won by entry name
+     */
+    public long getWins(String name) {
+        long n = 0;
+        for (Entry e : entries) {
+            if (e.name.equals(name)) n += e.wins.sum();
+        }
+        return n;
+    }
+
+    /*
+     * Number of races won by each entry (in the order they were added)
+     */
+    public Map<String, Long> getWins() {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        for (Entry e : entries) {
+            map.merge(e.name, e.wins.sum(), Long::sum);
+        }
+        return map;
+    }
+}
@@ -1,56 +1,93 @@
 package com.sri.yices;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-
-
-//FIXME: decide on the units. millisecs or nanoseconds.
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Profiling of the calls to the Yices native API.
+ *
+ * All times are in nanoseconds. The profiler is thread safe: for each API entry
+ * point, we keep the number of calls, the total time, and a latency histogram
+ * with one bucket per power of two, all implemented with striped LongAdders.
+ *
+ * Profiling is off by default. It can be turned on at runtime with setEnabled(true),
+ * or at startup with -Dcom.sri.yices.profiler=true. When it's off, the cost of an
+ * instrumented call is one read of a volatile flag. The report is empty when
+ * profiling is off.
+ */
 public final class Profiler {
 
+    /*
+     * Runtime on/off switch for profiling (read by the instrumented calls of this
+     * package, set with setEnabled).
+     */
+    static volatile boolean active = Boolean.getBoolean("com.sri.yices.profiler");
+
     /**
-     * Compile-time on off switch for profiling.
+     * Whether profiling was on at startup.
+     * @deprecated profiling can be turned on and off at runtime: use isEnabled().
      */
-    public static final boolean enabled = false;
+    @Deprecated
+    public static final boolean enabled = active;
 
-    static private final boolean distributions = false;
+    /*
+     * Number of histogram buckets: bucket k counts the calls that took
+     * between 2^k and 2^(k+1) - 1 nanoseconds (bucket 0 also counts 0ns).
+     */
+    static private final int BUCKETS = 64;
 
-    static private long cost = 0;
+    /*
+     * Statistics for one API entry point
+     */
+    private static final class Entry {
+        final LongAdder calls = new LongAdder();
+        final LongAdder total = new LongAdder();
+        final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Entry() {
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
 
-    static private Set<Long> threads = new HashSet<Long>();
+        void add(long nanos) {
+            calls.increment();
+            total.add(nanos);
+            histogram[bucket(nanos)].increment();
+        }
+    }
 
-    static private Map<String,Long> lineItems = new HashMap<String,Long>();
+    static private final LongAdder cost = new LongAdder();
 
+    static private final Set<Long> threads = ConcurrentHashMap.newKeySet();
 
-    // for each instrumented API routine: the value maps a call time in TENTHS of a second to the number of calls that have that time.
-    static private Map<String, Map<Integer,Integer>> distribution = new HashMap<String, Map<Integer,Integer>>();
+    static private final Map<String, Entry> lineItems = new ConcurrentHashMap<String, Entry>();
 
-    private static void addThread(){
-        long tid = Thread.currentThread().getId();
-        threads.add(tid);
-    }
+    private Profiler() { }
 
-    private static void addLineItem(String caller, long cost){
-        Long current = lineItems.get(caller);
-        lineItems.put(caller, current == null ? cost : current + cost);
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
     }
 
-    private static void addDistribution(String caller, int callTime){
-        // callTime is in millseconds; lets try tenths for a readable histogram
-        callTime /= 100;
-        Map<Integer,Integer> map = distribution.get(caller);
-        if (map == null){
-            map = new HashMap<Integer,Integer>();
-            distribution.put(caller, map);
+    private static Entry entry(String caller) {
+        Entry e = lineItems.get(caller);
+        if (e == null) {
+            e = lineItems.computeIfAbsent(caller, k -> new Entry());
         }
-        int count = map.getOrDefault(callTime, 0);
-        map.put(callTime, count + 1);
+        return e;
     }
 
+    public static boolean isEnabled() {
+        return active;
+    }
+
+    public static void setEnabled(boolean on) {
+        active = on;
+    }
 
     public static int getThreadCount(){
         return threads.size();
@@ -60,40 +97,75 @@ public final class Profiler {
      * Increments the cost by (stop - start)
      */
     public static void delta(String caller, long start, long stop){
-        delta(caller, start, stop, false);
+        long dcost = stop >= start ? stop - start : start - stop;
+        threads.add(Thread.currentThread().getId());
+        entry(caller).add(dcost);
+        cost.add(dcost);
     }
 
     /**
-     * Increments the cost by (stop - start)
-     * If distribution is true, adds the delta to the distribution.
+     * Increments the cost by (stop - start).
+     * The latency histogram is now maintained for every call so the
+     * distribution flag is ignored.
      */
     public static void delta(String caller, long start, long stop, boolean distribution){
-        long dcost = stop >= start ? stop - start : start - stop;
-        addThread();
-        addLineItem(caller, dcost);
-        cost += dcost;
-        if (distributions && distribution) {
-            addDistribution(caller, (int)(cost/1000000));
-        }
+        delta(caller, start, stop);
     }
 
 
-
     /**
      * Resets the cost accumulation counter to zero.
      */
     public static void reset(){
-        cost = 0;
+        cost.reset();
     }
 
+    /**
+     * Clears all the statistics.
+     */
+    public static void clear(){
+        cost.reset();
+        threads.clear();
+        lineItems.clear();
+    }
 
     /**
      * Returns the accumulated time spent in the Yices solver in nanoseconds.
+     * The counter is reset to zero.
      */
     public static long get(){
-        long retval = cost;
-        cost = 0;
-        return retval;
+        return cost.sumThenReset();
+    }
+
+    /**
+     * Returns the number of calls to caller.
+     */
+    public static long getCalls(String caller){
+        Entry e = lineItems.get(caller);
+        return e == null ? 0 : e.calls.sum();
+    }
+
+    /**
+     * Returns the total time spent in caller, in nanoseconds.
+     */
+    public static long getTotal(String caller){
+        Entry e = lineItems.get(caller);
+        return e == null ? 0 : e.total.sum();
+    }
+
+    /**
+     * Returns the latency histogram of caller: element k is the number of calls
+     * that took between 2^k and 2^(k+1) - 1 nanoseconds.
+     */
+    public static long[] getHistogram(String caller){
+        long[] h = new long[BUCKETS];
+        Entry e = lineItems.get(caller);
+        if (e != null) {
+            for (int i = 0; i < BUCKETS; i++) {
+                h[i] = e.histogram[i].sum();
+            }
+        }
+        return h;
     }
 
     public static String report(){
@@ -103,61 +175,49 @@ public final class Profiler {
     }
 
 
-
     private static void lineItems2StringBuilder(StringBuilder sb){
-        LinkedHashMap<String, Long> sortedLineItems = new LinkedHashMap<String, Long>();
         lineItems.entrySet()
             .stream()
-            .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-            .forEachOrdered(x -> sortedLineItems.put(x.getKey(), x.getValue()));
-        for (String caller : sortedLineItems.keySet()){
-            sb.append(caller).append(":\t\t").append(lineItems.get(caller)/1000000).append(" milliseconds\n");
-        }
+            .sorted(Comparator.comparingLong((Map.Entry<String, Entry> x) -> x.getValue().total.sum()).reversed())
+            .forEachOrdered(x -> {
+                    long calls = x.getValue().calls.sum();
+                    long total = x.getValue().total.sum();
+                    sb.append(x.getKey()).append(":\t\t").append(total/1000000).append(" milliseconds, ")
+                        .append(calls).append(" calls");
+                    if (calls > 0) {
+                        sb.append(", ").append(total/calls).append(" ns/call");
+                    }
+                    sb.append("\n");
+                });
     }
 
 
-
-    /* Data is formatted for this:
-import matplotlib.pyplot as plt
-# frequencies
-counts = <data goes here>
-rng = list(range(0, 100))
-plt.bar(rng, counts)
-plt.xlabel('call time (tenths of a second)')
-plt.ylabel('No. of calls')
-plt.title('<caller> on ...')
-plt.show()
+    /*
+     * Histogram: one line per non-empty bucket
      */
     private static void distribution2StringBuilder(String caller, StringBuilder sb){
-        Map<Integer,Integer> map = distribution.get(caller);
-        sb.append("[");
-        for (int i = 0; i < 100; i++) {
-            sb.append(map.getOrDefault(i, 0));
-            if (i < 99) {
-                sb.append(", ");
+        long[] h = getHistogram(caller);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (h[i] > 0) {
+                sb.append("  [2^").append(i).append(", 2^").append(i+1).append(") ns: ").append(h[i]).append("\n");
             }
         }
-        sb.append("]\n");
     }
 
     private static void distribution2StringBuilder(StringBuilder sb){
-        for (String caller : distribution.keySet()){
+        for (String caller : lineItems.keySet()){
             sb.append("\n").append(caller).append(" Distribution").append("\n\n");
             distribution2StringBuilder(caller, sb);
         }
     }
 
 
-
     public static void toString(StringBuilder sb){
-        if (enabled) {
+        if (active) {
             sb.append("\n--- PROFILING SUMMARY ---\n\n");
             sb.append("Calling thread count: ").append(getThreadCount()).append("\n");
             lineItems2StringBuilder(sb);
-            if (distributions) {
-                distribution2StringBuilder(sb);
-                sb.append("\n |distribution| = ").append(distribution.size()).append("\n");
-            }
+            distribution2StringBuilder(sb);
         }
     }
 
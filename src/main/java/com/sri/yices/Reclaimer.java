@@ -0,0 +1,94 @@
+package com.sri.yices;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Safety net for Yices objects (contexts, models, configs, parameter records)
+ * that are dropped without being closed.
+ *
+ * Each wrapper registers a Handle that owns the native pointer. The pointer is
+ * freed exactly once: either by close() or, after the wrapper has become
+ * unreachable, the next time the reference queue is drained. Draining happens
+ * when new wrappers are created, i.e., on a thread that is already calling
+ * into Yices. We never free Yices objects from a background thread, since the
+ * library may not be compiled in thread-safe mode.
+ *
+ * The owner can become unreachable as soon as its pointer has been loaded,
+ * that is, while a native call is still using the pointer. So every method that
+ * passes the pointer to Yices must call keepAlive(this) after the native call
+ * returns (this plays the role of Reference.reachabilityFence from Java 9).
+ *
+ * This mirrors java.lang.ref.Cleaner but stays compatible with Java 8.
+ */
+final class Reclaimer {
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    // keeps the handles reachable until they are freed
+    private static final Set<Handle> live = ConcurrentHashMap.newKeySet();
+
+    // written by keepAlive: the JIT can't drop a volatile store
+    private static volatile Object fence;
+
+    private Reclaimer() { }
+
+    /*
+     * Make sure owner stays reachable (and its pointer is not freed by drain())
+     * until this call.
+     */
+    static void keepAlive(Object owner) {
+        fence = owner;
+        fence = null;
+    }
+
+    abstract static class Handle extends PhantomReference<Object> {
+        private final AtomicLong ptr;
+
+        /*
+         * Register owner as the wrapper for native pointer ptr.
+         */
+        Handle(Object owner, long ptr) {
+            super(owner, queue);
+            this.ptr = new AtomicLong(ptr);
+            live.add(this);
+            drain();
+        }
+
+        /*
+         * Free the native object: called by the owner's close().
+         * - return true if this call freed the object, false if it was already freed
+         */
+        final boolean free() {
+            return release(false);
+        }
+
+        private boolean release(boolean leaked) {
+            long p = ptr.getAndSet(0);
+            if (p == 0) return false;
+            live.remove(this);
+            clear();
+            dispose(p, leaked);
+            return true;
+        }
+
+        /*
+         * Free the native pointer p.
+         * - leaked is true if the owner was garbage collected without being closed
+         */
+        protected abstract void dispose(long p, boolean leaked);
+    }
+
+    /*
+     * Free the objects whose owners have been garbage collected.
+     */
+    static void drain() {
+        Reference<?> r;
+        while ((r = queue.poll()) != null) {
+            ((Handle) r).release(true);
+        }
+    }
+}
@@ -0,0 +1,850 @@
+package com.sri.yices;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for SMT-LIB 2 scripts.
+ *
+ * The script is read from a file or a channel in fixed-size chunks and each
+ * command is executed as soon as it's parsed: terms are built with Terms,
+ * and assertions, push, pop, and check-sat are sent to a Context. Assertions
+ * are collected and sent to the context in batches of batchSize formulas
+ * (they are also sent before push, check-sat, and the end of the script).
+ *
+ * Supported commands:
+ *   set-logic, set-info, set-option, declare-sort, define-sort (no parameters),
+ *   declare-const, declare-fun, define-fun, assert, push, pop, check-sat,
+ *   check-sat-assuming, reset-assertions, exit.
+ * The other commands (get-model, get-value, echo, ...) are ignored.
+ *
+ * As in SMT-LIB 2.6, reset-assertions removes all the declarations and
+ * definitions, including those made outside push/pop, unless the option
+ * :global-declarations is true. With (set-option :global-declarations true),
+ * declarations and definitions are global: pop and reset-assertions keep them.
+ * The other options are ignored.
+ *
+ * Terms can use the core theory, integer and real arithmetic, bitvectors,
+ * arrays (as functions), let, quantifiers, and :named annotations.
+ * Symbols are read as ISO-8859-1 characters.
+ *
+ * Errors (syntax errors or errors reported by Yices) are thrown as
+ * YicesExceptions whose message gives the line number.
+ */
+public final class SmtLib2Reader {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    // tokens
+    private static final int EOF = 0;
+    private static final int LPAR = 1;
+    private static final int RPAR = 2;
+    private static final int SYMBOL = 3;
+    private static final int KEYWORD = 4;
+    private static final int NUMERAL = 5;
+    private static final int DECIMAL = 6;
+    private static final int BINARY = 7;
+    private static final int HEX = 8;
+    private static final int STRING = 9;
+
+    /*
+     * Function defined by define-fun with parameters
+     */
+    private static final class Macro {
+        final int[] params;  // variables
+        final int body;
+
+        Macro(int[] params, int body) {
+            this.params = params;
+            this.body = body;
+        }
+    }
+
+    private final Context context;
+    private final int batchSize;
+    private final TermVector pending = new TermVector();
+    private final List<Status> results = new ArrayList<Status>();
+    private Consumer<Status> listener;
+
+    // symbol table: name -> Integer (term) or Macro
+    private final Map<String, Object> symbols = new HashMap<String, Object>();
+    private final Map<String, Integer> sorts = new HashMap<String, Integer>();
+    // undo log to restore the tables on pop and at the end of let
+    private final ArrayList<String> undoNames = new ArrayList<String>();
+    private final ArrayList<Object> undoValues = new ArrayList<Object>();
+    private final ArrayList<Boolean> undoIsSort = new ArrayList<Boolean>();
+    private final ArrayList<Integer> frames = new ArrayList<Integer>();
+    // set by (set-option :global-declarations true)
+    private boolean globalDeclarations;
+    // :named terms of the current command, declared once the command is parsed
+    // (after the let and quantifier bindings have been undone)
+    private final ArrayList<String> namedNames = new ArrayList<String>();
+    private final TermVector namedTerms = new TermVector();
+
+    // lexer state
+    private ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private boolean eof;
+    private int line;
+    private final StringBuilder text = new StringBuilder();
+    private int pushedBack = -1;
+    private boolean done;
+
+    // statistics
+    private long bytesRead;
+    private long nanos;
+    private long commands;
+    private long assertions;
+
+    /*
+     * Reader for context: assertions are sent in batches of batchSize formulas
+     */
+    public SmtLib2Reader(Context context, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        this.context = context;
+        this.batchSize = batchSize;
+    }
+
+    public SmtLib2Reader(Context context) {
+        this(context, 1024);
+    }
+
+    /*
+     * Listener called with the result of every check-sat
+     */
+    public void setListener(Consumer<Status> listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Read and execute a script
+     */
+    public void read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(ch);
+        }
+    }
+
+    public void read(ReadableByteChannel ch) throws IOException {
+        long start = System.nanoTime();
+        channel = ch;
+        buffer.clear().flip();
+        eof = false;
+        done = false;
+        line = 1;
+        pushedBack = -1;
+        try {
+            int tok;
+            while (! done && (tok = next()) != EOF) {
+                if (tok != LPAR) throw error("'(' expected");
+                command();
+                commands ++;
+            }
+            flush();
+        } catch (YicesException e) {
+            YicesException x = new YicesException("line " + line + ": " + e.getMessage());
+            x.initCause(e);
+            throw x;
+        } finally {
+            channel = null;
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /*
+     * Results of the check-sat commands so far
+     */
+    public List<Status> getResults() { return results; }
+
+    /*
+     * Statistics
+     */
+    public long getBytesRead() { return bytesRead; }
+
+    public long getCommandCount() { return commands; }
+
+    public long getAssertionCount() { return assertions; }
+
+    public long getNanos() { return nanos; }
+
+    // MB/s (10^6 bytes per second)
+    public double getThroughput() {
+        return nanos == 0 ? 0.0 : bytesRead * 1e3 / nanos;
+    }
+
+    public String toString() {
+        return String.format("SmtLib2Reader(%d bytes, %d commands, %d assertions, %.1f MB/s)",
+                             bytesRead, commands, assertions, getThroughput());
+    }
+
+    /*
+     * COMMANDS
+     */
+    private void command() throws IOException {
+        namedNames.clear();
+        namedTerms.clear();
+        String name = symbol();
+        switch (name) {
+        case "declare-const": {
+            String f = symbol();
+            declare(f, Terms.newUninterpretedTerm(sort()));
+            expect(RPAR);
+            break;
+        }
+        case "declare-fun": {
+            String f = symbol();
+            int[] dom = sortList();
+            int range = sort();
+            int tau = dom.length == 0 ? range : Types.functionType(dom, range);
+            declare(f, Terms.newUninterpretedTerm(tau));
+            expect(RPAR);
+            break;
+        }
+        case "define-fun": {
+            String f = symbol();
+            int mark = undoNames.size();
+            TermVector params = new TermVector();
+            expect(LPAR);
+            int tok;
+            while ((tok = next()) == LPAR) {
+                String x = symbol();
+                int v = Terms.newVariable(sort());
+                expect(RPAR);
+                bind(x, v);
+                params.add(v);
+            }
+            if (tok != RPAR) throw error("')' expected");
+            sort();
+            int body = term();
+            expect(RPAR);
+            undo(mark);
+            declare(f, params.isEmpty() ? (Object) body : new Macro(params.toArray(), body));
+            break;
+        }
+        case "declare-sort": {
+            String s = symbol();
+            if (numeral() != 0) throw error("sorts with parameters are not supported");
+            expect(RPAR);
+            declareSort(s, Types.newUninterpretedType());
+            break;
+        }
+        case "define-sort": {
+            String s = symbol();
+            expect(LPAR);
+            if (next() != RPAR) throw error("sorts with parameters are not supported");
+            int tau = sort();
+            expect(RPAR);
+            declareSort(s, tau);
+            break;
+        }
+        case "assert":
+            pending.add(term());
+            expect(RPAR);
+            assertions ++;
+            if (pending.size() >= batchSize) flush();
+            break;
+        case "push": {
+            int n = optionalNumeral();
+            flush();
+            for (int i = 0; i < n; i++) {
+                context.push();
+                frames.add(undoNames.size());
+            }
+            break;
+        }
+        case "pop": {
+            int n = optionalNumeral();
+            if (n > frames.size()) throw error("pop: not enough scopes");
+            // pending assertions belong to the popped scopes
+            pending.clear();
+            for (int i = 0; i < n; i++) {
+                context.pop();
+                undo(frames.remove(frames.size() - 1));
+            }
+            break;
+        }
+        case "check-sat":
+            expect(RPAR);
+            flush();
+            checked(context.check());
+            break;
+        case "check-sat-assuming": {
+            expect(LPAR);
+            TermVector a = new TermVector();
+            int tok;
+            while ((tok = next()) != RPAR) {
+                pushBack(tok);
+                a.add(term());
+            }
+            expect(RPAR);
+            flush();
+            checked(context.checkWithAssumptions(null, a));
+            break;
+        }
+        case "reset-assertions":
+            expect(RPAR);
+            pending.clear();
+            context.reset();
+            if (globalDeclarations) {
+                // only the declarations made before the option was set are scoped
+                if (! frames.isEmpty()) undo(frames.get(0));
+            } else {
+                symbols.clear();
+                sorts.clear();
+                undoNames.clear();
+                undoValues.clear();
+                undoIsSort.clear();
+            }
+            frames.clear();
+            break;
+        case "exit":
+            expect(RPAR);
+            done = true;
+            break;
+        case "set-option": {
+            int tok = next();
+            if (tok == KEYWORD && text.toString().equals(":global-declarations")) {
+                globalDeclarations = symbol().equals("true");
+                expect(RPAR);
+            } else {
+                pushBack(tok);
+                skip();
+            }
+            break;
+        }
+        case "set-logic":
+        case "set-info":
+        default:
+            // ignored
+            skip();
+            break;
+        }
+        for (int i = 0; i < namedNames.size(); i++) {
+            declare(namedNames.get(i), namedTerms.get(i));
+        }
+    }
+
+    private void checked(Status s) {
+        results.add(s);
+        if (listener != null) listener.accept(s);
+    }
+
+    private void flush() {
+        if (! pending.isEmpty()) {
+            context.assertFormulas(pending);
+            pending.clear();
+        }
+    }
+
+    /*
+     * SYMBOL TABLES
+     */
+    private void bind(String name, Object value) {
+        undoNames.add(name);
+        undoValues.add(symbols.put(name, value));
+        undoIsSort.add(Boolean.FALSE);
+    }
+
+    private void declare(String name, Object value) {
+        if (frames.isEmpty() || globalDeclarations) {
+            symbols.put(name, value);
+        } else {
+            bind(name, value);
+        }
+    }
+
+    private void declareSort(String name, int tau) {
+        if (frames.isEmpty() || globalDeclarations) {
+            sorts.put(name, tau);
+        } else {
+            undoNames.add(name);
+            undoValues.add(sorts.put(name, tau));
+            undoIsSort.add(Boolean.TRUE);
+        }
+    }
+
+    // restore the tables to what they were when the undo log had size mark
+    @SuppressWarnings("unchecked")
+    private void undo(int mark) {
+        for (int i = undoNames.size() - 1; i >= mark; i--) {
+            String name = undoNames.remove(i);
+            Object old = undoValues.remove(i);
+            Map<String, ?> table = undoIsSort.remove(i) ? sorts : symbols;
+            if (old == null) {
+                table.remove(name);
+            } else {
+                ((Map<String, Object>) table).put(name, old);
+            }
+        }
+    }
+
+    /*
+     * SORTS
+     */
+    private int sort() throws IOException {
+        int tok = next();
+        if (tok == SYMBOL) {
+            String s = text.toString();
+            switch (s) {
+            case "Bool": return Types.BOOL;
+            case "Int": return Types.INT;
+            case "Real": return Types.REAL;
+            default:
+                Integer tau = sorts.get(s);
+                if (tau == null) throw error("unknown sort " + s);
+                return tau;
+            }
+        }
+        if (tok != LPAR) throw error("sort expected");
+        String s = symbol();
+        int tau;
+        if (s.equals("_")) {
+            if (! symbol().equals("BitVec")) throw error("unknown sort");
+            tau = Types.bvType(numeral());
+        } else if (s.equals("Array")) {
+            int index = sort();
+            tau = Types.functionType(new int[] { index }, sort());
+        } else {
+            throw error("unknown sort " + s);
+        }
+        expect(RPAR);
+        return tau;
+    }
+
+    private int[] sortList() throws IOException {
+        expect(LPAR);
+        TermVector v = new TermVector();
+        int tok;
+        while ((tok = next()) != RPAR) {
+            pushBack(tok);
+            v.add(sort());
+        }
+        return v.toArray();
+    }
+
+    /*
+     * TERMS
+     */
+    private int term() throws IOException {
+        int tok = next();
+        switch (tok) {
+        case NUMERAL:
+            return text.length() < 19 ? Terms.intConst(Long.parseLong(text.toString())) : Terms.intConst(new BigInteger(text.toString()));
+        case DECIMAL:
+            return Terms.rationalConst(new BigDecimal(text.toString()));
+        case BINARY:
+            return Terms.parseBvBin(text.toString());
+        case HEX:
+            return Terms.parseBvHex(text.toString());
+        case SYMBOL:
+            return constant(text.toString());
+        case LPAR:
+            return application();
+        default:
+            throw error("term expected");
+        }
+    }
+
+    private int constant(String s) {
+        Object v = symbols.get(s);
+        if (v instanceof Integer) return (Integer) v;
+        if (s.equals("true")) return Terms.TRUE;
+        if (s.equals("false")) return Terms.FALSE;
+        throw error("unknown symbol " + s);
+    }
+
+    private int application() throws IOException {
+        int tok = next();
+        if (tok == LPAR) {
+            // indexed function: ((_ f i ...) args)
+            if (! symbol().equals("_")) throw error("'_' expected");
+            String f = symbol();
+            int[] idx = indices();
+            return indexed(f, idx, arguments());
+        }
+        if (tok != SYMBOL) throw error("function symbol expected");
+        String f = text.toString();
+        switch (f) {
+        case "_": {
+            // (_ bvN width)
+            String c = symbol();
+            int n = numeral();
+            expect(RPAR);
+            if (! c.startsWith("bv")) throw error("unknown constant " + c);
+            return bvConst(n, new BigInteger(c.substring(2)));
+        }
+        case "let": {
+            expect(LPAR);
+            ArrayList<String> names = new ArrayList<String>();
+            TermVector values = new TermVector();
+            while ((tok = next()) == LPAR) {
+                names.add(symbol());
+                values.add(term());
+                expect(RPAR);
+            }
+            if (tok != RPAR) throw error("')' expected");
+            int mark = undoNames.size();
+            for (int i = 0; i < names.size(); i++) bind(names.get(i), values.get(i));
+            int body = term();
+            expect(RPAR);
+            undo(mark);
+            return body;
+        }
+        case "forall":
+        case "exists": {
+            int mark = undoNames.size();
+            TermVector vars = new TermVector();
+            expect(LPAR);
+            while ((tok = next()) == LPAR) {
+                String x = symbol();
+                int v = Terms.newVariable(sort());
+                expect(RPAR);
+                bind(x, v);
+                vars.add(v);
+            }
+            if (tok != RPAR) throw error("')' expected");
+            int body = term();
+            expect(RPAR);
+            undo(mark);
+            return f.equals("forall") ? Terms.forall(vars, body) : Terms.exists(vars, body);
+        }
+        case "!": {
+            int t = term();
+            while ((tok = next()) == KEYWORD) {
+                if (text.toString().equals(":named")) {
+                    String name = symbol();
+                    if (! Terms.isGround(t)) throw error(":named term with free variables: " + name);
+                    namedNames.add(name);
+                    namedTerms.add(t);
+                } else {
+                    skipValue();
+                }
+            }
+            if (tok != RPAR) throw error("')' expected");
+            return t;
+        }
+        default:
+            return apply(f, arguments());
+        }
+    }
+
+    // terms up to the closing parenthesis
+    private int[] arguments() throws IOException {
+        TermVector v = new TermVector();
+        int tok;
+        while ((tok = next()) != RPAR) {
+            pushBack(tok);
+            v.add(term());
+        }
+        return v.toArray();
+    }
+
+    private int[] indices() throws IOException {
+        TermVector v = new TermVector();
+        int tok;
+        while ((tok = next()) == NUMERAL) {
+            v.add(Integer.parseInt(text.toString()));
+        }
+        if (tok != RPAR) throw error("')' expected");
+        return v.toArray();
+    }
+
+    private int indexed(String f, int[] idx, int[] a) {
+        if (a.length != 1) throw error(f + ": wrong number of arguments");
+        int x = a[0];
+        switch (f) {
+        case "extract":
+            if (idx.length != 2) break;
+            return Terms.bvExtract(x, idx[1], idx[0]);
+        case "zero_extend":
+            if (idx.length != 1) break;
+            return Terms.bvZeroExtend(x, idx[0]);
+        case "sign_extend":
+            if (idx.length != 1) break;
+            return Terms.bvSignExtend(x, idx[0]);
+        case "rotate_left":
+            if (idx.length != 1) break;
+            return Terms.bvRotateLeft(x, idx[0]);
+        case "rotate_right":
+            if (idx.length != 1) break;
+            return Terms.bvRotateRight(x, idx[0]);
+        case "repeat":
+            if (idx.length != 1) break;
+            return Terms.bvRepeat(x, idx[0]);
+        default:
+            throw error("unknown function " + f);
+        }
+        throw error(f + ": wrong number of indices");
+    }
+
+    private int apply(String f, int[] a) {
+        switch (f) {
+        // core
+        case "not": return Terms.not(arg(f, a, 0));
+        case "and": return Terms.and(a);
+        case "or": return Terms.or(a);
+        case "xor": return Terms.xor(a);
+        case "=>": {
+            int t = arg(f, a, a.length - 1);
+            for (int i = a.length - 2; i >= 0; i--) t = Terms.implies(a[i], t);
+            return t;
+        }
+        case "=": return chain(f, a);
+        case "distinct": return Terms.distinct(a);
+        case "ite": return Terms.ifThenElse(arg(f, a, 0), arg(f, a, 1), arg(f, a, 2));
+        // arithmetic
+        case "+": return Terms.add(a);
+        case "*": return Terms.mul(a);
+        case "-": {
+            if (a.length == 1) return Terms.neg(a[0]);
+            int t = arg(f, a, 0);
+            for (int i = 1; i < a.length; i++) t = Terms.sub(t, a[i]);
+            return t;
+        }
+        case "/": {
+            int t = arg(f, a, 0);
+            for (int i = 1; i < a.length; i++) t = Terms.div(t, a[i]);
+            return t;
+        }
+        case "div": return Terms.idiv(arg(f, a, 0), arg(f, a, 1));
+        case "mod": return Terms.imod(arg(f, a, 0), arg(f, a, 1));
+        case "abs": return Terms.abs(arg(f, a, 0));
+        case "to_real": return arg(f, a, 0);
+        case "to_int": return Terms.floor(arg(f, a, 0));
+        case "is_int": return Terms.isInt(arg(f, a, 0));
+        case "<=":
+        case "<":
+        case ">=":
+        case ">": return chain(f, a);
+        // bitvectors
+        case "bvadd": return Terms.bvAdd(a);
+        case "bvmul": {
+            int t = arg(f, a, 0);
+            for (int i = 1; i < a.length; i++) t = Terms.bvMul(t, a[i]);
+            return t;
+        }
+        case "bvsub": return Terms.bvSub(arg(f, a, 0), arg(f, a, 1));
+        case "bvneg": return Terms.bvNeg(arg(f, a, 0));
+        case "bvnot": return Terms.bvNot(arg(f, a, 0));
+        case "bvand": return Terms.bvAnd(a);
+        case "bvor": return Terms.bvOr(a);
+        case "bvxor": return Terms.bvXor(a);
+        case "bvnand": return Terms.bvNand(arg(f, a, 0), arg(f, a, 1));
+        case "bvnor": return Terms.bvNor(arg(f, a, 0), arg(f, a, 1));
+        case "bvxnor": return Terms.bvXNor(arg(f, a, 0), arg(f, a, 1));
+        case "bvudiv": return Terms.bvDiv(arg(f, a, 0), arg(f, a, 1));
+        case "bvurem": return Terms.bvRem(arg(f, a, 0), arg(f, a, 1));
+        case "bvsdiv": return Terms.bvSDiv(arg(f, a, 0), arg(f, a, 1));
+        case "bvsrem": return Terms.bvSRem(arg(f, a, 0), arg(f, a, 1));
+        case "bvsmod": return Terms.bvSMod(arg(f, a, 0), arg(f, a, 1));
+        case "bvshl": return Terms.bvShl(arg(f, a, 0), arg(f, a, 1));
+        case "bvlshr": return Terms.bvLshr(arg(f, a, 0), arg(f, a, 1));
+        case "bvashr": return Terms.bvAshr(arg(f, a, 0), arg(f, a, 1));
+        case "bvcomp": return Terms.bvRedComp(arg(f, a, 0), arg(f, a, 1));
+        case "concat": return Terms.bvConcat(a);
+        case "bvult": return Terms.bvLt(arg(f, a, 0), arg(f, a, 1));
+        case "bvule": return Terms.bvLe(arg(f, a, 0), arg(f, a, 1));
+        case "bvugt": return Terms.bvGt(arg(f, a, 0), arg(f, a, 1));
+        case "bvuge": return Terms.bvGe(arg(f, a, 0), arg(f, a, 1));
+        case "bvslt": return Terms.bvSLt(arg(f, a, 0), arg(f, a, 1));
+        case "bvsle": return Terms.bvSLe(arg(f, a, 0), arg(f, a, 1));
+        case "bvsgt": return Terms.bvSGt(arg(f, a, 0), arg(f, a, 1));
+        case "bvsge": return Terms.bvSGe(arg(f, a, 0), arg(f, a, 1));
+        // arrays
+        case "select": return Terms.funApplication(arg(f, a, 0), arg(f, a, 1));
+        case "store": return Terms.functionUpdate(arg(f, a, 0), new int[] { arg(f, a, 1) }, arg(f, a, 2));
+        default:
+            Object v = symbols.get(f);
+            if (v instanceof Macro) {
+                Macro m = (Macro) v;
+                if (m.params.length != a.length) throw error(f + ": wrong number of arguments");
+                return Terms.subst(m.body, m.params, a);
+            }
+            if (v instanceof Integer) return Terms.funApplication((Integer) v, a);
+            throw error("unknown function " + f);
+        }
+    }
+
+    private int arg(String f, int[] a, int i) {
+        if (i < 0 || i >= a.length) throw error(f + ": not enough arguments");
+        return a[i];
+    }
+
+    // chainable relations: (f a0 a1 ... an) is (and (f a0 a1) ... (f an-1 an))
+    private int chain(String f, int[] a) {
+        if (a.length < 2) throw error(f + ": not enough arguments");
+        int[] atoms = new int[a.length - 1];
+        for (int i = 0; i < atoms.length; i++) {
+            int x = a[i];
+            int y = a[i+1];
+            switch (f) {
+            case "=": atoms[i] = Terms.eq(x, y); break;
+            case "<=": atoms[i] = Terms.arithLeq(x, y); break;
+            case "<": atoms[i] = Terms.arithLt(x, y); break;
+            case ">=": atoms[i] = Terms.arithGeq(x, y); break;
+            default: atoms[i] = Terms.arithGt(x, y); break;
+            }
+        }
+        return atoms.length == 1 ? atoms[0] : Terms.and(atoms);
+    }
+
+    private static int bvConst(int n, BigInteger x) {
+        if (n <= 64) return Terms.bvConst(n, x.longValue());
+        boolean[] bits = new boolean[n];
+        for (int i = 0; i < n; i++) bits[i] = x.testBit(i);
+        return Terms.bvConst(bits);
+    }
+
+    /*
+     * TOKENS
+     */
+    private String symbol() throws IOException {
+        if (next() != SYMBOL) throw error("symbol expected");
+        return text.toString();
+    }
+
+    private int numeral() throws IOException {
+        if (next() != NUMERAL) throw error("numeral expected");
+        return Integer.parseInt(text.toString());
+    }
+
+    // (push) is (push 1)
+    private int optionalNumeral() throws IOException {
+        int tok = next();
+        if (tok == RPAR) return 1;
+        if (tok != NUMERAL) throw error("numeral expected");
+        int n = Integer.parseInt(text.toString());
+        expect(RPAR);
+        return n;
+    }
+
+    private void expect(int tok) throws IOException {
+        if (next() != tok) throw error(tok == RPAR ? "')' expected" : "'(' expected");
+    }
+
+    // skip the rest of the current s-expression
+    private void skip() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (next()) {
+            case LPAR: depth ++; break;
+            case RPAR: depth --; break;
+            case EOF: throw error("unexpected end of file");
+            default: break;
+            }
+        }
+    }
+
+    // skip an attribute value
+    private void skipValue() throws IOException {
+        int tok = next();
+        if (tok == LPAR) {
+            skip();
+        } else if (tok == RPAR || tok == KEYWORD) {
+            pushBack(tok);
+        }
+    }
+
+    private void pushBack(int tok) {
+        pushedBack = tok;
+    }
+
+    private YicesException error(String msg) {
+        return new YicesException(msg);
+    }
+
+    /*
+     * Next byte or -1 at the end of the input
+     */
+    private int peek() throws IOException {
+        while (! buffer.hasRemaining()) {
+            if (eof) return -1;
+            buffer.clear();
+            int n = channel.read(buffer);
+            buffer.flip();
+            if (n < 0) {
+                eof = true;
+            } else {
+                bytesRead += n;
+            }
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) {
+            buffer.get();
+            if (c == '\n') line ++;
+        }
+        return c;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c < 0 || c == '(' || c == ')' || c == '"' || c == ';' || c == '|' || Character.isWhitespace(c);
+    }
+
+    private int next() throws IOException {
+        if (pushedBack >= 0) {
+            int tok = pushedBack;
+            pushedBack = -1;
+            return tok;
+        }
+        int c;
+        for (;;) {
+            c = read();
+            if (c == ';') {
+                while (c >= 0 && c != '\n') c = read();
+            } else if (c < 0 || ! Character.isWhitespace(c)) {
+                break;
+            }
+        }
+        text.setLength(0);
+        switch (c) {
+        case -1:
+            return EOF;
+        case '(':
+            return LPAR;
+        case ')':
+            return RPAR;
+        case '"':
+            for (;;) {
+                c = read();
+                if (c < 0) throw error("unterminated string");
+                if (c == '"') {
+                    if (peek() != '"') return STRING;
+                    read();
+                }
+                text.append((char) c);
+            }
+        case '|':
+            while ((c = read()) != '|') {
+                if (c < 0) throw error("unterminated symbol");
+                text.append((char) c);
+            }
+            return SYMBOL;
+        case '#':
+            c = read();
+            int tok = c == 'b' ? BINARY : c == 'x' ? HEX : -1;
+            if (tok < 0) throw error("invalid constant");
+            while (! isDelimiter(peek())) text.append((char) read());
+            return tok;
+        default:
+            text.append((char) c);
+            while (! isDelimiter(peek())) text.append((char) read());
+            if (c == ':') return KEYWORD;
+            if (c >= '0' && c <= '9') return text.indexOf(".") >= 0 ? DECIMAL : NUMERAL;
+            return SYMBOL;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.sri.yices;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Cache of term constructors in front of Terms.
+ *
+ * Yices hash-conses terms so building the same term twice gives the same
+ * term id, but every call still goes through JNI. This cache maps
+ * (operation, arguments) to the term built by Terms, so repeated calls
+ * return the cached id without calling Yices.
+ *
+ * The cache is a fixed-size table of int entries: a new entry replaces
+ * the entry in its slot. Slots are protected by striped locks so a cache
+ * can be shared by several threads.
+ *
+ * Entries are tagged with Yices.getTermEpoch(): after a call to
+ * Yices.yicesGarbageCollect or Yices.reset, the existing entries are ignored.
+ */
+public final class TermCache {
+    // operations (0 marks an empty slot)
+    private static final int NOT = 1;
+    private static final int EQ = 2;
+    private static final int NEQ = 3;
+    private static final int ITE = 4;
+    private static final int AND = 5;
+    private static final int OR = 6;
+    private static final int XOR = 7;
+    private static final int IFF = 8;
+    private static final int IMPLIES = 9;
+    private static final int ADD = 10;
+    private static final int SUB = 11;
+    private static final int NEG = 12;
+    private static final int MUL = 13;
+    private static final int ARITH_EQ = 14;
+    private static final int ARITH_NEQ = 15;
+    private static final int ARITH_GEQ = 16;
+    private static final int ARITH_LEQ = 17;
+    private static final int ARITH_GT = 18;
+    private static final int ARITH_LT = 19;
+    private static final int BV_ADD = 20;
+    private static final int BV_SUB = 21;
+    private static final int BV_NEG = 22;
+    private static final int BV_MUL = 23;
+    private static final int BV_NOT = 24;
+    private static final int BV_AND = 25;
+    private static final int BV_OR = 26;
+    private static final int BV_XOR = 27;
+    private static final int BV_SHL = 28;
+    private static final int BV_LSHR = 29;
+    private static final int BV_ASHR = 30;
+    private static final int BV_CONCAT = 31;
+    private static final int BV_EQ = 32;
+    private static final int BV_NEQ = 33;
+    private static final int BV_GE = 34;
+    private static final int BV_GT = 35;
+    private static final int BV_LE = 36;
+    private static final int BV_LT = 37;
+    private static final int BV_SGE = 38;
+    private static final int BV_SGT = 39;
+    private static final int BV_SLE = 40;
+    private static final int BV_SLT = 41;
+
+    // entry i is stored in table[STRIDE * i ... STRIDE * i + 5]:
+    // op, x, y, z, result, epoch
+    private static final int STRIDE = 6;
+    private static final int MAX_STRIPES = 64;
+
+    private final int[] table;
+    private final int mask;
+    private final Object[] locks;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /*
+     * Cache with room for capacity entries (rounded up to a power of two)
+     */
+    public TermCache(int capacity) {
+        if (capacity < 1 || capacity > (1 << 26)) throw new IllegalArgumentException("invalid capacity");
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity) n <<= 1;
+        table = new int[STRIDE * n];
+        mask = n - 1;
+        locks = new Object[Math.min(n, MAX_STRIPES)];
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+    }
+
+    public TermCache() {
+        this(1 << 16);
+    }
+
+    private int slot(int op, int x, int y, int z) {
+        int h = op;
+        h = h * 0x9E3779B9 + x;
+        h = h * 0x9E3779B9 + y;
+        h = h * 0x9E3779B9 + z;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    /*
+     * Cached result or -1
+     */
+    private int find(int s, int op, int x, int y, int z, int epoch) {
+        int i = STRIDE * s;
+        synchronized (locks[s & (locks.length - 1)]) {
+            if (table[i] == op && table[i+1] == x && table[i+2] == y && table[i+3] == z && table[i+5] == epoch) {
+                return table[i+4];
+            }
+        }
+        return -1;
+    }
+
+    private void put(int s, int op, int x, int y, int z, int epoch, int t) {
+        int i = STRIDE * s;
+        synchronized (locks[s & (locks.length - 1)]) {
+            if (table[i] != 0 && table[i+5] == epoch) evictions.increment();
+            table[i] = op;
+            table[i+1] = x;
+            table[i+2] = y;
+            table[i+3] = z;
+            table[i+4] = t;
+            table[i+5] = epoch;
+        }
+    }
+
+    private int unary(int op, int x, IntUnaryOperator f) {
+        int epoch = Yices.getTermEpoch();
+        int s = slot(op, x, 0, 0);
+        int t = find(s, op, x, 0, 0, epoch);
+        if (t >= 0) {
+            hits.increment();
+            return t;
+        }
+        misses.increment();
+        t = f.applyAsInt(x);
+        put(s, op, x, 0, 0, epoch, t);
+        return t;
+    }
+
+    private int binary(int op, int x, int y, IntBinaryOperator f) {
+        int epoch = Yices.getTermEpoch();
+        int s = slot(op, x, y, 0);
+        int t = find(s, op, x, y, 0, epoch);
+        if (t >= 0) {
+            hits.increment();
+            return t;
+        }
+        misses.increment();
+        t = f.applyAsInt(x, y);
+        put(s, op, x, y, 0, epoch, t);
+        return t;
+    }
+
+    /*
+     * Boolean terms
+     */
+    public int not(int arg) throws YicesException { return unary(NOT, arg, Terms::not); }
+
+    public int eq(int left, int right) throws YicesException { return binary(EQ, left, right, Terms::eq); }
+
+    public int neq(int left, int right) throws YicesException { return binary(NEQ, left, right, Terms::neq); }
+
+    public int and(int left, int right) throws YicesException { return binary(AND, left, right, (x, y) -> Terms.and(x, y)); }
+
+    public int or(int left, int right) throws YicesException { return binary(OR, left, right, (x, y) -> Terms.or(x, y)); }
+
+    public int xor(int left, int right) throws YicesException { return binary(XOR, left, right, (x, y) -> Terms.xor(x, y)); }
+
+    public int iff(int left, int right) throws YicesException { return binary(IFF, left, right, Terms::iff); }
+
+    public int implies(int left, int right) throws YicesException { return binary(IMPLIES, left, right, Terms::implies); }
+
+    public int ifThenElse(int cond, int iftrue, int iffalse) throws YicesException {
+        int epoch = Yices.getTermEpoch();
+        int s = slot(ITE, cond, iftrue, iffalse);
+        int t = find(s, ITE, cond, iftrue, iffalse, epoch);
+        if (t >= 0) {
+            hits.increment();
+            return t;
+        }
+        misses.increment();
+        t = Terms.ifThenElse(cond, iftrue, iffalse);
+        put(s, ITE, cond, iftrue, iffalse, epoch, t);
+        return t;
+    }
+
+    /*
+     * Arithmetic terms and atoms
+     */
+    public int add(int left, int right) throws YicesException { return binary(ADD, left, right, Terms::add); }
+
+    public int sub(int left, int right) throws YicesException { return binary(SUB, left, right, Terms::sub); }
+
+    public int neg(int arg) throws YicesException { return unary(NEG, arg, Terms::neg); }
+
+    public int mul(int left, int right) throws YicesException { return binary(MUL, left, right, Terms::mul); }
+
+    public int arithEq(int x, int y) throws YicesException { return binary(ARITH_EQ, x, y, Terms::arithEq); }
+
+    public int arithNeq(int x, int y) throws YicesException { return binary(ARITH_NEQ, x, y, Terms::arithNeq); }
+
+    public int arithGeq(int x, int y) throws YicesException { return binary(ARITH_GEQ, x, y, Terms::arithGeq); }
+
+    public int arithLeq(int x, int y) throws YicesException { return binary(ARITH_LEQ, x, y, Terms::arithLeq); }
+
+    public int arithGt(int x, int y) throws YicesException { return binary(ARITH_GT, x, y, Terms::arithGt); }
+
+    public int arithLt(int x, int y) throws YicesException { return binary(ARITH_LT, x, y, Terms::arithLt); }
+
+    /*
+     * Bitvector terms and atoms
+     */
+    public int bvAdd(int left, int right) throws YicesException { return binary(BV_ADD, left, right, Terms::bvAdd); }
+
+    public int bvSub(int left, int right) throws YicesException { return binary(BV_SUB, left, right, Terms::bvSub); }
+
+    public int bvNeg(int arg) throws YicesException { return unary(BV_NEG, arg, Terms::bvNeg); }
+
+    public int bvMul(int left, int right) throws YicesException { return binary(BV_MUL, left, right, Terms::bvMul); }
+
+    public int bvNot(int arg) throws YicesException { return unary(BV_NOT, arg, Terms::bvNot); }
+
+    public int bvAnd(int left, int right) throws YicesException { return binary(BV_AND, left, right, (x, y) -> Terms.bvAnd(x, y)); }
+
+    public int bvOr(int left, int right) throws YicesException { return binary(BV_OR, left, right, (x, y) -> Terms.bvOr(x, y)); }
+
+    public int bvXor(int left, int right) throws YicesException { return binary(BV_XOR, left, right, (x, y) -> Terms.bvXor(x, y)); }
+
+    public int bvShl(int left, int right) throws YicesException { return binary(BV_SHL, left, right, Terms::bvShl); }
+
+    public int bvLshr(int left, int right) throws YicesException { return binary(BV_LSHR, left, right, Terms::bvLshr); }
+
+    public int bvAshr(int left, int right) throws YicesException { return binary(BV_ASHR, left, right, Terms::bvAshr); }
+
+    public int bvConcat(int left, int right) throws YicesException { return binary(BV_CONCAT, left, right, (x, y) -> Terms.bvConcat(x, y)); }
+
+    public int bvEq(int left, int right) throws YicesException { return binary(BV_EQ, left, right, Terms::bvEq); }
+
+    public int bvNeq(int left, int right) throws YicesException { return binary(BV_NEQ, left, right, Terms::bvNeq); }
+
+    public int bvGe(int left, int right) throws YicesException { return binary(BV_GE, left, right, Terms::bvGe); }
+
+    public int bvGt(int left, int right) throws YicesException { return binary(BV_GT, left, right, Terms::bvGt); }
+
+    public int bvLe(int left, int right) throws YicesException { return binary(BV_LE, left, right, Terms::bvLe); }
+
+    public int bvLt(int left, int right) throws YicesException { return binary(BV_LT, left, right, Terms::bvLt); }
+
+    public int bvSGe(int left, int right) throws YicesException { return binary(BV_SGE, left, right, Terms::bvSGe); }
+
+    public int bvSGt(int left, int right) throws YicesException { return binary(BV_SGT, left, right, Terms::bvSGt); }
+
+    public int bvSLe(int left, int right) throws YicesException { return binary(BV_SLE, left, right, Terms::bvSLe); }
+
+    public int bvSLt(int left, int right) throws YicesException { return binary(BV_SLT, left, right, Terms::bvSLt); }
+
+    /*
+     * Remove all entries
+     */
+    public void clear() {
+        for (int s = 0; s <= mask; s++) {
+            synchronized (locks[s & (locks.length - 1)]) {
+                table[STRIDE * s] = 0;
+            }
+        }
+    }
+
+    /*
+     * Metrics
+     */
+    public int getCapacity() { return mask + 1; }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    // valid entries replaced by new ones
+    public long getEvictions() { return evictions.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long n = h + misses.sum();
+        return n == 0 ? 0.0 : (double) h / n;
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    public String toString() {
+        return String.format("TermCache(capacity: %d, hits: %d, misses: %d, evictions: %d, hit rate: %.3f)",
+                             getCapacity(), getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
@@ -0,0 +1,516 @@
+package com.sri.yices;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Binary snapshots of terms and types.
+ *
+ * save(file, roots) writes all the terms and types reachable from roots,
+ * with their names. load(file) rebuilds them with a single native call and
+ * returns a Remapping from the saved term and type ids to the new ones.
+ *
+ * File format (little-endian 32-bit integers):
+ *   header: MAGIC, VERSION, ntypes, nterms, nroots, types length, terms length,
+ *           nstrings, string bytes
+ *   types:  one record per type: old id, kind, name, n, n operands
+ *   terms:  one record per term: old id, constructor, type, name, n, n operands
+ *   roots:  term index of each root
+ *   string offsets (nstrings + 1 integers) then the strings (UTF-8)
+ * Records are in post-order: a record only refers to previous records of the
+ * same section. Names are string indices or -1. The operands are
+ *   BV_TYPE: size; SCALAR_TYPE: cardinality; TUPLE_TYPE and FUNCTION_TYPE: component types
+ *   BOOL_CONSTANT: 0 or 1; ARITH_CONSTANT: string "num/den"; BV_CONSTANT: binary string
+ *   SCALAR_CONSTANT: index; SELECT_TERM, BIT_TERM: index and argument
+ *   ARITH_SUM, BV_SUM: pairs (coefficient string, term or -1)
+ *   POWER_PRODUCT: pairs (term, exponent); other composite terms: the children.
+ * The file can be memory-mapped: load maps it and copies each section once.
+ */
+public final class TermStore {
+    public static final int MAGIC = 0x59545331; // "YTS1"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 9;
+
+    // type kinds (must match yicesJNI.cpp)
+    private static final int BOOL_TYPE = 0;
+    private static final int INT_TYPE = 1;
+    private static final int REAL_TYPE = 2;
+    private static final int BV_TYPE = 3;
+    private static final int SCALAR_TYPE = 4;
+    private static final int UNINTERPRETED_TYPE = 5;
+    private static final int TUPLE_TYPE = 6;
+    private static final int FUNCTION_TYPE = 7;
+
+    private TermStore() {}
+
+    /**
+     * Mapping from the ids in a snapshot to the ids of the loaded terms and types
+     */
+    public static final class Remapping {
+        private final int[] terms;
+        private final int[] types;
+        private final int[] roots;
+        private final int nterms;
+        private final int ntypes;
+
+        private Remapping(int[] terms, int[] types, int[] roots, int nterms, int ntypes) {
+            this.terms = terms;
+            this.types = types;
+            this.roots = roots;
+            this.nterms = nterms;
+            this.ntypes = ntypes;
+        }
+
+        // new id of a saved term or type (-1 if it's not in the snapshot)
+        public int term(int old) {
+            return old >= 0 && old < terms.length ? terms[old] : -1;
+        }
+
+        public int type(int old) {
+            return old >= 0 && old < types.length ? types[old] : -1;
+        }
+
+        // new ids of the roots, in the order given to save
+        public int[] getRoots() { return roots.clone(); }
+
+        public int getTermCount() { return nterms; }
+
+        public int getTypeCount() { return ntypes; }
+
+        public String toString() {
+            return "TermStore.Remapping(" + nterms + " terms, " + ntypes + " types)";
+        }
+    }
+
+    /*
+     * SAVE
+     */
+    public static void save(Path file, int[] roots) throws IOException {
+        Encoder e = new Encoder();
+        int[] nodes = new int[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            nodes[i] = e.term(roots[i]);
+        }
+        e.write(file, nodes);
+    }
+
+    /*
+     * Collect the records
+     */
+    private static final class Encoder {
+        final TermVector types = new TermVector();
+        final TermVector terms = new TermVector();
+        final HashMap<Integer, Integer> typeIndex = new HashMap<Integer, Integer>();
+        final HashMap<Integer, Integer> termIndex = new HashMap<Integer, Integer>();
+        final HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+        final ArrayList<String> strings = new ArrayList<String>();
+        int nterms;   // number of term records (termIndex also contains -1 for terms being visited)
+
+        int string(String s) {
+            if (s == null) return -1;
+            Integer k = stringIndex.get(s);
+            if (k == null) {
+                k = strings.size();
+                strings.add(s);
+                stringIndex.put(s, k);
+            }
+            return k;
+        }
+
+        int type(int tau) {
+            Integer k = typeIndex.get(tau);
+            if (k != null) return k;
+            int kind;
+            int[] ops;
+            if (Yices.typeIsBool(tau)) {
+                kind = BOOL_TYPE;
+                ops = new int[0];
+            } else if (Yices.typeIsInt(tau)) {
+                kind = INT_TYPE;
+                ops = new int[0];
+            } else if (Yices.typeIsReal(tau)) {
+                kind = REAL_TYPE;
+                ops = new int[0];
+            } else if (Yices.typeIsBitvector(tau)) {
+                kind = BV_TYPE;
+                ops = new int[] { Yices.bvTypeSize(tau) };
+            } else if (Yices.typeIsScalar(tau)) {
+                kind = SCALAR_TYPE;
+                ops = new int[] { Yices.scalarTypeCard(tau) };
+            } else if (Yices.typeIsUninterpreted(tau)) {
+                kind = UNINTERPRETED_TYPE;
+                ops = new int[0];
+            } else if (Yices.typeIsTuple(tau) || Yices.typeIsFunction(tau)) {
+                kind = Yices.typeIsTuple(tau) ? TUPLE_TYPE : FUNCTION_TYPE;
+                ops = Types.children(tau);
+                for (int i = 0; i < ops.length; i++) ops[i] = type(ops[i]);
+            } else {
+                throw new YicesException();
+            }
+            k = typeIndex.size();
+            types.add(tau).add(kind).add(string(Yices.getTypeName(tau))).add(ops.length).addAll(ops);
+            typeIndex.put(tau, k);
+            return k;
+        }
+
+        /*
+         * Terms t depends on
+         */
+        int[] dependencies(int t, int kind) {
+            if (kind < 0) throw new YicesException();
+            Constructor c = Constructor.idToConstructor(kind);
+            switch (c) {
+            case BOOL_CONSTANT:
+            case ARITH_CONSTANT:
+            case BV_CONSTANT:
+            case SCALAR_CONSTANT:
+            case VARIABLE:
+            case UNINTERPRETED_TERM:
+                return new int[0];
+            case SELECT_TERM:
+            case BIT_TERM:
+                return new int[] { Terms.projArg(t) };
+            case ARITH_SUM:
+            case BV_SUM:
+            case POWER_PRODUCT: {
+                int n = Terms.numChildren(t);
+                int[] x = new int[1];
+                TermVector v = new TermVector(n);
+                for (int i = 0; i < n; i++) {
+                    component(t, c, i, x);
+                    if (x[0] >= 0) v.add(x[0]);
+                }
+                return v.toArray();
+            }
+            case ARITH_ROOT_ATOM:
+                throw new IllegalArgumentException("TermStore: root atoms are not supported");
+            default:
+                return Terms.children(t);
+            }
+        }
+
+        // coefficient or exponent of component i of t; term in x[0]
+        String component(int t, Constructor c, int i, int[] x) {
+            switch (c) {
+            case ARITH_SUM: {
+                String s = Yices.sumComponent(t, i, x);
+                if (s == null) throw new YicesException();
+                return s;
+            }
+            case BV_SUM: {
+                String s = Yices.bvSumComponent(t, i, x);
+                if (s == null) throw new YicesException();
+                return s;
+            }
+            default: {
+                int d = Yices.productComponent(t, i, x);
+                if (d < 0) throw new YicesException();
+                return Integer.toString(d);
+            }
+            }
+        }
+
+        /*
+         * Add t and the terms it depends on (in post-order), return the index of t
+         */
+        int term(int root) {
+            Integer k = termIndex.get(root);
+            if (k != null && k >= 0) return k;
+            ArrayList<Integer> stack = new ArrayList<Integer>();
+            stack.add(root);
+            while (! stack.isEmpty()) {
+                int t = stack.get(stack.size() - 1);
+                Integer state = termIndex.get(t);
+                if (state != null && state >= 0) {
+                    stack.remove(stack.size() - 1);
+                    continue;
+                }
+                int kind = Yices.termConstructor(t);
+                int[] deps = dependencies(t, kind);
+                if (state == null) {
+                    // first visit
+                    termIndex.put(t, -1);
+                    for (int i = deps.length - 1; i >= 0; i--) {
+                        if (! termIndex.containsKey(deps[i])) stack.add(deps[i]);
+                    }
+                } else {
+                    stack.remove(stack.size() - 1);
+                    emit(t, kind, deps);
+                }
+            }
+            return termIndex.get(root);
+        }
+
+        private void emit(int t, int kind, int[] deps) {
+            Constructor c = Constructor.idToConstructor(kind);
+            TermVector ops = new TermVector();
+            switch (c) {
+            case BOOL_CONSTANT:
+                ops.add(Terms.boolConstValue(t) ? 1 : 0);
+                break;
+            case ARITH_CONSTANT:
+                ops.add(string(Terms.arithConstValue(t).toString()));
+                break;
+            case BV_CONSTANT: {
+                boolean[] bits = Terms.bvConstValue(t);
+                StringBuilder b = new StringBuilder(bits.length);
+                for (int i = bits.length - 1; i >= 0; i--) b.append(bits[i] ? '1' : '0');
+                ops.add(string(b.toString()));
+                break;
+            }
+            case SCALAR_CONSTANT:
+                ops.add(Terms.scalarConstantIndex(t));
+                break;
+            case VARIABLE:
+            case UNINTERPRETED_TERM:
+                break;
+            case SELECT_TERM:
+            case BIT_TERM:
+                ops.add(Terms.projIndex(t)).add(termIndex.get(deps[0]));
+                break;
+            case ARITH_SUM:
+            case BV_SUM:
+            case POWER_PRODUCT: {
+                int n = Terms.numChildren(t);
+                int[] x = new int[1];
+                for (int i = 0; i < n; i++) {
+                    String s = component(t, c, i, x);
+                    int node = x[0] < 0 ? -1 : termIndex.get(x[0]);
+                    if (c == Constructor.POWER_PRODUCT) {
+                        ops.add(node).add(Integer.parseInt(s));
+                    } else {
+                        ops.add(string(s)).add(node);
+                    }
+                }
+                break;
+            }
+            default:
+                for (int d : deps) ops.add(termIndex.get(d));
+                break;
+            }
+            int tau = type(Terms.typeOf(t));
+            termIndex.put(t, nterms++);
+            terms.add(t).add(kind).add(tau).add(string(Yices.getTermName(t))).add(ops.size()).addAll(ops);
+        }
+
+        void write(Path file, int[] roots) throws IOException {
+            byte[][] bytes = new byte[strings.size()][];
+            int[] offsets = new int[strings.size() + 1];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + bytes[i].length;
+            }
+            int nbytes = offsets[bytes.length];
+            int nints = HEADER_SIZE + types.size() + terms.size() + roots.length + offsets.length;
+            ByteBuffer b = ByteBuffer.allocate(4 * nints + nbytes).order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ib = b.asIntBuffer();
+            ib.put(MAGIC).put(VERSION).put(typeIndex.size()).put(nterms).put(roots.length);
+            ib.put(types.size()).put(terms.size()).put(strings.size()).put(nbytes);
+            ib.put(types.toArray()).put(terms.toArray()).put(roots).put(offsets);
+            b.position(4 * nints);
+            for (byte[] s : bytes) b.put(s);
+            b.flip();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (b.hasRemaining()) ch.write(b);
+            }
+        }
+    }
+
+    /*
+     * LOAD
+     */
+    public static Remapping load(Path file) throws IOException {
+        int[] header = new int[HEADER_SIZE];
+        int[] types;
+        int[] terms;
+        int[] roots;
+        String[] strings;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ib = m.asIntBuffer();
+            if (! ib.hasRemaining() || ib.get(0) != MAGIC) throw new IOException(file + " is not a term store");
+            try {
+                ib.get(header);
+                if (header[1] != VERSION) throw new IOException(file + ": unsupported version " + header[1]);
+                for (int i = 2; i < HEADER_SIZE; i++) {
+                    if (header[i] < 0) throw new IOException(file + ": corrupted header");
+                }
+                types = new int[header[5]];
+                terms = new int[header[6]];
+                roots = new int[header[4]];
+                int[] offsets = new int[header[7] + 1];
+                ib.get(types).get(terms).get(roots).get(offsets);
+                byte[] bytes = new byte[header[8]];
+                m.position(4 * ib.position());
+                m.get(bytes);
+                strings = new String[header[7]];
+                for (int i = 0; i < strings.length; i++) {
+                    if (offsets[i] < 0 || offsets[i] > offsets[i + 1] || offsets[i + 1] > bytes.length) {
+                        throw new IOException(file + ": corrupted string table");
+                    }
+                    strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException(file + ": truncated term store");
+            }
+        }
+
+        int ntypes = header[2];
+        int nterms = header[3];
+        int[] oldTypes = new int[ntypes];
+        int[] oldTerms = new int[nterms];
+        check(file, types, ntypes, terms, nterms, roots, strings.length, oldTypes, oldTerms);
+
+        int[] ids;
+        if (Profiler.active) {
+            long start = System.nanoTime();
+            ids = Yices.loadTermStore(types, ntypes, terms, nterms, strings);
+            long finish = System.nanoTime();
+            Profiler.delta("Yices.loadTermStore", start, finish);
+        } else {
+            ids = Yices.loadTermStore(types, ntypes, terms, nterms, strings);
+        }
+        if (ids == null) throw new YicesException();
+
+        int[] typeMap = newMap(oldTypes);
+        for (int i = 0; i < ntypes; i++) typeMap[oldTypes[i]] = ids[i];
+        int[] termMap = newMap(oldTerms);
+        for (int i = 0; i < nterms; i++) termMap[oldTerms[i]] = ids[ntypes + i];
+        int[] newRoots = new int[roots.length];
+        for (int i = 0; i < roots.length; i++) newRoots[i] = ids[ntypes + roots[i]];
+        return new Remapping(termMap, typeMap, newRoots, nterms, ntypes);
+    }
+
+    private static int[] newMap(int[] old) {
+        int max = -1;
+        for (int x : old) max = Math.max(max, x);
+        int[] map = new int[max + 1];
+        Arrays.fill(map, -1);
+        return map;
+    }
+
+    /*
+     * Check that the records are well formed so that the native code can trust them,
+     * and collect the old ids.
+     */
+    private static void check(Path file, int[] types, int ntypes, int[] terms, int nterms, int[] roots, int nstrings,
+                              int[] oldTypes, int[] oldTerms) throws IOException {
+        int k = 0;
+        for (int i = 0; i < ntypes; i++) {
+            if (k + 4 > types.length) throw corrupted(file);
+            int kind = types[k + 1];
+            int n = types[k + 3];
+            if (n < 0 || k + 4 + n > types.length || types[k] < 0) throw corrupted(file);
+            checkRef(file, types[k + 2], nstrings, true);
+            switch (kind) {
+            case BOOL_TYPE: case INT_TYPE: case REAL_TYPE: case UNINTERPRETED_TYPE:
+                break;
+            case BV_TYPE: case SCALAR_TYPE:
+                if (n != 1) throw corrupted(file);
+                break;
+            case TUPLE_TYPE: case FUNCTION_TYPE:
+                if (n < (kind == TUPLE_TYPE ? 1 : 2)) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, types[k + 4 + j], i, false);
+                break;
+            default:
+                throw corrupted(file);
+            }
+            oldTypes[i] = types[k];
+            k += 4 + n;
+        }
+        k = 0;
+        for (int i = 0; i < nterms; i++) {
+            if (k + 5 > terms.length) throw corrupted(file);
+            int kind = terms[k + 1];
+            int n = terms[k + 4];
+            if (n < 0 || k + 5 + n > terms.length || terms[k] < 0) throw corrupted(file);
+            checkRef(file, terms[k + 2], ntypes, false);
+            checkRef(file, terms[k + 3], nstrings, true);
+            int op = k + 5;
+            switch (Constructor.idToConstructor(kind)) {
+            case BOOL_CONSTANT: case SCALAR_CONSTANT:
+                if (n != 1) throw corrupted(file);
+                break;
+            case ARITH_CONSTANT: case BV_CONSTANT:
+                if (n != 1) throw corrupted(file);
+                checkRef(file, terms[op], nstrings, false);
+                break;
+            case VARIABLE: case UNINTERPRETED_TERM:
+                break;
+            case SELECT_TERM: case BIT_TERM:
+                if (n != 2 || terms[op] < 0) throw corrupted(file);
+                checkRef(file, terms[op + 1], i, false);
+                break;
+            case ARITH_SUM: case BV_SUM:
+                if (n % 2 != 0) throw corrupted(file);
+                for (int j = 0; j < n; j += 2) {
+                    checkRef(file, terms[op + j], nstrings, false);
+                    checkRef(file, terms[op + j + 1], i, true);
+                }
+                break;
+            case POWER_PRODUCT:
+                if (n % 2 != 0) throw corrupted(file);
+                for (int j = 0; j < n; j += 2) checkRef(file, terms[op + j], i, false);
+                break;
+            case ITE_TERM:
+                if (n != 3) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, terms[op + j], i, false);
+                break;
+            case ARITH_GE_ATOM:
+                // saved as reported by the term explorer: (t, 0)
+                if (n != 1 && n != 2) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, terms[op + j], i, false);
+                break;
+            case NOT_TERM: case ABS: case CEIL: case FLOOR: case IS_INT_ATOM:
+                if (n != 1) throw corrupted(file);
+                checkRef(file, terms[op], i, false);
+                break;
+            case TUPLE_TERM: case OR_TERM: case XOR_TERM: case BV_ARRAY: case DISTINCT_TERM:
+                if (n < 1) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, terms[op + j], i, false);
+                break;
+            case APP_TERM: case FORALL_TERM: case LAMBDA_TERM:
+                if (n < 2) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, terms[op + j], i, false);
+                break;
+            case UPDATE_TERM:
+                if (n < 3) throw corrupted(file);
+                for (int j = 0; j < n; j++) checkRef(file, terms[op + j], i, false);
+                break;
+            case CONSTRUCTOR_ERROR: case ARITH_ROOT_ATOM:
+                throw corrupted(file);
+            default:
+                // binary terms and atoms
+                if (n != 2) throw corrupted(file);
+                checkRef(file, terms[op], i, false);
+                checkRef(file, terms[op + 1], i, false);
+                break;
+            }
+            oldTerms[i] = terms[k];
+            k += 5 + n;
+        }
+        for (int r : roots) checkRef(file, r, nterms, false);
+    }
+
+    private static void checkRef(Path file, int ref, int limit, boolean optional) throws IOException {
+        if (ref >= limit || ref < (optional ? -1 : 0)) throw corrupted(file);
+    }
+
+    private static IOException corrupted(Path file) {
+        return new IOException(file + ": corrupted term store");
+    }
+}
@@ -0,0 +1,155 @@
+package com.sri.yices;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of term ids (or type ids) stored as primitive ints.
+ *
+ * This is the Java analogue of Yices's term_vector_t. It can be passed
+ * to the Terms constructors, Context.assertFormulas, and Model.valuesAsTerms
+ * instead of a List<Integer>, so that building large conjunctions or sums
+ * does not box every term. The n-ary operations (and, or, add, substArray,
+ * assertFormulas, ...) pass the storage and size() to the natives, so no
+ * copy is made on the Java side either.
+ */
+public final class TermVector {
+    private static final int[] EMPTY = new int[0];
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private int[] data;
+    private int size;
+
+    /*
+     * Empty vector
+     */
+    public TermVector() {
+        data = EMPTY;
+        size = 0;
+    }
+
+    /*
+     * Empty vector with room for capacity elements
+     */
+    public TermVector(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("negative capacity");
+        data = capacity == 0 ? EMPTY : new int[capacity];
+        size = 0;
+    }
+
+    /*
+     * Vector initialized with a copy of a
+     */
+    public static TermVector of(int... a) {
+        return wrap(Arrays.copyOf(a, a.length));
+    }
+
+    /*
+     * Vector that uses a as its storage (no copy)
+     */
+    static TermVector wrap(int[] a) {
+        TermVector v = new TermVector();
+        v.data = a;
+        v.size = a.length;
+        return v;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("index: " + i + ", size: " + size);
+        return data[i];
+    }
+
+    public void set(int i, int t) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("index: " + i + ", size: " + size);
+        data[i] = t;
+    }
+
+    /*
+     * Make sure there's room for n elements
+     */
+    public void ensureCapacity(int n) {
+        if (n > data.length) {
+            int k = data.length + (data.length >> 1);
+            if (k < DEFAULT_CAPACITY) k = DEFAULT_CAPACITY;
+            if (k < n) k = n;
+            data = Arrays.copyOf(data, k);
+        }
+    }
+
+    public TermVector add(int t) {
+        if (size == data.length) ensureCapacity(size + 1);
+        data[size++] = t;
+        return this;
+    }
+
+    public TermVector addAll(int... a) {
+        ensureCapacity(size + a.length);
+        System.arraycopy(a, 0, data, size, a.length);
+        size += a.length;
+        return this;
+    }
+
+    public TermVector addAll(TermVector v) {
+        ensureCapacity(size + v.size);
+        System.arraycopy(v.data, 0, data, size, v.size);
+        size += v.size;
+        return this;
+    }
+
+    /*
+     * Remove all elements but keep the storage
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /*
+     * Copy of the elements
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /*
+     * Storage passed to the native API with size(): the elements are
+     * data()[0 ... size()-1], the rest of the array is unused.
+     * - the array is still owned by this vector: the native code
+     *   can update it in place (cf. Terms.substArray)
+     */
+    int[] data() {
+        return data;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(data[i]);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        TermVector v = (TermVector) obj;
+        if (size != v.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (data[i] != v.data[i]) return false;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,295 @@
+package com.sri.yices;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Traversals of term DAGs.
+ *
+ * A walker is built by a single native call that collects all the terms
+ * reachable from a set of roots. Each term is a node, numbered from 0 to
+ * size() - 1 in post-order (the children of a node have smaller indices),
+ * and shared subterms are stored once. For each node, the walker stores
+ * the term, its constructor, its type, its projection index, and the node
+ * indices of its children. No JNI call is needed after that.
+ *
+ * Children are as in Terms.children. For projections (SELECT_TERM, BIT_TERM),
+ * the child is the projection argument and projIndex gives the index.
+ *
+ * Traversals visit every node once. Folds compute one value per node from
+ * the values of its children; the values are kept in a memo table indexed
+ * by node.
+ */
+public final class TermWalker {
+    // node record: term, constructor, type, projection index, number of children, children
+    private static final int TERM = 0;
+    private static final int KIND = 1;
+    private static final int TYPE = 2;
+    private static final int PROJ = 3;
+    private static final int ARITY = 4;
+    private static final int CHILDREN = 5;
+
+    private final int[] data;
+    private final int[] offset;  // offset[i] = start of node i in data
+    private final int nnodes;
+    private final int roots;     // start of the roots in data
+
+    // term -> node index (built on demand)
+    private int[] keys;
+    private int[] values;
+
+    /*
+     * Visitor for preOrder: return false to skip the children of node
+     */
+    public interface NodeVisitor {
+        boolean visit(TermWalker w, int node);
+    }
+
+    /*
+     * Folds: compute the value of node given the values of its children,
+     * which are memo[w.child(node, i)] or memo.get(w.child(node, i))
+     */
+    public interface IntFold {
+        int apply(TermWalker w, int node, int[] memo);
+    }
+
+    public interface Fold<T> {
+        T apply(TermWalker w, int node, List<T> memo);
+    }
+
+    /*
+     * Walker for the terms reachable from roots
+     */
+    public static TermWalker of(int... roots) throws YicesException {
+        int[] data = Yices.serializeTermDag(roots);
+        if (data == null) throw new YicesException();
+        return new TermWalker(data);
+    }
+
+    public static TermWalker of(TermVector roots) throws YicesException {
+        return of(roots.toArray());
+    }
+
+    /*
+     * Walker from an array produced by Yices.serializeTermDag
+     */
+    TermWalker(int[] data) {
+        this.data = data;
+        this.nnodes = data[0];
+        this.offset = new int[nnodes];
+        int k = 1;
+        for (int i = 0; i < nnodes; i++) {
+            offset[i] = k;
+            k += CHILDREN + data[k + ARITY];
+        }
+        this.roots = k;
+    }
+
+    /*
+     * Number of nodes (distinct terms)
+     */
+    public int size() { return nnodes; }
+
+    public int numRoots() { return data[roots]; }
+
+    // node index of root i
+    public int root(int i) {
+        if (i < 0 || i >= data[roots]) throw new IndexOutOfBoundsException("root index " + i);
+        return data[roots + 1 + i];
+    }
+
+    public int term(int node) { return data[offset[node] + TERM]; }
+
+    public int constructorId(int node) { return data[offset[node] + KIND]; }
+
+    public Constructor constructor(int node) { return Constructor.idToConstructor(constructorId(node)); }
+
+    public int type(int node) { return data[offset[node] + TYPE]; }
+
+    public int projIndex(int node) { return data[offset[node] + PROJ]; }
+
+    public int numChildren(int node) { return data[offset[node] + ARITY]; }
+
+    public boolean isLeaf(int node) { return numChildren(node) == 0; }
+
+    // node index of the i-th child of node
+    public int child(int node, int i) {
+        int k = offset[node];
+        if (i < 0 || i >= data[k + ARITY]) throw new IndexOutOfBoundsException("child index " + i);
+        return data[k + CHILDREN + i];
+    }
+
+    /*
+     * Node of term t or -1 if t is not reachable from the roots
+     */
+    public int nodeOf(int t) {
+        if (keys == null) buildIndex();
+        int mask = keys.length - 1;
+        for (int j = hash(t) & mask; keys[j] >= 0; j = (j + 1) & mask) {
+            if (keys[j] == t) return values[j];
+        }
+        return -1;
+    }
+
+    private static int hash(int t) {
+        int h = t * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void buildIndex() {
+        int n = Integer.highestOneBit(Math.max(2 * nnodes, 2)) << 1;
+        int[] k = new int[n];
+        int[] v = new int[n];
+        Arrays.fill(k, -1);
+        int mask = n - 1;
+        for (int i = 0; i < nnodes; i++) {
+            int t = term(i);
+            int j = hash(t) & mask;
+            while (k[j] >= 0) j = (j + 1) & mask;
+            k[j] = t;
+            v[j] = i;
+        }
+        values = v;
+        keys = k;
+    }
+
+    /*
+     * Visit every node after its children, in increasing node order
+     */
+    public void postOrder(IntConsumer visitor) {
+        for (int i = 0; i < nnodes; i++) visitor.accept(i);
+    }
+
+    /*
+     * Depth-first visit from the roots: every node is visited before its children,
+     * and at most once.
+     */
+    public void preOrder(NodeVisitor visitor) {
+        boolean[] visited = new boolean[nnodes];
+        int[] stack = new int[Math.max(nnodes, 1)];
+        int top = 0;
+        for (int r = numRoots() - 1; r >= 0; r--) {
+            int n = root(r);
+            if (! visited[n]) {
+                visited[n] = true;
+                stack[top++] = n;
+            }
+        }
+        while (top > 0) {
+            int n = stack[--top];
+            if (visitor.visit(this, n)) {
+                int k = offset[n];
+                for (int i = data[k + ARITY] - 1; i >= 0; i--) {
+                    int c = data[k + CHILDREN + i];
+                    if (! visited[c]) {
+                        visited[c] = true;
+                        stack[top++] = c;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Fold: returns the memo table (value of each node)
+     */
+    public int[] foldInt(IntFold f) {
+        int[] memo = new int[nnodes];
+        for (int i = 0; i < nnodes; i++) {
+            memo[i] = f.apply(this, i, memo);
+        }
+        return memo;
+    }
+
+    public <T> List<T> fold(Fold<T> f) {
+        List<T> memo = new ArrayList<T>(nnodes);
+        for (int i = 0; i < nnodes; i++) {
+            memo.add(f.apply(this, i, memo));
+        }
+        return memo;
+    }
+
+    /*
+     * Rewriting: f returns the new term for each node (given the new terms
+     * for its children in memo). Returns the new terms for the roots.
+     */
+    public int[] rewrite(IntFold f) {
+        int[] memo = foldInt(f);
+        int[] result = new int[numRoots()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = memo[root(i)];
+        }
+        return result;
+    }
+
+    /*
+     * Values of the children of node in memo
+     */
+    public int[] childValues(int node, int[] memo) {
+        int k = offset[node];
+        int[] a = new int[data[k + ARITY]];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = memo[data[k + CHILDREN + i]];
+        }
+        return a;
+    }
+
+    /*
+     * Metrics
+     * - treeSize: number of nodes if shared subterms are counted every time they
+     *   occur (summed over the roots, Long.MAX_VALUE if that overflows)
+     * - depth: length of the longest path from a root to a leaf (0 for atomic roots)
+     * - count: number of nodes with constructor c
+     */
+    public long treeSize() {
+        long[] size = new long[nnodes];
+        for (int i = 0; i < nnodes; i++) {
+            int k = offset[i];
+            long s = 1;
+            for (int j = 0; j < data[k + ARITY]; j++) {
+                s = saturatedAdd(s, size[data[k + CHILDREN + j]]);
+            }
+            size[i] = s;
+        }
+        long total = 0;
+        for (int r = 0; r < numRoots(); r++) {
+            total = saturatedAdd(total, size[root(r)]);
+        }
+        return total;
+    }
+
+    private static long saturatedAdd(long x, long y) {
+        long s = x + y;
+        return s < 0 ? Long.MAX_VALUE : s;
+    }
+
+    public int depth() {
+        int[] depth = foldInt((w, n, memo) -> {
+                int d = 0;
+                for (int i = 0; i < w.numChildren(n); i++) {
+                    d = Math.max(d, memo[w.child(n, i)] + 1);
+                }
+                return d;
+            });
+        int d = 0;
+        for (int r = 0; r < numRoots(); r++) {
+            d = Math.max(d, depth[root(r)]);
+        }
+        return d;
+    }
+
+    public int count(Constructor c) {
+        int id = c.getIndex();
+        int n = 0;
+        for (int i = 0; i < nnodes; i++) {
+            if (data[offset[i] + KIND] == id) n ++;
+        }
+        return n;
+    }
+
+    public String toString() {
+        return "TermWalker(" + nnodes + " nodes, " + numRoots() + " roots)";
+    }
+}
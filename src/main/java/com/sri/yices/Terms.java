@@ -1,8 +1,14 @@
 package com.sri.yices;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -344,6 +350,10 @@ public class Terms {
         return distinct(args.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int distinct(TermVector args) throws YicesException {
+        return distinct(args.toArray());
+    }
+
 
     static public int forall(int[] vars, int body) throws YicesException {
         int t = Yices.forall(vars, body);
@@ -358,6 +368,10 @@ public class Terms {
         return t;
     }
 
+    static public int forall(TermVector vars, int body) throws YicesException {
+        return forall(vars.toArray(), body);
+    }
+
     static public int exists(int[] vars, int body) throws YicesException {
         int t = Yices.exists(vars, body);
         if (t < 0) throw new YicesException();
@@ -371,6 +385,10 @@ public class Terms {
         return t;
     }
 
+    static public int exists(TermVector vars, int body) throws YicesException {
+        return exists(vars.toArray(), body);
+    }
+
     static public int lambda(int[] vars, int body) throws YicesException {
         int t = Yices.lambda(vars, body);
         if (t < 0) throw new YicesException();
@@ -384,6 +402,10 @@ public class Terms {
         return t;
     }
 
+    static public int lambda(TermVector vars, int body) throws YicesException {
+        return lambda(vars.toArray(), body);
+    }
+
     /**
      * Tuple operations
      */
@@ -397,6 +419,10 @@ public class Terms {
         return tuple(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int tuple(TermVector arg) throws YicesException {
+        return tuple(arg.toArray());
+    }
+
     static public int select(int idx, int tuple) throws YicesException {
         int t = Yices.select(idx, tuple);
         if (t < 0) throw new YicesException();
@@ -414,7 +440,7 @@ public class Terms {
      */
     static public int funApplication(int fun, int... arg) throws YicesException {
         int t;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             t = Yices.funApplication(fun, arg);
             long finish = System.nanoTime();
@@ -430,6 +456,10 @@ public class Terms {
         return funApplication(fun, arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int funApplication(int fun, TermVector arg) throws YicesException {
+        return funApplication(fun, arg.toArray());
+    }
+
     static public int functionUpdate(int fun, int[] arg, int newval) throws YicesException {
         int t = Yices.functionUpdate(fun, arg, newval);
         if (t < 0) throw new YicesException();
@@ -442,6 +472,10 @@ public class Terms {
         return t;
     }
 
+    static public int functionUpdate(int fun, TermVector arg, int newval) throws YicesException {
+        return functionUpdate(fun, arg.toArray(), newval);
+    }
+
     // Update1 is the common case where arg[] is a single argument
     static public int functionUpdate1(int fun, int arg, int newval) throws YicesException {
         int t = Yices.functionUpdate1(fun, arg, newval);
@@ -468,6 +502,20 @@ public class Terms {
         return and(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int and(TermVector arg) throws YicesException {
+        int t = Yices.andPrefix(arg.data(), arg.size());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
+    // the IntBuffer variants use the terms between the buffer's position and limit;
+    // the buffer must be direct (cf. newTermBuffer)
+    static public int and(IntBuffer arg) throws YicesException {
+        int t = Yices.directAnd(Yices.checkDirect(arg), arg.position(), arg.remaining());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
     static public int or(int... arg) throws YicesException {
         int t = Yices.or(arg);
         if (t < 0) throw new YicesException();
@@ -478,6 +526,18 @@ public class Terms {
         return or(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int or(TermVector arg) throws YicesException {
+        int t = Yices.orPrefix(arg.data(), arg.size());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
+    static public int or(IntBuffer arg) throws YicesException {
+        int t = Yices.directOr(Yices.checkDirect(arg), arg.position(), arg.remaining());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
 
     static public int xor(int... arg) throws YicesException {
         int t = Yices.xor(arg);
@@ -489,6 +549,10 @@ public class Terms {
         return xor(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int xor(TermVector arg) throws YicesException {
+        return xor(arg.toArray());
+    }
+
 
     static public int iff(int left, int right) throws YicesException {
         int t = Yices.iff(left, right);
@@ -555,6 +619,18 @@ public class Terms {
         return add(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int add(TermVector arg) throws YicesException {
+        int t = Yices.sumPrefix(arg.data(), arg.size());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
+    static public int add(IntBuffer arg) throws YicesException {
+        int t = Yices.directSum(Yices.checkDirect(arg), arg.position(), arg.remaining());
+        if (t < 0) throw new YicesException();
+        return t;
+    }
+
     // product of all elements of arg
     static public int mul(int... arg) throws YicesException {
         int t = Yices.mul(arg);
@@ -566,6 +642,10 @@ public class Terms {
         return mul(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int mul(TermVector arg) throws YicesException {
+        return mul(arg.toArray());
+    }
+
 
     // real division: x/y
     static public int div(int x, int y) throws YicesException {
@@ -885,6 +965,10 @@ public class Terms {
         return bvAdd(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvAdd(TermVector arg) throws YicesException {
+        return bvAdd(arg.toArray());
+    }
+
     static public int bvAnd(int... arg) throws YicesException {
         if (arg.length == 0) throw new IllegalArgumentException("empty input");
         int t = Yices.bvAnd(arg);
@@ -896,6 +980,10 @@ public class Terms {
         return bvAnd(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvAnd(TermVector arg) throws YicesException {
+        return bvAnd(arg.toArray());
+    }
+
     static public int bvOr(int... arg) throws YicesException {
         if (arg.length == 0) throw new IllegalArgumentException("empty input");
         int t = Yices.bvOr(arg);
@@ -907,6 +995,10 @@ public class Terms {
         return bvOr(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvOr(TermVector arg) throws YicesException {
+        return bvOr(arg.toArray());
+    }
+
     static public int bvXor(int... arg) throws YicesException {
         if (arg.length == 0) throw new IllegalArgumentException("empty input");
         int t = Yices.bvXor(arg);
@@ -918,6 +1010,10 @@ public class Terms {
         return bvXor(arg.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvXor(TermVector arg) throws YicesException {
+        return bvXor(arg.toArray());
+    }
+
     // shift by constants: n is a constant shift amount
     static public int bvShiftLeft0(int arg, int n) throws YicesException {
         if (n < 0) throw new IllegalArgumentException("shift amount can't be negative");
@@ -997,6 +1093,10 @@ public class Terms {
         return bvFromBoolArray(a.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvFromBoolArray(TermVector a) throws YicesException {
+        return bvFromBoolArray(a.toArray());
+    }
+
     // concat: high-order bits are from the left
     static public int bvConcat(int left, int right) throws YicesException {
         int t = Yices.bvConcat(left, right);
@@ -1014,6 +1114,10 @@ public class Terms {
         return bvConcat(a.stream().mapToInt(Integer::intValue).toArray());
     }
 
+    static public int bvConcat(TermVector a) throws YicesException {
+        return bvConcat(a.toArray());
+    }
+
     // n copies of a concatenated
     static public int bvRepeat(int a, int n) throws YicesException {
         if (n <= 0) throw new IllegalArgumentException("n must be positive");
@@ -1158,7 +1262,7 @@ public class Terms {
 
     static public boolean isBitvector(int x) {
         boolean retval;
-        if (Profiler.enabled) {
+        if (Profiler.active) {
             long start = System.nanoTime();
             retval = Yices.termIsBitvector(x);
             long finish = System.nanoTime();
@@ -1304,6 +1408,33 @@ public class Terms {
         return b;
     }
 
+    // value of x packed into 64bit words, w[0] = low-order bits
+    // returns the number of bits of x
+    static public int bvConstValueAsWords(int x, long[] w) throws YicesException {
+        int n = Yices.bvConstValueAsWords(x, w);
+        if (n == -2) throw new IllegalArgumentException("array too small");
+        if (n < 0) throw new YicesException();
+        return n;
+    }
+
+    // value of x as a long (zero-extended): x must have at most 64 bits
+    static public long bvConstValueAsLong(int x) throws YicesException {
+        long[] w = new long[1];
+        int n = Yices.bvConstValueAsWords(x, w);
+        if (n == -2) throw new IllegalArgumentException("bitvector has more than 64 bits");
+        if (n < 0) throw new YicesException();
+        return w[0];
+    }
+
+    // value of x as an unsigned BigInteger
+    static public BigInteger bvConstValueAsBigInteger(int x) throws YicesException {
+        int n = Yices.termBitSize(x);
+        if (n <= 0) throw new YicesException();
+        long[] w = new long[(n + 63) >>> 6];
+        bvConstValueAsWords(x, w);
+        return Yices.wordsToBigInteger(w);
+    }
+
     // value of an arithmetic constant returned as a BigRational
     static public BigRational arithConstValue(int x) throws YicesException {
         BigRational r = Yices.rationalConstValue(x);
@@ -1370,6 +1501,144 @@ public class Terms {
         return t;
     }
 
+    /*
+     * Parse many terms with a single call to Yices:
+     * - parseAll(source): source is a sequence of expressions (separated by spaces
+     *   or comments); the result contains one term per expression
+     * - parseAll(exprs, out): parse exprs[i] and store the term in out[i]
+     * Expressions that can't be parsed get the term -1 and are listed in the result's
+     * failures (with the error position).
+     */
+    static public ParseResult parseAll(CharSequence source) throws YicesException {
+        byte[] text = source.toString().getBytes(StandardCharsets.UTF_8);
+        TermVector offsets = new TermVector();
+        TermVector positions = new TermVector();
+        splitExpressions(text, offsets, positions);
+        int n = positions.size() / 2;
+        return parseTerms(text, offsets.toArray(), positions.toArray(), new int[n]);
+    }
+
+    static public ParseResult parseAll(String[] exprs, int[] out) throws YicesException {
+        if (out.length < exprs.length) throw new IllegalArgumentException("output array is too small");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int[] offsets = new int[2 * exprs.length];
+        int[] positions = new int[2 * exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            byte[] b = exprs[i].getBytes(StandardCharsets.UTF_8);
+            offsets[2 * i] = buffer.size();
+            buffer.write(b, 0, b.length);
+            offsets[2 * i + 1] = buffer.size();
+            positions[2 * i] = 1;
+            positions[2 * i + 1] = 1;
+        }
+        return parseTerms(buffer.toByteArray(), offsets, positions, out);
+    }
+
+    static private ParseResult parseTerms(byte[] text, int[] offsets, int[] positions, int[] out) throws YicesException {
+        int n = offsets.length / 2;
+        int[] errors = new int[3 * n];
+        String[] messages = new String[n];
+        int failed;
+        if (Profiler.active) {
+            long start = System.nanoTime();
+            failed = Yices.parseTerms(text, offsets, out, errors, messages);
+            long finish = System.nanoTime();
+            Profiler.delta("Yices.parseTerms", start, finish);
+        } else {
+            failed = Yices.parseTerms(text, offsets, out, errors, messages);
+        }
+        if (failed == -2) throw new IllegalArgumentException("invalid expression offsets");
+        if (failed < 0) throw new YicesException();
+        List<ParseResult.Failure> failures = new ArrayList<ParseResult.Failure>(failed);
+        for (int i = 0; i < n && failures.size() < failed; i++) {
+            if (out[i] < 0) {
+                // the error position is relative to the start of the expression
+                int line = errors[3 * i + 1];
+                int column = errors[3 * i + 2];
+                if (line <= 1) {
+                    column = line == 1 ? positions[2 * i + 1] + column - 1 : positions[2 * i + 1];
+                    line = positions[2 * i];
+                } else {
+                    line = positions[2 * i] + line - 1;
+                }
+                failures.add(new ParseResult.Failure(i, line, column, errors[3 * i], messages[i]));
+            }
+        }
+        return new ParseResult(out, n, failures);
+    }
+
+    /*
+     * Split text into expressions:
+     * - the start and end offsets of each expression are added to offsets
+     * - the line and column where each expression starts are added to positions
+     * Comments start with ';' and extend to the end of the line.
+     */
+    static private void splitExpressions(byte[] text, TermVector offsets, TermVector positions) {
+        int n = text.length;
+        int i = 0;
+        int line = 1;
+        int lineStart = 0;  // offset of the current line
+        while (i < n) {
+            byte c = text[i];
+            if (c == ';') {
+                while (i < n && text[i] != '\n') i ++;
+            } else if (isSpace(c)) {
+                if (c == '\n') {
+                    line ++;
+                    lineStart = i + 1;
+                }
+                i ++;
+            } else {
+                offsets.add(i);
+                positions.add(line);
+                positions.add(i - lineStart + 1);
+                int depth = 0;
+                do {
+                    c = text[i];
+                    if (c == '"') {
+                        // string: skip to the closing quote
+                        i ++;
+                        while (i < n && text[i] != '"') {
+                            if (text[i] == '\\' && i + 1 < n) i ++;
+                            if (text[i] == '\n') {
+                                line ++;
+                                lineStart = i + 1;
+                            }
+                            i ++;
+                        }
+                        i ++;
+                    } else if (c == ';') {
+                        while (i < n && text[i] != '\n') i ++;
+                    } else if (c == '(') {
+                        depth ++;
+                        i ++;
+                    } else if (c == ')') {
+                        depth --;
+                        i ++;
+                    } else if (isSpace(c)) {
+                        if (c == '\n') {
+                            line ++;
+                            lineStart = i + 1;
+                        }
+                        i ++;
+                    } else {
+                        // atom
+                        while (i < n && ! isDelimiter(text[i])) i ++;
+                    }
+                } while (depth > 0 && i < n);
+                offsets.add(Math.min(i, n));
+            }
+        }
+    }
+
+    static private boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+    }
+
+    static private boolean isDelimiter(byte c) {
+        return isSpace(c) || c == '(' || c == ')' || c == ';' || c == '"';
+    }
+
     /*
      * Substitutions
      *
@@ -1393,6 +1662,10 @@ public class Terms {
         return subst(t, av, amap);
      }
 
+     static public int subst(int t, TermVector v, TermVector map) throws YicesException {
+         return subst(t, v.toArray(), map.toArray());
+     }
+
      static public void substArray(int[] a, int[] v, int[] map) throws YicesException {
          if (v.length != map.length) throw new IllegalArgumentException("bad substitution");
          int code = Yices.substTermArray(a, v, map);
@@ -1409,4 +1682,28 @@ public class Terms {
             a.set(i, aa[i]);
         }
     }
+
+    // the substitution is applied in place to the elements of a
+    static public void substArray(TermVector a, TermVector v, TermVector map) throws YicesException {
+        if (v.size() != map.size()) throw new IllegalArgumentException("bad substitution");
+        int code = Yices.substTermArrayPrefix(a.data(), a.size(), v.toArray(), map.toArray(), v.size());
+        if (code < 0) throw new YicesException();
+    }
+
+    // the substitution is applied in place to the elements of a between position and limit
+    static public void substArray(IntBuffer a, IntBuffer v, IntBuffer map) throws YicesException {
+        if (v.remaining() != map.remaining()) throw new IllegalArgumentException("bad substitution");
+        int code = Yices.directSubstTermArray(Yices.checkDirect(a), a.position(), a.remaining(),
+                                              Yices.checkDirect(v), v.position(),
+                                              Yices.checkDirect(map), map.position(), map.remaining());
+        if (code < 0) throw new YicesException();
+    }
+
+    /*
+     * Allocate a direct buffer for n terms, in native byte order,
+     * for use with the IntBuffer variants above.
+     */
+    static public IntBuffer newTermBuffer(int n) {
+        return ByteBuffer.allocateDirect(4 * n).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
 }
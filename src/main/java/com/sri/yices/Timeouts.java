@@ -0,0 +1,91 @@
+package com.sri.yices;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Shared timer that stops the search of contexts whose timeout has expired.
+ *
+ * A single daemon thread serves all the timed checks: arming a timeout
+ * is just a call to schedule and disarming it removes the task from the
+ * queue, so no thread is created per call.
+ *
+ * Yices ignores stopSearch if the context is not searching yet, so a stop
+ * request that arrives just before the search starts would be lost. The
+ * alarms and stopUntilDone repeat stopSearch every STOP_RETRY_NANOS until
+ * the check returns.
+ */
+final class Timeouts {
+    private static final ScheduledThreadPoolExecutor timer;
+    private static final long STOP_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static {
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "yices-timeouts");
+                t.setDaemon(true);
+                return t;
+            });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private Timeouts() { }
+
+    /*
+     * Pending call to stopSearch
+     */
+    static final class Alarm implements Runnable {
+        private final Context context;
+        private ScheduledFuture<?> future;
+        private boolean disarmed;
+        private boolean fired;
+
+        Alarm(Context context) {
+            this.context = context;
+        }
+
+        public synchronized void run() {
+            if (! disarmed) {
+                fired = true;
+                context.stopSearch();
+                // again until disarm is called (the check has returned)
+                future = timer.schedule(this, STOP_RETRY_NANOS, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /*
+         * Cancel the alarm: after this returns, stopSearch is not running
+         * and won't be called.
+         * - return true if the alarm went off
+         */
+        synchronized boolean disarm() {
+            disarmed = true;
+            if (future != null) future.cancel(false);
+            return fired;
+        }
+    }
+
+    /*
+     * Call context.stopSearch() after nanos nanoseconds unless the alarm is disarmed
+     */
+    static Alarm arm(Context context, long nanos) {
+        Alarm a = new Alarm(context);
+        ScheduledFuture<?> f = timer.schedule(a, nanos, TimeUnit.NANOSECONDS);
+        synchronized (a) {
+            if (a.future == null) a.future = f;
+        }
+        return a;
+    }
+
+    /*
+     * Call stop now, then again on the timer every STOP_RETRY_NANOS as long as it returns true.
+     * stop must call stopSearch and return true while the check is running, and return
+     * false once it has returned (under a lock that makes sure the context is still open).
+     */
+    static void stopUntilDone(BooleanSupplier stop) {
+        if (stop.getAsBoolean()) {
+            timer.schedule(() -> stopUntilDone(stop), STOP_RETRY_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+}
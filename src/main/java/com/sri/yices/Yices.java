@@ -1,6 +1,9 @@
 package com.sri.yices;
 
 import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class Yices {
     private static boolean is_ready;
@@ -69,7 +72,23 @@ public final class Yices {
      */
     private static native void init();
     private static native void exit();
-    public static native void reset();
+    private static native void doReset();
+
+    public static void reset() {
+        doReset();
+        termEpoch.incrementAndGet();
+    }
+
+    /*
+     * Term epoch: incremented by reset and by the garbage collector,
+     * which can delete terms and types. Caches of term ids (see TermCache)
+     * use it to detect that their entries may no longer be valid.
+     */
+    private static final AtomicInteger termEpoch = new AtomicInteger();
+
+    public static int getTermEpoch() {
+        return termEpoch.get();
+    }
 
     /*
      * Error reports
@@ -184,20 +203,27 @@ public final class Yices {
     public static native byte[] testMpzToBytes(String s);
     public static native void testBytesToMpz(byte[] b);
 
+    // small values go through yices_int64 or yices_rational64
     private static native int bytesToIntConstant(byte[] b);
     public static int mkIntConstant(BigInteger z) {
+        if (z.bitLength() < 64) return mkIntConstant(z.longValue());
         return bytesToIntConstant(z.toByteArray());
     }
 
     private static native int bytesToRationalConstant(byte[] num, byte[] den);
     public static int mkRationalConstant(BigRational r) {
+        long[] a = new long[2];
+        if (r.toLongs(a)) return mkRationalConstant(a[0], a[1]);
+        BigInteger num = r.getNumerator();
+        BigInteger den = r.getDenominator();
+        if (den.signum() > 0 && num.bitLength() < 64 && den.bitLength() < 64) {
+            return mkRationalConstant(num.longValue(), den.longValue());
+        }
         return bytesToRationalConstant(r.numToBytes(), r.denToBytes());
     }
 
     public static int mkRationalConstant(BigInteger num, BigInteger den) {
-        BigRational r = new BigRational(num, den);
-        r.normalize();
-        return mkRationalConstant(r);
+        return mkRationalConstant(new BigRational(num, den));
     }
 
     public static native int parseRational(String s);
@@ -367,6 +393,20 @@ public final class Yices {
     public static native int termProjIndex(int x);
     public static native int termProjArg(int x);
 
+    // DAG reachable from roots as a flat array (see TermWalker), null if there's an error
+    public static native int[] serializeTermDag(int[] roots);
+
+    // components of sums and products: the component's term is stored in term[0]
+    // sumComponent returns the coefficient as a string, bvSumComponent returns it as a
+    // binary string, and productComponent returns the exponent (null or -1 for error)
+    public static native String sumComponent(int t, int i, int[] term);
+    public static native String bvSumComponent(int t, int i, int[] term);
+    public static native int productComponent(int t, int i, int[] term);
+
+    // rebuild the types and terms of a snapshot (see TermStore), null if there's an error
+    // (names are set only if all the records are rebuilt)
+    public static native int[] loadTermStore(int[] types, int ntypes, int[] terms, int nterms, String[] strings);
+
     /*
      * Values of constant terms
      * To access the value of rational constants, we provide two functions:
@@ -376,10 +416,23 @@ public final class Yices {
     public static native int boolConstValue(int x);      // returns -1 for error, 0 for false, 1 for true
     public static native int scalarConstantIndex(int x); // -1 for error
     public static native boolean[] bvConstValue(int x);  // null for error, or an array of n Booleans little-endian
+    // value of a bitvector constant x packed into w little-endian: w[0] = low-order 64 bits.
+    // returns the number of bits of x, -1 if x is not a bitvector constant, -2 if w is too small
+    public static native int bvConstValueAsWords(int x, long[] w);
     private static native byte[] rationalConstNumAsBytes(int x); // null for error
     private static native byte[] rationalConstDenAsBytes(int x); // null for error
 
+    // value of x in a[0]/a[1] if it fits in 64 bits:
+    // returns 0 if x is an integer, 1 if not, 2 if x doesn't fit, -1 for error
+    public static native int rationalConstValueAsLongs(int x, long[] a);
+
     public static BigRational rationalConstValue(int x) {
+        long[] a = new long[2];
+        int code = rationalConstValueAsLongs(x, a);
+        if (code == 0 || code == 1) {
+            return BigRational.valueOf(a[0], a[1]);
+        }
+        if (code < 0) return null;
         byte[] num = rationalConstNumAsBytes(x);
         byte[] den = rationalConstDenAsBytes(x);
         if (num != null && den != null) {
@@ -410,6 +463,10 @@ public final class Yices {
     // Parsing of a term (Yices syntax)
     public static native int parseTerm(String s);
 
+    // Parse several terms in one call (see Terms.parseAll): returns the number of failures,
+    // or -2 if an expression is not within text or an output array is too small
+    public static native int parseTerms(byte[] text, int[] offsets, int[] out, int[] errors, String[] messages);
+
     /*
      * Substitutions
      *
@@ -437,7 +494,12 @@ public final class Yices {
     public static native int yicesNumPosrefTerms();
     public static native int yicesNumPosrefTypes();
 
-    public static native void yicesGarbageCollect(int[] rootTerms, int[] rootTypes, boolean keepNamed);
+    private static native void garbageCollect(int[] rootTerms, int[] rootTypes, boolean keepNamed);
+
+    public static void yicesGarbageCollect(int[] rootTerms, int[] rootTypes, boolean keepNamed) {
+        garbageCollect(rootTerms, rootTypes, keepNamed);
+        termEpoch.incrementAndGet();
+    }
 
     public static void yicesGarbageCollect(boolean keepNamed) {
     yicesGarbageCollect(null, null, keepNamed);
@@ -503,18 +565,48 @@ public final class Yices {
     public static native int getRationalValue(long model, int t, long[] a);
     public static native int getDoubleValue(long model, int t, double[] a);
 
+    // Bulk variants: evaluate all terms t[0 ... n-1] in a single native call.
+    //
+    // getBoolValues and getDoubleValues store the value of t[i] in a[i].
+    // They return 0 if this works, -1 for error (a is too small or some t[i]
+    // has no value of the right type). If there's an error, a is unchanged.
+    //
+    // getIntegerValues stores the value of t[i] in a[i] if this value is an
+    // integer that fits in 64bits and sets ok[i] to true. Otherwise, ok[i] is
+    // set to false. It returns the number of values stored, or -1 if
+    // a or ok is too small.
+    public static native int getBoolValues(long model, int[] t, boolean[] a);
+    public static native int getIntegerValues(long model, int[] t, long[] a, boolean[] ok);
+    public static native int getDoubleValues(long model, int[] t, double[] a);
+
     // These return arrays of bytes suitable for conversion to BigInteger.
     // They return null if there's an error.
     private static native byte[] getIntegerValueAsBytes(long model, int t);
     private static native byte[] getRationalValueNumAsBytes(long model, int t);
     private static native byte[] getRationalValueDenAsBytes(long model, int t);
 
+    // Value of t in a[0]/a[1] if it fits in 64 bits.
+    // Returns 0 if the value is an integer, 1 if it's not an integer,
+    // 2 if it doesn't fit (use the AsBytes variants), -1 for error.
+    public static native int getNumericValue(long model, int t, long[] a);
+
     public static BigInteger getIntegerValue(long model, int t) {
+        long[] a = new long[2];
+        if (getNumericValue(model, t, a) == 0) {
+            return BigInteger.valueOf(a[0]);
+        }
+        // large value or error
         byte[] val = getIntegerValueAsBytes(model, t);
         return val != null ? new BigInteger(val) : null;
     }
 
     public static BigRational getRationalValue(long model, int t) {
+        long[] a = new long[2];
+        int code = getNumericValue(model, t, a);
+        if (code == 0 || code == 1) {
+            return BigRational.valueOf(a[0], a[1]);
+        }
+        if (code < 0) return null;
         byte[] num = getRationalValueNumAsBytes(model, t);
         byte[] den = getRationalValueDenAsBytes(model, t);
         if (num != null && den != null) {
@@ -528,6 +620,25 @@ public final class Yices {
     // return null if there's an error
     public static native boolean[] getBvValue(long model, int t);
 
+    // Value of a bitvector term packed into 64bit words (little endian):
+    // - w[0] = low-order 64 bits, unused high-order bits of the last word are 0
+    // - w must have at least (n+63)/64 elements where n = number of bits in t
+    // return n if this works, -1 if there's an error, -2 if w is too small
+    public static native int getBvValueAsWords(long model, int t, long[] w);
+
+    // Convert a little-endian array of 64bit words to a non-negative BigInteger
+    static BigInteger wordsToBigInteger(long[] w) {
+        byte[] b = new byte[8 * w.length + 1]; // b[0] = 0 for the sign
+        int k = b.length;
+        for (long x : w) {
+            for (int i=0; i<8; i++) {
+                b[--k] = (byte) x;
+                x >>>= 8;
+            }
+        }
+        return new BigInteger(b);
+    }
+
     // Value (i.e., index) of a scalar or uninterpreted term
     // return -1 if there's an error.
     public static native int getScalarValue(long model, int t);
@@ -680,6 +791,20 @@ public final class Yices {
      */
     public static native int exportToDimacs(int[] terms, String filename, boolean simplify_cnf, int[] status);
 
+    /*
+     * Bit-blast n formulas then export the CNF to an anonymous in-memory file
+     * (a memfd on Linux, an unlinked temporary file elsewhere)
+     * - result = array of size 2: result[0] = ordinal of the status,
+     *   result[1] = file descriptor or -1 (the caller must close it with closeFileDescriptor)
+     *  returns:
+     *   1 if the CNF was constructed
+     *   0 if the formulas are solved without CNF or after simplifying
+     *  -1 if there's a Yices error
+     *  -2 if result is too small, -3 if terms is empty, -4 if the file can't be created
+     */
+    public static native int exportToDimacsFd(int[] terms, boolean simplify_cnf, int[] result);
+    public static native void closeFileDescriptor(int fd);
+
     /*
      * Given a term t and a model 'model', the support of t in model is a set of uninterpreted
      * terms whose values are sufficient to fix the value of t in model. For example, if
@@ -779,6 +904,48 @@ public final class Yices {
     public static native int valExpandMapping(long model, int tag, int id, YVal[] args, YVal[] value);
 
 
+    /*
+     * Direct buffer variants of the array-heavy calls
+     * - each buffer b is passed with an offset and a number of elements n:
+     *   the native code uses b[offset ... offset + n - 1] in place, without copying,
+     *   except directAnd and directOr: yices_and and yices_or reorder their argument,
+     *   so these two copy the buffer (on the stack if n is small).
+     * - b must be a direct IntBuffer in native byte order (see Terms.newTermBuffer)
+     * - these return -1 if there's an error (including bounds errors)
+     */
+    public static native int directAnd(IntBuffer arg, int offset, int n);
+    public static native int directOr(IntBuffer arg, int offset, int n);
+    public static native int directSum(IntBuffer arg, int offset, int n);
+    public static native int directAssertFormulas(long ctx, IntBuffer t, int offset, int n);
+    // substitution v[0 ... m-1] := map[0 ... m-1] applied in place to a[0 ... n-1]
+    public static native int directSubstTermArray(IntBuffer a, int aoffset, int n,
+                                                  IntBuffer v, int voffset,
+                                                  IntBuffer map, int moffset, int m);
+    public static native int directValuesAsTerms(long model, IntBuffer in, int ioffset, IntBuffer out, int ooffset, int n);
+
+    /*
+     * Array prefix variants (for TermVector): these use a[0 ... n-1] and copy only
+     * these n elements. They return -1 if there's an error; if n is out of bounds,
+     * they throw an ArrayIndexOutOfBoundsException.
+     */
+    public static native int andPrefix(int[] arg, int n);
+    public static native int orPrefix(int[] arg, int n);
+    public static native int sumPrefix(int[] arg, int n);
+    public static native int assertFormulasPrefix(long ctx, int[] t, int n);
+    public static native int checkContextWithAssumptionsPrefix(long ctx, long params, int[] t, int n);
+    // substitution v[0 ... m-1] := map[0 ... m-1] applied in place to a[0 ... n-1]
+    public static native int substTermArrayPrefix(int[] a, int n, int[] v, int[] map, int m);
+    // values of in[0 ... n-1] stored in out[0 ... n-1]
+    public static native int valuesAsTermsPrefix(long model, int[] in, int n, int[] out);
+
+    // check that b can be passed to the direct variants
+    static IntBuffer checkDirect(IntBuffer b) {
+        if (!b.isDirect() || b.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException("buffer must be direct and in native byte order");
+        }
+        return b;
+    }
+
     /* <TooHardBasket> */
     // public static native int yices_val_get_algebraic_number(model_t *model, const yval_t *v, lp_algebraic_number_t *a);
     // public static native int yices_pp_model_fd(int fd, model_t *model, uint width, uint height, uint offset);
@@ -11,4 +11,9 @@ public class YicesException extends RuntimeException {
         super(Yices.errorString());
         Yices.resetError();
     }
+
+    // exception that's not caused by a Yices error
+    protected YicesException(String message) {
+        super(message);
+    }
 }
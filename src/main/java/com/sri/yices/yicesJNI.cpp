@@ -3,9 +3,19 @@
 #include <gmp.h>
 #include <yices.h>
 #include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#ifdef __linux__
+#include <sys/syscall.h>
+#endif
 
 #include <new>
 #include <limits>
+#include <vector>
+#include <string>
+#include <unordered_map>
+#include <utility>
 
 #include "com_sri_yices_Yices.h"
 
@@ -120,6 +130,67 @@ static void throw_out_of_mem_exception() {
 }
 
 
+/*
+ * CACHED CLASSES AND METHOD IDS
+ *
+ * FindClass and GetMethodID are expensive so we resolve the classes and
+ * methods we need once, when the library is loaded. We keep global
+ * references to the classes: this prevents them from being unloaded
+ * and keeps the method IDs valid.
+ *
+ * If a lookup fails in JNI_OnLoad, the corresponding entry stays NULL
+ * and the code falls back to calling FindClass.
+ */
+static jclass out_of_mem_class = NULL;      // com.sri.yices.OutOfMemory or java.lang.OutOfMemoryError
+static jclass yval_class = NULL;            // com.sri.yices.YVal
+static jmethodID yval_constructor = NULL;   // YVal(int tag, int id)
+
+static jclass global_class_ref(JNIEnv *env, const char *name) {
+  jclass c = env->FindClass(name);
+  if (c == NULL) {
+    env->ExceptionClear();
+    return NULL;
+  }
+  jclass g = reinterpret_cast<jclass>(env->NewGlobalRef(c));
+  env->DeleteLocalRef(c);
+  return g;
+}
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *) {
+  JNIEnv *env;
+
+  if (vm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+    return JNI_ERR;
+  }
+
+  out_of_mem_class = global_class_ref(env, "com/sri/yices/OutOfMemory");
+  if (out_of_mem_class == NULL) {
+    out_of_mem_class = global_class_ref(env, "java/lang/OutOfMemoryError");
+  }
+
+  yval_class = global_class_ref(env, "com/sri/yices/YVal");
+  if (yval_class != NULL) {
+    yval_constructor = env->GetMethodID(yval_class, "<init>", "(II)V");
+    if (yval_constructor == NULL) env->ExceptionClear();
+  }
+
+  return JNI_VERSION_1_6;
+}
+
+JNIEXPORT void JNICALL JNI_OnUnload(JavaVM *vm, void *) {
+  JNIEnv *env;
+
+  if (vm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+    return;
+  }
+  if (out_of_mem_class != NULL) env->DeleteGlobalRef(out_of_mem_class);
+  if (yval_class != NULL) env->DeleteGlobalRef(yval_class);
+  out_of_mem_class = NULL;
+  yval_class = NULL;
+  yval_constructor = NULL;
+}
+
+
 /*
  * Code that throws the Java exception
  */
@@ -128,7 +199,8 @@ static void out_of_mem_exception(JNIEnv *env) {
   jint code;
 
   code = 0;
-  e = env->FindClass("com/sri/yices/OutOfMemory");
+  e = out_of_mem_class;
+  if (e == NULL) e = env->FindClass("com/sri/yices/OutOfMemory");
   if (e == NULL) e = env->FindClass("java/lang/OutOfMemoryError");
 
   if (e != NULL) {
@@ -203,6 +275,48 @@ static jbooleanArray convertToBoolArray(JNIEnv *env, int32_t n, const int32_t *a
   return b;
 }
 
+/*
+ * Pack an array of n bits into 64bit words (little-endian)
+ * - a[i] is bit i: it's interpreted as 0 if a[i] == 0 and as 1 otherwise
+ * - w must have room for (n + 63)/64 words
+ * - bit i of the bitvector is stored in w[i/64] at position i%64
+ *   (i.e., w[0] contains the 64 low-order bits)
+ * - the unused high-order bits of the last word are set to 0
+ */
+static void pack_bits_to_words(uint32_t n, const int32_t *a, jlong *w) {
+  uint32_t nw = (n + 63) >> 6;
+
+  for (uint32_t k=0; k<nw; k++) {
+    uint64_t x = 0;
+    uint32_t lo = k << 6;
+    uint32_t hi = (lo + 64 < n) ? lo + 64 : n;
+    for (uint32_t i=hi; i>lo; i--) {
+      x = (x << 1) | (a[i-1] != 0);
+    }
+    w[k] = (jlong) x;
+  }
+}
+
+/*
+ * Store the packed bits of a[0 ... n-1] into the Java array w
+ * - w must have length >= (n + 63)/64 (this must be checked by the caller)
+ */
+static void set_packed_bits(JNIEnv *env, jlongArray w, uint32_t n, const int32_t *a) {
+  uint32_t nw = (n + 63) >> 6;
+
+  if (nw <= 4) {
+    jlong aux[4];
+    pack_bits_to_words(n, a, aux);
+    env->SetLongArrayRegion(w, 0, nw, aux);
+  } else {
+    jlong *aux = new jlong[nw];
+    pack_bits_to_words(n, a, aux);
+    env->SetLongArrayRegion(w, 0, nw, aux);
+    delete [] aux;
+  }
+}
+
+
 /*
  * Clone array a: make a copy
  * - return NULL and throw an exception if we can't clone
@@ -371,6 +485,43 @@ static jbyteArray mpz_to_byte_array(JNIEnv *env, mpz_t z) {
 }
 
 
+/*
+ * Check whether z fits in a signed 64-bit integer (excluding -2^63)
+ * - if so, store its value in *v and return true
+ * - mpz_export gives the magnitude of z as one 64bit word
+ *   (or nothing if z is zero)
+ */
+static bool mpz_get_int64(mpz_t z, int64_t *v) {
+  uint64_t u;
+
+  if (mpz_sizeinbase(z, 2) > 63) return false;
+  u = 0;
+  mpz_export(&u, NULL, -1, sizeof(u), 0, 0, z);
+  *v = mpz_sgn(z) < 0 ? - static_cast<int64_t>(u) : static_cast<int64_t>(u);
+  return true;
+}
+
+/*
+ * Store q in a[0] (numerator) and a[1] (denominator) if both fit in 64 bits
+ * - return 0 if q is an integer that fits
+ * - return 1 if q is not an integer and fits
+ * - return 2 if q does not fit (a is unchanged)
+ * - a must have length >= 2
+ */
+static jint mpq_to_long_pair(JNIEnv *env, mpq_t q, jlongArray a) {
+  int64_t num, den;
+  jlong aux[2];
+
+  if (mpz_get_int64(mpq_numref(q), &num) && mpz_get_int64(mpq_denref(q), &den)) {
+    aux[0] = num;
+    aux[1] = den;
+    env->SetLongArrayRegion(a, 0, 2, aux);
+    return den == 1 ? 0 : 1;
+  }
+  return 2;
+}
+
+
 /*
  * Inverse operation: convert a byte array to mpz
  * - n = array size, b = array of bytes
@@ -626,7 +777,7 @@ JNIEXPORT void JNICALL Java_com_sri_yices_Yices_exit(JNIEnv *, jclass) {
   yices_exit();
 }
 
-JNIEXPORT void JNICALL Java_com_sri_yices_Yices_reset(JNIEnv *, jclass) {
+JNIEXPORT void JNICALL Java_com_sri_yices_Yices_doReset(JNIEnv *, jclass) {
   yices_reset();
 }
 
@@ -2604,6 +2755,396 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_termProjArg(JNIEnv *env, jclass,
   return yices_proj_arg(x);
 }
 
+/*
+ * Components of sums and products (for TermStore)
+ * - sumComponent: returns the coefficient of component i of arithmetic sum t as a
+ *   string "num/den" or "num" and stores the term in term[0] (-1 for the constant)
+ * - bvSumComponent: returns the coefficient of component i of bitvector sum t as a
+ *   binary string (most significant bit first) and stores the term in term[0]
+ * - productComponent: returns the exponent of factor i of power product t and
+ *   stores the term in term[0]
+ * All return NULL or -1 if there's an error.
+ */
+JNIEXPORT jstring JNICALL Java_com_sri_yices_Yices_sumComponent(JNIEnv *env, jclass, jint t, jint i, jintArray term) {
+  jstring result = NULL;
+  mpq_t q;
+  term_t x;
+
+  mpq_init(q);
+  try {
+    if (yices_sum_component(t, i, q, &x) >= 0) {
+      std::vector<char> buffer(mpz_sizeinbase(mpq_numref(q), 10) + mpz_sizeinbase(mpq_denref(q), 10) + 3);
+      mpq_get_str(buffer.data(), 10, q);
+      result = convertToString(env, buffer.data());
+      set_int_region(env, term, 0, 1, &x);
+    }
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+  mpq_clear(q);
+  return result;
+}
+
+JNIEXPORT jstring JNICALL Java_com_sri_yices_Yices_bvSumComponent(JNIEnv *env, jclass, jint t, jint i, jintArray term) {
+  jstring result = NULL;
+  uint32_t n = yices_term_bitsize(t);
+  term_t x;
+
+  if (n == 0) return NULL;
+  try {
+    std::vector<int32_t> bits(n);
+    if (yices_bvsum_component(t, i, bits.data(), &x) >= 0) {
+      std::vector<char> buffer(n + 1);
+      for (uint32_t j = 0; j < n; j++) {
+        buffer[j] = bits[n - 1 - j] ? '1' : '0';
+      }
+      buffer[n] = '\0';
+      result = convertToString(env, buffer.data());
+      set_int_region(env, term, 0, 1, &x);
+    }
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_productComponent(JNIEnv *env, jclass, jint t, jint i, jintArray term) {
+  jint result = -1;
+  term_t x;
+  uint32_t d;
+
+  try {
+    if (yices_product_component(t, i, &x, &d) >= 0) {
+      result = d;
+      set_int_region(env, term, 0, 1, &x);
+    }
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+  return result;
+}
+
+/*
+ * Rebuild the types and terms of a TermStore snapshot.
+ *
+ * types contains ntypes records: old id, kind, name, number of operands, operands
+ * where kind is one of the STORE_xxx_TYPE codes below.
+ * terms contains nterms records: old id, constructor, type, name, number of operands, operands
+ * where constructor is a Yices term constructor.
+ * Names, rational and bitvector constants are indices in strings (-1 for no name).
+ * Types and children are indices of previous records. See TermStore.java for the operands.
+ *
+ * Return an array of ntypes + nterms elements: the new types then the new terms,
+ * or NULL if there's an error.
+ */
+enum {
+  STORE_BOOL_TYPE = 0,
+  STORE_INT_TYPE = 1,
+  STORE_REAL_TYPE = 2,
+  STORE_BV_TYPE = 3,
+  STORE_SCALAR_TYPE = 4,
+  STORE_UNINTERPRETED_TYPE = 5,
+  STORE_TUPLE_TYPE = 6,
+  STORE_FUNCTION_TYPE = 7,
+};
+
+static term_t store_build_term(const int32_t *rec, const std::vector<int32_t> &ids, const std::vector<std::string> &strings,
+                               int32_t ntypes, std::vector<int32_t> &aux) {
+  int32_t kind = rec[1];
+  type_t tau = ids[rec[2]];
+  int32_t n = rec[4];
+  const int32_t *op = rec + 5;
+  term_t t;
+
+  aux.clear();
+  switch (kind) {
+  case YICES_BOOL_CONSTANT:
+    return op[0] ? yices_true() : yices_false();
+  case YICES_ARITH_CONSTANT:
+    return yices_parse_rational(strings[op[0]].c_str());
+  case YICES_BV_CONSTANT:
+    return yices_parse_bvbin(strings[op[0]].c_str());
+  case YICES_SCALAR_CONSTANT:
+    return yices_constant(tau, op[0]);
+  case YICES_VARIABLE:
+    return yices_new_variable(tau);
+  case YICES_UNINTERPRETED_TERM:
+    return yices_new_uninterpreted_term(tau);
+  case YICES_SELECT_TERM:
+    return yices_select(op[0] + 1, ids[ntypes + op[1]]);
+  case YICES_BIT_TERM:
+    return yices_bitextract(ids[ntypes + op[1]], op[0]);
+  case YICES_ARITH_SUM:
+  case YICES_BV_SUM:
+    // pairs (coefficient, term)
+    for (int32_t i = 0; i < n; i += 2) {
+      term_t c = kind == YICES_ARITH_SUM ? yices_parse_rational(strings[op[i]].c_str()) : yices_parse_bvbin(strings[op[i]].c_str());
+      if (c < 0) return c;
+      if (op[i + 1] >= 0) {
+        c = kind == YICES_ARITH_SUM ? yices_mul(c, ids[ntypes + op[i + 1]]) : yices_bvmul(c, ids[ntypes + op[i + 1]]);
+        if (c < 0) return c;
+      }
+      aux.push_back(c);
+    }
+    return kind == YICES_ARITH_SUM ? yices_sum(aux.size(), aux.data()) : yices_bvsum(aux.size(), aux.data());
+  case YICES_POWER_PRODUCT:
+    // pairs (term, exponent)
+    for (int32_t i = 0; i < n; i += 2) {
+      term_t x = ids[ntypes + op[i]];
+      t = yices_type_is_bitvector(tau) ? yices_bvpower(x, op[i + 1]) : yices_power(x, op[i + 1]);
+      if (t < 0) return t;
+      aux.push_back(t);
+    }
+    return yices_type_is_bitvector(tau) ? yices_bvproduct(aux.size(), aux.data()) : yices_product(aux.size(), aux.data());
+  default:
+    break;
+  }
+
+  // composite terms: the operands are the children
+  for (int32_t i = 0; i < n; i++) {
+    aux.push_back(ids[ntypes + op[i]]);
+  }
+  term_t *a = aux.data();
+  switch (kind) {
+  case YICES_ITE_TERM: return yices_ite(a[0], a[1], a[2]);
+  case YICES_APP_TERM: return yices_application(a[0], n - 1, a + 1);
+  case YICES_UPDATE_TERM: return yices_update(a[0], n - 2, a + 1, a[n - 1]);
+  case YICES_TUPLE_TERM: return yices_tuple(n, a);
+  case YICES_EQ_TERM: return yices_eq(a[0], a[1]);
+  case YICES_DISTINCT_TERM: return yices_distinct(n, a);
+  case YICES_FORALL_TERM: return yices_forall(n - 1, a, a[n - 1]);
+  case YICES_LAMBDA_TERM: return yices_lambda(n - 1, a, a[n - 1]);
+  case YICES_NOT_TERM: return yices_not(a[0]);
+  case YICES_OR_TERM: return yices_or(n, a);
+  case YICES_XOR_TERM: return yices_xor(n, a);
+  case YICES_BV_ARRAY: return yices_bvarray(n, a);
+  case YICES_BV_DIV: return yices_bvdiv(a[0], a[1]);
+  case YICES_BV_REM: return yices_bvrem(a[0], a[1]);
+  case YICES_BV_SDIV: return yices_bvsdiv(a[0], a[1]);
+  case YICES_BV_SREM: return yices_bvsrem(a[0], a[1]);
+  case YICES_BV_SMOD: return yices_bvsmod(a[0], a[1]);
+  case YICES_BV_SHL: return yices_bvshl(a[0], a[1]);
+  case YICES_BV_LSHR: return yices_bvlshr(a[0], a[1]);
+  case YICES_BV_ASHR: return yices_bvashr(a[0], a[1]);
+  case YICES_BV_GE_ATOM: return yices_bvge_atom(a[0], a[1]);
+  case YICES_BV_SGE_ATOM: return yices_bvsge_atom(a[0], a[1]);
+  case YICES_ARITH_GE_ATOM:
+    // the term explorer reports (t >= 0) with children t and 0
+    return n == 2 ? yices_arith_geq_atom(a[0], a[1]) : yices_arith_geq0_atom(a[0]);
+  case YICES_ABS: return yices_abs(a[0]);
+  case YICES_CEIL: return yices_ceil(a[0]);
+  case YICES_FLOOR: return yices_floor(a[0]);
+  case YICES_RDIV: return yices_division(a[0], a[1]);
+  case YICES_IDIV: return yices_idiv(a[0], a[1]);
+  case YICES_IMOD: return yices_imod(a[0], a[1]);
+  case YICES_IS_INT_ATOM: return yices_is_int_atom(a[0]);
+  case YICES_DIVIDES_ATOM: return yices_divides_atom(a[0], a[1]);
+  default:
+    return -1;
+  }
+}
+
+static type_t store_build_type(const int32_t *rec, const std::vector<int32_t> &ids, std::vector<int32_t> &aux) {
+  int32_t n = rec[3];
+  const int32_t *op = rec + 4;
+
+  switch (rec[1]) {
+  case STORE_BOOL_TYPE: return yices_bool_type();
+  case STORE_INT_TYPE: return yices_int_type();
+  case STORE_REAL_TYPE: return yices_real_type();
+  case STORE_BV_TYPE: return yices_bv_type(op[0]);
+  case STORE_SCALAR_TYPE: return yices_new_scalar_type(op[0]);
+  case STORE_UNINTERPRETED_TYPE: return yices_new_uninterpreted_type();
+  case STORE_TUPLE_TYPE:
+  case STORE_FUNCTION_TYPE:
+    aux.clear();
+    for (int32_t i = 0; i < n; i++) {
+      aux.push_back(ids[op[i]]);
+    }
+    return rec[1] == STORE_TUPLE_TYPE ? yices_tuple_type(n, aux.data()) : yices_function_type(n - 1, aux.data(), aux[n - 1]);
+  default:
+    return -1;
+  }
+}
+
+JNIEXPORT jintArray JNICALL Java_com_sri_yices_Yices_loadTermStore(JNIEnv *env, jclass, jintArray types, jint ntypes,
+                                                                  jintArray terms, jint nterms, jobjectArray strings) {
+  jintArray result = NULL;
+  jboolean copy_types, copy_terms;
+  int32_t *ty = cloneIntArray(env, types, &copy_types);
+  if (ty == NULL) return NULL;
+  int32_t *te = cloneIntArray(env, terms, &copy_terms);
+  if (te == NULL) {
+    freeClonedIntArray(env, types, ty, &copy_types);
+    return NULL;
+  }
+
+  try {
+    jsize nstrings = env->GetArrayLength(strings);
+    std::vector<std::string> s(nstrings);
+    bool ok = true;
+    for (jsize i = 0; ok && i < nstrings; i++) {
+      jstring js = (jstring) env->GetObjectArrayElement(strings, i);
+      const char *c = env->GetStringUTFChars(js, NULL);
+      if (c == NULL) {
+        out_of_mem_exception(env);
+        ok = false;
+      } else {
+        s[i] = c;
+        env->ReleaseStringUTFChars(js, c);
+      }
+      env->DeleteLocalRef(js);
+    }
+
+    std::vector<int32_t> ids(ntypes + nterms);
+    std::vector<int32_t> aux;
+    // names are given to the types and terms only if all records are built:
+    // pairs (index in ids, index in s)
+    std::vector<std::pair<int32_t, int32_t>> names;
+
+    size_t k = 0;
+    for (jint i = 0; ok && i < ntypes; i++) {
+      type_t tau = store_build_type(ty + k, ids, aux);
+      if (tau < 0) {
+        ok = false;
+      } else {
+        if (ty[k + 2] >= 0) names.push_back(std::make_pair(i, ty[k + 2]));
+        ids[i] = tau;
+        k += 4 + ty[k + 3];
+      }
+    }
+
+    k = 0;
+    for (jint i = 0; ok && i < nterms; i++) {
+      term_t t = store_build_term(te + k, ids, s, ntypes, aux);
+      if (t < 0) {
+        ok = false;
+      } else {
+        if (te[k + 3] >= 0) names.push_back(std::make_pair(ntypes + i, te[k + 3]));
+        ids[ntypes + i] = t;
+        k += 5 + te[k + 4];
+      }
+    }
+
+    if (ok) {
+      for (size_t j = 0; j < names.size(); j++) {
+        int32_t i = names[j].first;
+        const char *name = s[names[j].second].c_str();
+        if (i < ntypes) {
+          yices_set_type_name(ids[i], name);
+        } else {
+          yices_set_term_name(ids[i], name);
+        }
+      }
+      result = convertToIntArray(env, ntypes + nterms, ids.data());
+    }
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+
+  freeClonedIntArray(env, terms, te, &copy_terms);
+  freeClonedIntArray(env, types, ty, &copy_types);
+  return result;
+}
+
+/*
+ * Serialize the DAG of terms reachable from roots into a single array (for TermWalker).
+ *
+ * The nodes are numbered 0 ... n-1 in post-order: children come before their parents.
+ * The result is
+ *   n, node_0, ..., node_{n-1}, k, r_0, ..., r_{k-1}
+ * where k = number of roots and r_i = node index of roots[i].
+ * Each node is stored as
+ *   term, constructor, type, projection index (0 if not a projection),
+ *   number of children, node index of each child
+ *
+ * Return NULL if one of the roots is not a valid term.
+ */
+JNIEXPORT jintArray JNICALL Java_com_sri_yices_Yices_serializeTermDag(JNIEnv *env, jclass, jintArray roots) {
+#ifdef YICES_AT_LEAST_2_6_2
+  jintArray result = NULL;
+  jsize n = env->GetArrayLength(roots);
+  jboolean copy;
+  int32_t *a = cloneIntArray(env, roots, &copy);
+  if (n > 0 && a == NULL) return NULL;
+
+  term_vector_t aux;
+  yices_init_term_vector(&aux);
+
+  try {
+    std::vector<int32_t> out;
+    std::unordered_map<int32_t, int32_t> index; // term -> node index or -1 if not complete
+    std::vector<int32_t> stack;
+    int32_t nnodes = 0;
+    bool ok = true;
+
+    out.push_back(0); // number of nodes, set at the end
+    for (jsize i = 0; ok && i < n; i++) {
+      stack.push_back(a[i]);
+      while (ok && !stack.empty()) {
+        int32_t t = stack.back();
+        std::unordered_map<int32_t, int32_t>::iterator it = index.find(t);
+        if (it != index.end() && it->second >= 0) {
+          // already serialized
+          stack.pop_back();
+          continue;
+        }
+        int32_t kind = yices_term_constructor(t);
+        if (kind < 0) {
+          ok = false;
+          break;
+        }
+        aux.size = 0;
+        if (! yices_term_is_atomic(t) && yices_term_children(t, &aux) < 0) {
+          ok = false;
+          break;
+        }
+        if (it == index.end()) {
+          // first visit: serialize the children first
+          index[t] = -1;
+          for (uint32_t j = aux.size; j > 0; j--) {
+            int32_t c = aux.data[j - 1];
+            if (c >= 0 && index.find(c) == index.end()) stack.push_back(c);
+          }
+        } else {
+          // all children are serialized
+          stack.pop_back();
+          out.push_back(t);
+          out.push_back(kind);
+          out.push_back(yices_type_of_term(t));
+          out.push_back(kind == YICES_SELECT_TERM || kind == YICES_BIT_TERM ? yices_proj_index(t) : 0);
+          size_t count = out.size();
+          out.push_back(0);
+          for (uint32_t j = 0; j < aux.size; j++) {
+            if (aux.data[j] >= 0) out.push_back(index[aux.data[j]]);
+          }
+          out[count] = (int32_t) (out.size() - count - 1);
+          index[t] = nnodes;
+          nnodes ++;
+        }
+      }
+    }
+
+    if (ok) {
+      out[0] = nnodes;
+      out.push_back(n);
+      for (jsize i = 0; i < n; i++) {
+        out.push_back(index[a[i]]);
+      }
+      result = convertToIntArray(env, (int32_t) out.size(), out.data());
+    }
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+
+  yices_delete_term_vector(&aux);
+  freeClonedIntArray(env, roots, a, &copy);
+  return result;
+#else
+  return NULL;
+#endif
+}
+
 JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_boolConstValue(JNIEnv *env, jclass, jint x) {
   int32_t val;
   jint result;
@@ -2658,6 +3199,52 @@ JNIEXPORT jbooleanArray JNICALL Java_com_sri_yices_Yices_bvConstValue(JNIEnv *en
 }
 
 
+/*
+ * Value of a bitvector constant x packed into 64bit words
+ * - the value is stored in w[0 ... (n+63)/64 - 1] where n = number of bits in x
+ * - w[0] contains the low-order bits, unused high-order bits are set to 0
+ *
+ * Returns:
+ *  n if this works
+ *  -1 if x is not a bitvector constant
+ *  -2 if w is too small
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_bvConstValueAsWords(JNIEnv *env, jclass, jint x, jlongArray w) {
+  jint result = -1;
+
+  if (yices_term_constructor(x) == YICES_BV_CONSTANT) {
+    int32_t n = yices_term_bitsize(x);
+
+    assert(n >= 0);
+
+    if (env->GetArrayLength(w) < ((n + 63) >> 6)) {
+      result = -2;
+    } else {
+      try {
+        if (n <= 64) {
+          // this should be the common case
+          int32_t a[64];
+          int32_t code = yices_bv_const_value(x, a);
+          assert(code >= 0);
+          set_packed_bits(env, w, n, a);
+        } else {
+          int32_t *tmp =  new int32_t[n];
+          int32_t code = yices_bv_const_value(x, tmp);
+          assert(code >= 0);
+          set_packed_bits(env, w, n, tmp);
+          delete [] tmp;
+        }
+        result = n;
+      } catch (std::bad_alloc &ba) {
+        out_of_mem_exception(env);
+      }
+    }
+  }
+
+  return result;
+}
+
+
 /*
  * Numerator of a rational constant x
  * - return NULL if x is not a rational constant
@@ -2694,6 +3281,30 @@ JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_rationalConstDenAsBytes(JN
 }
 
 
+/*
+ * Value of a rational constant x as a pair of longs
+ * - returns 0 if x is an integer that fits in 64 bits: the value is in a[0], a[1] is 1
+ * - returns 1 if x = a[0]/a[1] where both fit in 64 bits
+ * - returns 2 if x is too large: the value must be obtained with rationalConstNumAsBytes
+ *   and rationalConstDenAsBytes
+ * - returns -1 if x is not a rational constant or a is too small
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_rationalConstValueAsLongs(JNIEnv *env, jclass, jint x, jlongArray a) {
+  jint result = -1;
+  mpq_t q;
+
+  if (env->GetArrayLength(a) >= 2) {
+    mpq_init(q);
+    if (yices_rational_const_value(x, q) >= 0) {
+      result = mpq_to_long_pair(env, q, a);
+    }
+    mpq_clear(q);
+  }
+
+  return result;
+}
+
+
 
 /*
  * TERM NAMES
@@ -2810,6 +3421,81 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_parseTerm(JNIEnv *env, jclass, j
   return result;
 }
 
+/*
+ * Parse n expressions stored in text (UTF-8): expression i is
+ * text[offsets[2i] ... offsets[2i+1]-1] and n = length of offsets / 2.
+ * - out[i] = the term or -1 if expression i can't be parsed
+ * - for a failed expression: errors[3i], errors[3i+1], errors[3i+2] = error code,
+ *   line, and column, and messages[i] = the error message
+ * Return the number of failed expressions, -1 if we run out of memory, or -2 if the
+ * arguments are invalid: out, errors, or messages are too small, or an expression
+ * is not within text (0 <= offsets[2i] <= offsets[2i+1] <= length of text).
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_parseTerms(JNIEnv *env, jclass, jbyteArray text, jintArray offsets,
+                                                          jintArray out, jintArray errors, jobjectArray messages) {
+  jint failures = 0;
+  jsize n = env->GetArrayLength(offsets) / 2;
+  jsize length = env->GetArrayLength(text);
+  if (env->GetArrayLength(out) < n || env->GetArrayLength(errors) / 3 < n || env->GetArrayLength(messages) < n) {
+    return -2;
+  }
+  jbyte *bytes = env->GetByteArrayElements(text, NULL);
+  if (bytes == NULL) {
+    out_of_mem_exception(env);
+    return -1;
+  }
+  jint *off = env->GetIntArrayElements(offsets, NULL);
+  if (off == NULL) {
+    env->ReleaseByteArrayElements(text, bytes, JNI_ABORT);
+    out_of_mem_exception(env);
+    return -1;
+  }
+  for (jsize i = 0; i < n; i++) {
+    if (off[2 * i] < 0 || off[2 * i] > off[2 * i + 1] || off[2 * i + 1] > length) {
+      env->ReleaseIntArrayElements(offsets, off, JNI_ABORT);
+      env->ReleaseByteArrayElements(text, bytes, JNI_ABORT);
+      return -2;
+    }
+  }
+
+  try {
+    std::vector<char> buffer;
+    std::vector<int32_t> terms(n);
+    std::vector<int32_t> codes(3 * (size_t) n, 0);
+
+    for (jsize i = 0; i < n; i++) {
+      buffer.assign(bytes + off[2 * i], bytes + off[2 * i + 1]);
+      buffer.push_back('\0');
+      int32_t t = yices_parse_term(buffer.data());
+      terms[i] = t;
+      if (t < 0) {
+        error_report_t *report = yices_error_report();
+        codes[3 * i] = report->code;
+        codes[3 * i + 1] = report->line;
+        codes[3 * i + 2] = report->column;
+        char *e = yices_error_string();
+        jstring msg = convertToString(env, e);
+        yices_free_string(e);
+        if (msg != NULL) {
+          env->SetObjectArrayElement(messages, i, msg);
+          env->DeleteLocalRef(msg);
+        }
+        yices_clear_error();
+        failures ++;
+      }
+    }
+    set_int_region(env, out, 0, n, terms.data());
+    set_int_region(env, errors, 0, 3 * n, codes.data());
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+    failures = -1;
+  }
+
+  env->ReleaseIntArrayElements(offsets, off, JNI_ABORT);
+  env->ReleaseByteArrayElements(text, bytes, JNI_ABORT);
+  return failures;
+}
+
 
 /*
  * Substitution defined by v[] and map[] applied to term t
@@ -2919,7 +3605,7 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_yicesNumPosrefTypes(JNIEnv *, jc
 }
 
 // call the garbage collector
-JNIEXPORT void JNICALL Java_com_sri_yices_Yices_yicesGarbageCollect(JNIEnv *env, jclass,
+JNIEXPORT void JNICALL Java_com_sri_yices_Yices_garbageCollect(JNIEnv *env, jclass,
                                                                     jintArray rootTerms, jintArray rootTypes, jboolean keepNamed) {
 
   // rootTerms and rootTypes may be null.
@@ -3395,34 +4081,168 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getDoubleValue(JNIEnv *env, jcla
 
 
 /*
- * Value of term t in model, returned as a byte array.
- * This works if the value of t is an integer. Then the result can be used for converting to BigInteger.
+ * BULK MODEL QUERIES
  *
- * Return null if there's an error.
+ * These evaluate an array of terms t[0 ... n-1] in one JNI call:
+ * - the term array is pinned once and the results are written
+ *   into the output array a (which must have length >= n)
+ * - this avoids one JNI crossing and one auxiliary Java array per term.
  */
-JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_getIntegerValueAsBytes(JNIEnv *env, jclass, jlong model, jint t) {
-  jbyteArray result = NULL;
-  mpz_t z;
-
-  try {
-    mpz_init(z);
-    if (yices_get_mpz_value(reinterpret_cast<model_t *>(model), t, z) >= 0) {
-      result = mpz_to_byte_array(env, z);
-    }
-    mpz_clear(z);
-  } catch (std::bad_alloc &ba) {
-    out_of_mem_exception(env);
-  }
-
-  return result;
-}
-
 
 /*
- * Value of term t assumed to be a rational.
- * - we return t's value in two steps: one call to get the numerator, one call to get the denominator.
- */
-JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_getRationalValueNumAsBytes(JNIEnv *env, jclass, jlong model, jint t) {
+ * Boolean values: a[i] := value of t[i]
+ * - returns 0 if this works, -1 for error.
+ *
+ * Possible errors:
+ * - a is too small
+ * - some t[i] is not a valid Boolean term (the Yices error report is set)
+ *   In this case, a is left unchanged.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getBoolValues(JNIEnv *env, jclass, jlong model, jintArray t, jbooleanArray a) {
+  jsize n = env->GetArrayLength(t);
+  jint result = -1;
+
+  if (env->GetArrayLength(a) >= n) {
+    term_t *terms = array2terms(env, t, NULL);
+    jboolean *b = env->GetBooleanArrayElements(a, NULL);
+    if (terms == NULL || b == NULL) {
+      out_of_mem_exception(env);
+    } else {
+      try {
+        int32_t val;
+        result = 0;
+        for (jsize i=0; i<n; i++) {
+          if (yices_get_bool_value(reinterpret_cast<model_t*>(model), terms[i], &val) < 0) {
+            result = -1;
+            break;
+          }
+          b[i] = (val != 0);
+        }
+      } catch (std::bad_alloc &ba) {
+        result = -1;
+        out_of_mem_exception(env);
+      }
+    }
+    if (b != NULL) env->ReleaseBooleanArrayElements(a, b, result < 0 ? JNI_ABORT : 0);
+    if (terms != NULL) release_term_elems(env, t, terms);
+  }
+
+  return result;
+}
+
+/*
+ * Integer values: a[i] := value of t[i] if it fits in 64 bits
+ * - ok[i] is set to true if a[i] was stored, false otherwise
+ * - a and ok must both have length >= n
+ * - returns the number of values stored in a or -1 if a or ok is too small
+ *
+ * Terms whose value is not an integer or does not fit in 64 bits are not
+ * errors here: they are reported via ok[i] = false and the Yices error
+ * report is cleared.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getIntegerValues(JNIEnv *env, jclass, jlong model, jintArray t, jlongArray a, jbooleanArray ok) {
+  jsize n = env->GetArrayLength(t);
+  jint result = -1;
+
+  if (env->GetArrayLength(a) >= n && env->GetArrayLength(ok) >= n) {
+    term_t *terms = array2terms(env, t, NULL);
+    jlong *v = env->GetLongArrayElements(a, NULL);
+    jboolean *b = env->GetBooleanArrayElements(ok, NULL);
+    if (terms == NULL || v == NULL || b == NULL) {
+      out_of_mem_exception(env);
+    } else {
+      try {
+        assert(sizeof(int64_t) == sizeof(jlong));
+        result = 0;
+        for (jsize i=0; i<n; i++) {
+          b[i] = (yices_get_int64_value(reinterpret_cast<model_t*>(model), terms[i], reinterpret_cast<int64_t*>(v + i)) >= 0);
+          result += b[i];
+        }
+        if (result < n) {
+          yices_clear_error();
+        }
+      } catch (std::bad_alloc &ba) {
+        result = -1;
+        out_of_mem_exception(env);
+      }
+    }
+    if (b != NULL) env->ReleaseBooleanArrayElements(ok, b, result < 0 ? JNI_ABORT : 0);
+    if (v != NULL) env->ReleaseLongArrayElements(a, v, result < 0 ? JNI_ABORT : 0);
+    if (terms != NULL) release_term_elems(env, t, terms);
+  }
+
+  return result;
+}
+
+/*
+ * Double values: a[i] := value of t[i] converted to a double
+ * - returns 0 if this works, -1 for error.
+ *
+ * Possible errors:
+ * - a is too small
+ * - some t[i] is not a valid arithmetic term (the Yices error report is set)
+ *   In this case, a is left unchanged.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getDoubleValues(JNIEnv *env, jclass, jlong model, jintArray t, jdoubleArray a) {
+  jsize n = env->GetArrayLength(t);
+  jint result = -1;
+
+  if (env->GetArrayLength(a) >= n) {
+    term_t *terms = array2terms(env, t, NULL);
+    jdouble *v = env->GetDoubleArrayElements(a, NULL);
+    if (terms == NULL || v == NULL) {
+      out_of_mem_exception(env);
+    } else {
+      try {
+        result = 0;
+        for (jsize i=0; i<n; i++) {
+          if (yices_get_double_value(reinterpret_cast<model_t*>(model), terms[i], v + i) < 0) {
+            result = -1;
+            break;
+          }
+        }
+      } catch (std::bad_alloc &ba) {
+        result = -1;
+        out_of_mem_exception(env);
+      }
+    }
+    if (v != NULL) env->ReleaseDoubleArrayElements(a, v, result < 0 ? JNI_ABORT : 0);
+    if (terms != NULL) release_term_elems(env, t, terms);
+  }
+
+  return result;
+}
+
+
+/*
+ * Value of term t in model, returned as a byte array.
+ * This works if the value of t is an integer. Then the result can be used for converting to BigInteger.
+ *
+ * Return null if there's an error.
+ */
+JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_getIntegerValueAsBytes(JNIEnv *env, jclass, jlong model, jint t) {
+  jbyteArray result = NULL;
+  mpz_t z;
+
+  try {
+    mpz_init(z);
+    if (yices_get_mpz_value(reinterpret_cast<model_t *>(model), t, z) >= 0) {
+      result = mpz_to_byte_array(env, z);
+    }
+    mpz_clear(z);
+  } catch (std::bad_alloc &ba) {
+    out_of_mem_exception(env);
+  }
+
+  return result;
+}
+
+
+/*
+ * Value of term t assumed to be a rational.
+ * - we return t's value in two steps: one call to get the numerator, one call to get the denominator.
+ */
+JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_getRationalValueNumAsBytes(JNIEnv *env, jclass, jlong model, jint t) {
   jbyteArray result = NULL;
   mpq_t q;
 
@@ -3456,6 +4276,33 @@ JNIEXPORT jbyteArray JNICALL Java_com_sri_yices_Yices_getRationalValueDenAsBytes
   return result;
 }
 
+
+/*
+ * Value of an arithmetic term t in a single call:
+ * - returns 0 if the value is an integer that fits in 64 bits: it's stored in a[0]
+ * - returns 1 if the value is a[0]/a[1] where both fit in 64 bits
+ * - returns 2 if the value is too large: it must be obtained as arrays of bytes
+ * - returns -1 if t has no rational value or a is too small
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getNumericValue(JNIEnv *env, jclass, jlong model, jint t, jlongArray a) {
+  jint result = -1;
+  mpq_t q;
+
+  if (env->GetArrayLength(a) >= 2) {
+    try {
+      mpq_init(q);
+      if (yices_get_mpq_value(reinterpret_cast<model_t *>(model), t, q) >= 0) {
+        result = mpq_to_long_pair(env, q, a);
+      }
+      mpq_clear(q);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+
+  return result;
+}
+
 JNIEXPORT jbooleanArray JNICALL Java_com_sri_yices_Yices_getBvValue(JNIEnv *env, jclass, jlong model, jint t) {
   jbooleanArray result = NULL;
   uint32_t n = yices_term_bitsize(t);
@@ -3485,6 +4332,51 @@ JNIEXPORT jbooleanArray JNICALL Java_com_sri_yices_Yices_getBvValue(JNIEnv *env,
   return result;
 }
 
+/*
+ * Value of bitvector term t in model, packed into 64bit words
+ * - the value is stored in w[0 ... (n+63)/64 - 1] where n = number of bits in t
+ * - w[0] contains the low-order bits, unused high-order bits are set to 0
+ *
+ * Returns:
+ *  n if this works
+ *  -1 if t is not a bitvector term or its value can't be computed
+ *  -2 if w is too small
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getBvValueAsWords(JNIEnv *env, jclass, jlong model, jint t, jlongArray w) {
+  jint result = -1;
+  uint32_t n = yices_term_bitsize(t);
+
+  if (n > 0) {
+    if (static_cast<uint32_t>(env->GetArrayLength(w)) < ((n + 63) >> 6)) {
+      result = -2;
+    } else {
+      try {
+        if (n <= 64) {
+          int32_t a[64];
+          int32_t code = yices_get_bv_value(reinterpret_cast<model_t *>(model), t, a);
+          if (code >= 0) {
+            set_packed_bits(env, w, n, a);
+            result = n;
+          }
+        } else {
+          int32_t *tmp = new int32_t[n];
+          int32_t code = yices_get_bv_value(reinterpret_cast<model_t *>(model), t, tmp);
+          if (code >= 0) {
+            set_packed_bits(env, w, n, tmp);
+            result = n;
+          }
+          delete[] tmp;
+        }
+      } catch (std::bad_alloc &ba) {
+        out_of_mem_exception(env);
+      }
+    }
+  }
+
+  return result;
+}
+
+
 JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_getScalarValue(JNIEnv *env, jclass, jlong model, jint t) {
   int32_t val = -1;
   int32_t code;
@@ -3885,6 +4777,91 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_exportToDimacs___3ILjava_lang_St
 }
 
 
+/*
+ * Anonymous file for in-memory DIMACS export: a memfd on Linux,
+ * an unlinked temporary file otherwise. Returns -1 on error.
+ */
+static int open_anonymous_file(void) {
+  int fd = -1;
+#if defined(__linux__) && defined(SYS_memfd_create)
+  fd = (int) syscall(SYS_memfd_create, "yices-dimacs", 0);
+#endif
+  if (fd < 0) {
+    const char *dir = getenv("TMPDIR");
+    std::string path = std::string(dir != NULL ? dir : "/tmp") + "/yices-dimacs-XXXXXX";
+    std::vector<char> name(path.begin(), path.end());
+    name.push_back('\0');
+    fd = mkstemp(name.data());
+    if (fd >= 0) {
+      unlink(name.data());
+    }
+  }
+  return fd;
+}
+
+/*
+ * Export to an anonymous file
+ * - result[0] = status, result[1] = file descriptor (or -1 if no CNF was produced)
+ * returns 1 if the CNF was written, 0 if the formulas are solved, or a negative number indicating an error:
+ *  -1 = Yices error (or out of memory, with a pending exception)
+ *  -2 = result array too small, -3 = no formulas, -4 = the file could not be created
+ * (no Yices error is set in these three cases).
+ * The caller must close the file descriptor.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_exportToDimacsFd(JNIEnv *env, jclass, jintArray formulas, jboolean simplify, jintArray result) {
+#ifdef YICES_AT_LEAST_2_6_2
+  int32_t code;
+  jsize n;
+  term_t *tarr;
+  smt_status_t stat;
+  char path[64];
+  int fd;
+
+  if (env->GetArrayLength(result) < 2) {
+    return -2;
+  }
+  n = env->GetArrayLength(formulas);
+  if (n == 0) {
+    return -3;
+  }
+  fd = open_anonymous_file();
+  if (fd < 0) {
+    return -4;
+  }
+#ifdef __linux__
+  snprintf(path, sizeof(path), "/proc/self/fd/%d", fd);
+#else
+  snprintf(path, sizeof(path), "/dev/fd/%d", fd);
+#endif
+  tarr = array2terms(env, formulas, NULL);
+  if (tarr == NULL) {
+    close(fd);
+    out_of_mem_exception(env);
+    return -1;
+  }
+  code = yices_export_formulas_to_dimacs(tarr, n, path, simplify, &stat);
+  release_term_elems(env, formulas, tarr);
+  if (code != 1) {
+    close(fd);
+    fd = -1;
+  }
+  if (code >= 0) {
+    jint aux[2] = { (jint) stat, fd };
+    env->SetIntArrayRegion(result, 0, 2, aux);
+  }
+  return code;
+#else
+  return YICES_ERROR_REQUIRES_AT_LEAST_2_6_2;
+#endif
+}
+
+JNIEXPORT void JNICALL Java_com_sri_yices_Yices_closeFileDescriptor(JNIEnv *env, jclass, jint fd) {
+  if (fd >= 0) {
+    close(fd);
+  }
+}
+
+
 JNIEXPORT jintArray JNICALL Java_com_sri_yices_Yices_getSupport__JI(JNIEnv *env, jclass, jlong model, jint term){
 #ifdef YICES_AT_LEAST_2_6_2
   term_vector_t aux;
@@ -3943,6 +4920,12 @@ JNIEXPORT jintArray JNICALL Java_com_sri_yices_Yices_getSupport__J_3I(JNIEnv *en
 static jobject makeYVal(JNIEnv *env, yval_t *yval){
   jclass yvalClass;
   jmethodID constructor;
+
+  if (yval_constructor != NULL) {
+    return env->NewObject(yval_class, yval_constructor, yval->node_tag, yval->node_id);
+  }
+
+  // the cache is not set: we do the lookups
   yvalClass = env->FindClass("com/sri/yices/YVal");
   assert(yvalClass != NULL);
 
@@ -4469,6 +5452,329 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_valExpandMapping(JNIEnv *env, jc
 }
 
 
+/*
+ * DIRECT BUFFER VARIANTS
+ *
+ * These take direct java.nio.IntBuffers instead of int arrays. The buffer
+ * contents live outside the Java heap so we can pass a pointer to Yices
+ * without GetIntArrayElements (which may copy the array in and out).
+ *
+ * For each buffer argument b, we get an offset and a number of elements n:
+ * the terms are b[offset ... offset + n - 1]. The Java side must check that
+ * b is a direct buffer in native byte order.
+ */
+
+/*
+ * Pointer to b[offset] or NULL if b is not a direct buffer or if
+ * b[offset ... offset + n - 1] is out of bounds.
+ */
+static int32_t *direct_int32(JNIEnv *env, jobject b, jint offset, jint n) {
+  int32_t *p = reinterpret_cast<int32_t *>(env->GetDirectBufferAddress(b));
+
+  if (p != NULL && offset >= 0 && n >= 0 && static_cast<jlong>(offset) + n <= env->GetDirectBufferCapacity(b)) {
+    return p + offset;
+  }
+  return NULL;
+}
+
+// yices_and may reorder its argument so we work on a copy of the buffer
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directAnd(JNIEnv *env, jclass, jobject arg, jint offset, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  term_t *a = direct_int32(env, arg, offset, n);
+
+  if (a != NULL) {
+    term_t *b = aux;
+    try {
+      if (n > AUX_SIZE) {
+        b = new term_t[n];
+      }
+      memcpy(b, a, n * sizeof(term_t));
+      result = yices_and(n, b);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    if (b != aux) {
+      delete [] b;
+    }
+  }
+  return result;
+}
+
+// yices_or may reorder its argument so we work on a copy of the buffer
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directOr(JNIEnv *env, jclass, jobject arg, jint offset, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  term_t *a = direct_int32(env, arg, offset, n);
+
+  if (a != NULL) {
+    term_t *b = aux;
+    try {
+      if (n > AUX_SIZE) {
+        b = new term_t[n];
+      }
+      memcpy(b, a, n * sizeof(term_t));
+      result = yices_or(n, b);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    if (b != aux) {
+      delete [] b;
+    }
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directSum(JNIEnv *env, jclass, jobject arg, jint offset, jint n) {
+  jint result = -1;
+  term_t *a = direct_int32(env, arg, offset, n);
+
+  if (a != NULL) {
+    try {
+      result = yices_sum(n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directAssertFormulas(JNIEnv *env, jclass, jlong ctx, jobject t, jint offset, jint n) {
+  jint result = -1;
+  term_t *a = direct_int32(env, t, offset, n);
+
+  if (a != NULL) {
+    try {
+      result = yices_assert_formulas(reinterpret_cast<context_t*>(ctx), n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+  return result;
+}
+
+/*
+ * Apply the substitution defined by v[0 ... m-1] and map[0 ... m-1]
+ * to a[0 ... n-1], in place.
+ * - returns -1 if there's an error. In this case, a is unchanged.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directSubstTermArray(JNIEnv *env, jclass,
+                                                                    jobject a, jint aoffset, jint n,
+                                                                    jobject v, jint voffset,
+                                                                    jobject map, jint moffset, jint m) {
+  jint result = -1;
+  term_t *ta = direct_int32(env, a, aoffset, n);
+  term_t *tv = direct_int32(env, v, voffset, m);
+  term_t *tmap = direct_int32(env, map, moffset, m);
+
+  if (ta != NULL && tv != NULL && tmap != NULL) {
+    try {
+      result = yices_subst_term_array(m, tv, tmap, n, ta);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+  return result;
+}
+
+/*
+ * Values of in[0 ... n-1] in model, converted to terms and stored in out[0 ... n-1].
+ * - returns 0 if this works, -1 if there's an error.
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_directValuesAsTerms(JNIEnv *env, jclass, jlong model,
+                                                                   jobject input, jint ioffset,
+                                                                   jobject output, jint ooffset, jint n) {
+  jint result = -1;
+  term_t *in = direct_int32(env, input, ioffset, n);
+  term_t *out = direct_int32(env, output, ooffset, n);
+
+  if (in != NULL && out != NULL) {
+    try {
+      result = yices_term_array_value(reinterpret_cast<model_t*>(model), n, in, out);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+  return result;
+}
+
+
+/*
+ * ARRAY PREFIX VARIANTS
+ *
+ * These use the first n elements of an int array (for TermVector, whose backing
+ * array is usually larger than its size). a[0 ... n-1] is copied with
+ * GetIntArrayRegion into a small stack array or a new array, so only n elements
+ * are copied. If n is out of bounds, GetIntArrayRegion throws an
+ * ArrayIndexOutOfBoundsException and the function returns -1.
+ */
+
+/*
+ * Copy a[0 ... n-1] into aux if n <= AUX_SIZE or into a new array
+ * - return NULL if there's an exception (out of memory or out of bounds)
+ * - the result must be freed with free_int_prefix
+ */
+static int32_t *int_prefix(JNIEnv *env, jintArray a, jint n, int32_t *aux) {
+  int32_t *p = aux;
+  if (n > AUX_SIZE) {
+    try {
+      p = new int32_t[n];
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+      return NULL;
+    }
+  }
+  env->GetIntArrayRegion(a, 0, n, reinterpret_cast<jint *>(p));
+  if (env->ExceptionCheck()) {
+    if (p != aux) delete [] p;
+    return NULL;
+  }
+  return p;
+}
+
+static void free_int_prefix(int32_t *p, int32_t *aux) {
+  if (p != aux) delete [] p;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_andPrefix(JNIEnv *env, jclass, jintArray arg, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  int32_t *a = int_prefix(env, arg, n, aux);
+
+  if (a != NULL) {
+    try {
+      result = yices_and(n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    free_int_prefix(a, aux);
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_orPrefix(JNIEnv *env, jclass, jintArray arg, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  int32_t *a = int_prefix(env, arg, n, aux);
+
+  if (a != NULL) {
+    try {
+      result = yices_or(n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    free_int_prefix(a, aux);
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_sumPrefix(JNIEnv *env, jclass, jintArray arg, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  int32_t *a = int_prefix(env, arg, n, aux);
+
+  if (a != NULL) {
+    try {
+      result = yices_sum(n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    free_int_prefix(a, aux);
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_assertFormulasPrefix(JNIEnv *env, jclass, jlong ctx, jintArray t, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  int32_t *a = int_prefix(env, t, n, aux);
+
+  if (a != NULL) {
+    try {
+      result = yices_assert_formulas(reinterpret_cast<context_t*>(ctx), n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    free_int_prefix(a, aux);
+  }
+  return result;
+}
+
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_checkContextWithAssumptionsPrefix(JNIEnv *env, jclass, jlong ctx, jlong params,
+                                                                                  jintArray t, jint n) {
+  int32_t aux[AUX_SIZE];
+  jint result = -1;
+  int32_t *a = int_prefix(env, t, n, aux);
+
+  if (a != NULL) {
+    try {
+      result = yices_check_context_with_assumptions(reinterpret_cast<context_t*>(ctx), reinterpret_cast<param_t*>(params), n, a);
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    free_int_prefix(a, aux);
+  }
+  return result;
+}
+
+/*
+ * Substitution v[0 ... m-1] := map[0 ... m-1] applied to a[0 ... n-1]
+ * - a[0 ... n-1] is updated only if the substitution works
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_substTermArrayPrefix(JNIEnv *env, jclass, jintArray a, jint n,
+                                                                    jintArray v, jintArray map, jint m) {
+  int32_t aux[AUX_SIZE];
+  int32_t vaux[AUX_SIZE];
+  int32_t maux[AUX_SIZE];
+  jint result = -1;
+  int32_t *terms = int_prefix(env, a, n, aux);
+  int32_t *vars = terms == NULL ? NULL : int_prefix(env, v, m, vaux);
+  int32_t *vals = vars == NULL ? NULL : int_prefix(env, map, m, maux);
+
+  if (vals != NULL) {
+    try {
+      result = yices_subst_term_array(m, vars, vals, n, terms);
+      if (result >= 0) {
+        env->SetIntArrayRegion(a, 0, n, reinterpret_cast<jint *>(terms));
+      }
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+  }
+  if (vals != NULL) free_int_prefix(vals, maux);
+  if (vars != NULL) free_int_prefix(vars, vaux);
+  if (terms != NULL) free_int_prefix(terms, aux);
+  return result;
+}
+
+/*
+ * Values of in[0 ... n-1] stored in out[0 ... n-1]
+ */
+JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_valuesAsTermsPrefix(JNIEnv *env, jclass, jlong model,
+                                                                   jintArray input, jint n, jintArray output) {
+  int32_t aux[AUX_SIZE];
+  int32_t oaux[AUX_SIZE];
+  jint result = -1;
+  int32_t *in = int_prefix(env, input, n, aux);
+  int32_t *out = NULL;
+
+  if (in != NULL) {
+    try {
+      out = n > AUX_SIZE ? new int32_t[n] : oaux;
+      result = yices_term_array_value(reinterpret_cast<model_t*>(model), n, in, out);
+      if (result >= 0) {
+        env->SetIntArrayRegion(output, 0, n, reinterpret_cast<jint *>(out));
+      }
+    } catch (std::bad_alloc &ba) {
+      out_of_mem_exception(env);
+    }
+    if (out != NULL) free_int_prefix(out, oaux);
+    free_int_prefix(in, aux);
+  }
+  return result;
+}
+
+
 #if 0
 
 JNIEXPORT void JNICALL Java_com_sri_yices_Yices_printModel(JNIEnv *env, jclass, jint f, jlong model) {
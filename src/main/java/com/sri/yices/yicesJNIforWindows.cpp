@@ -618,7 +618,7 @@ JNIEXPORT void JNICALL Java_com_sri_yices_Yices_exit(JNIEnv *, jclass) {
   yices_exit();
 }
 
-JNIEXPORT void JNICALL Java_com_sri_yices_Yices_reset(JNIEnv *, jclass) {
+JNIEXPORT void JNICALL Java_com_sri_yices_Yices_doReset(JNIEnv *, jclass) {
   yices_reset();
 }
 
@@ -2911,7 +2911,7 @@ JNIEXPORT jint JNICALL Java_com_sri_yices_Yices_yicesNumPosrefTypes(JNIEnv *, jc
 }
 
 // call the garbage collector
-JNIEXPORT void JNICALL Java_com_sri_yices_Yices_yicesGarbageCollect(JNIEnv *env, jclass,
+JNIEXPORT void JNICALL Java_com_sri_yices_Yices_garbageCollect(JNIEnv *env, jclass,
 								    jintArray rootTerms, jintArray rootTypes, jboolean keepNamed) {
 
   // rootTerms and rootTypes may be null.
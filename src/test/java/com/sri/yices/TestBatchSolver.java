@@ -0,0 +1,79 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestBatchSolver {
+
+    @Test
+    public void testBatch() throws InterruptedException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        List<BatchSolver.Job> jobs = new ArrayList<BatchSolver.Job>();
+        for (int i = 0; i < 100; i++) {
+            // x = i is SAT, x = i and x > i is UNSAT
+            int eq = Terms.arithEq(x, Terms.intConst(i));
+            int[] formulas = i % 2 == 0 ? new int[] { eq } : new int[] { eq, Terms.arithGt(x, Terms.intConst(i)) };
+            jobs.add(new BatchSolver.Job(i % 3 == 0 ? null : "QF_LIA", formulas, new int[] { x }));
+        }
+
+        try (BatchSolver solver = new BatchSolver(2, 8)) {
+            List<BatchSolver.Outcome> ordered = new ArrayList<BatchSolver.Outcome>();
+            solver.solveAll(jobs, true, ordered::add);
+            Assert.assertEquals(ordered.size(), 100);
+            for (int i = 0; i < 100; i++) {
+                BatchSolver.Outcome o = ordered.get(i);
+                Assert.assertEquals(o.getIndex(), i);
+                if (i % 2 == 0) {
+                    Assert.assertEquals(o.getStatus(), Status.SAT);
+                    Assert.assertEquals(o.getValues()[0], Terms.intConst(i));
+                } else {
+                    Assert.assertEquals(o.getStatus(), Status.UNSAT);
+                    Assert.assertNull(o.getValues());
+                }
+            }
+
+            long[] count = { 0 };
+            solver.solveAll(jobs, false, o -> count[0] ++);
+            Assert.assertEquals(count[0], 100);
+
+            // a job with a bad formula does not break the context
+            BatchSolver.Outcome bad = solver.submit(new BatchSolver.Job("QF_LIA", new int[] { x })).join();
+            Assert.assertEquals(bad.getStatus(), Status.ERROR);
+            Assert.assertNotNull(bad.getError());
+            Assert.assertEquals(solver.submit(jobs.get(2)).join().getStatus(), Status.SAT);
+
+            Assert.assertEquals(solver.getCompletedCount(), 202);
+            Assert.assertEquals(solver.getFailedCount(), 1);
+            Assert.assertEquals(solver.getQueueLength(), 0);
+            Assert.assertTrue(solver.close(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testFailingJobs() throws InterruptedException {
+        try (BatchSolver solver = new BatchSolver(1, 4)) {
+            // a null job fails before any call to Yices: the worker must survive it
+            for (int i = 0; i < 3; i++) {
+                BatchSolver.Outcome o = solver.submit(null).join();
+                Assert.assertEquals(o.getStatus(), Status.ERROR);
+                Assert.assertTrue(o.getError().getCause() instanceof NullPointerException);
+            }
+            Assert.assertEquals(solver.getFailedCount(), 3);
+            Assert.assertTrue(solver.close(10, TimeUnit.SECONDS));
+            try {
+                solver.trySubmit(null);
+                Assert.fail("submit after close");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+}
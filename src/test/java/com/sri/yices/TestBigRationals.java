@@ -38,4 +38,69 @@ public class TestBigRationals {
         BigRational q2 = new BigRational(minus_one, ten.pow(25));
         Assert.assertEquals(q, q2);
     }
+
+    @Test
+    public void testArithmetic() {
+        BigRational half = BigRational.valueOf(1, 2);
+        BigRational third = BigRational.valueOf(-2, -6);
+        Assert.assertEquals(BigRational.valueOf(5, 6), half.add(third));
+        Assert.assertEquals(BigRational.valueOf(1, 6), half.sub(third));
+        Assert.assertEquals(BigRational.valueOf(1, 6), half.mul(third));
+        Assert.assertEquals(BigRational.valueOf(3, 2), half.div(third));
+        Assert.assertEquals(BigRational.ONE, half.add(half));
+        Assert.assertEquals(new BigRational("1/3"), third);
+        Assert.assertEquals(third.hashCode(), new BigRational("2/6").hashCode());
+        Assert.assertEquals("1/3", third.toString());
+        Assert.assertTrue(half.compareTo(third) > 0);
+        Assert.assertTrue(half.negate().compareTo(third) < 0);
+        Assert.assertEquals(-1, half.negate().signum());
+
+        // interned small integers
+        Assert.assertSame(BigRational.ZERO, half.sub(half));
+        Assert.assertSame(BigRational.valueOf(7), BigRational.valueOf(7));
+        Assert.assertEquals(BigRational.valueOf(7), BigRational.valueOf(14, 2));
+        Assert.assertTrue(BigRational.valueOf(14, 2).fitsInt());
+
+        // overflow of the long representation
+        BigRational big = BigRational.valueOf(Long.MAX_VALUE);
+        BigRational sum = big.add(big);
+        BigInteger expected = BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1);
+        Assert.assertEquals(expected, sum.getNumerator());
+        Assert.assertFalse(sum.fitsLong());
+        Assert.assertEquals(big, sum.div(BigRational.valueOf(2)));
+        Assert.assertTrue(sum.div(BigRational.valueOf(2)).fitsLong());
+        BigRational q = BigRational.valueOf(1, Long.MAX_VALUE);
+        Assert.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).pow(2), q.mul(q).getDenominator());
+        Assert.assertTrue(q.mul(q).compareTo(q) < 0);
+        Assert.assertEquals(BigRational.valueOf(Long.MIN_VALUE).negate().getNumerator(), BigInteger.valueOf(Long.MIN_VALUE).negate());
+
+        Assert.assertEquals(0.5, half.doubleValue(), 0.0);
+        Assert.assertEquals(0.5, new BigRational(expected, expected.shiftLeft(1)).doubleValue(), 0.0);
+        Assert.assertEquals(3L, BigRational.valueOf(7, 2).longValue());
+
+        // longValue and intValue truncate like BigInteger, the exact versions throw
+        BigInteger large = BigInteger.ONE.shiftLeft(64).add(BigInteger.valueOf(5));
+        BigRational r = new BigRational(large.multiply(BigInteger.valueOf(3)), BigInteger.valueOf(3));
+        Assert.assertEquals(5L, r.longValue());
+        Assert.assertEquals(5, r.intValue());
+        Assert.assertEquals((int) Long.MAX_VALUE, BigRational.valueOf(Long.MAX_VALUE).intValue());
+        Assert.assertEquals(-3, BigRational.valueOf(-7, 2).intValueExact());
+        try {
+            r.longValueExact();
+            Assert.fail("longValueExact should fail");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        try {
+            BigRational.valueOf(Long.MAX_VALUE).intValueExact();
+            Assert.fail("intValueExact should fail");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivisionByZero() {
+        BigRational.ONE.div(BigRational.ZERO);
+    }
 }
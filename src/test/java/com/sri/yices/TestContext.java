@@ -3,6 +3,16 @@ package com.sri.yices;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assume.assumeTrue;
 
 public class TestContext {
@@ -34,6 +44,289 @@ public class TestContext {
     }
 
 
+    @Test
+    public void testCensus() throws InterruptedException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        long contexts = Context.getCensus();
+        Context c = new Context();
+        Assert.assertEquals(Context.getCensus(), contexts + 1);
+        c.close();
+        c.close(); // a second close must not free the context again
+        Assert.assertEquals(Context.getCensus(), contexts);
+
+        // configs that are never closed are freed once they are collected
+        long configs = Config.getCensus();
+        long reclaimed = Config.getReclaimedCount();
+        for (int i = 0; i < 100; i++) {
+            new Config();
+        }
+        for (int i = 0; i < 50 && Config.getReclaimedCount() < reclaimed + 100; i++) {
+            System.gc();
+            Thread.sleep(10);
+            new Config().close(); // drains the reference queue
+        }
+        Assert.assertEquals(Config.getReclaimedCount(), reclaimed + 100);
+        Assert.assertEquals(Config.getCensus(), configs);
+    }
+
+    @Test
+    public void testReclaimDuringNativeCall() throws InterruptedException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+        // a second thread drains the reference queue
+        assumeTrue(Yices.isThreadSafe());
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        int f = Terms.arithEq(x, Terms.intConst(42));
+        AtomicInteger done = new AtomicInteger();
+        Thread drainer = new Thread(() -> {
+            while (done.get() == 0) {
+                System.gc();
+                new Config().close();
+            }
+        });
+        drainer.start();
+        try (Context ctx = new Context()) {
+            ctx.assertFormula(f);
+            Assert.assertEquals(ctx.check(), Status.SAT);
+            for (int i = 0; i < 20000; i++) {
+                // the model is unreachable as soon as its pointer has been loaded
+                Assert.assertEquals(ctx.getModel().integerValue(x), 42);
+                Assert.assertTrue(ctx.getModel().toString().contains("42"));
+            }
+        } finally {
+            done.set(1);
+            drainer.join();
+        }
+    }
+
+    @Test
+    public void testCheckAsync() throws InterruptedException, ExecutionException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Context ctx = new Context()) {
+            ctx.assertFormula(Terms.arithGt(x, Terms.ZERO));
+            CompletableFuture<Status> f = ctx.checkAsync(null, executor);
+            Assert.assertEquals(f.get(), Status.SAT);
+            ctx.assertFormula(Terms.arithLt(x, Terms.ZERO));
+            Assert.assertEquals(ctx.checkAsync(null, executor).get(), Status.UNSAT);
+        } finally {
+            executor.shutdown();
+        }
+
+        // rejected executions complete the future exceptionally
+        try (Context ctx = new Context()) {
+            executor = Executors.newSingleThreadExecutor();
+            executor.shutdown();
+            Context.CheckFuture f = ctx.checkAsync(null, executor);
+            Assert.assertTrue(f.isCompletedExceptionally());
+            Assert.assertTrue(f.whenTerminated().isDone());
+        }
+    }
+
+    // pigeon-hole formula: n + 1 pigeons in n holes (unsat, and hard for CDCL)
+    static int[] pigeonHole(int n) {
+        int[][] p = new int[n + 1][n];
+        TermVector v = new TermVector();
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j < n; j++) p[i][j] = Terms.newUninterpretedTerm(Types.BOOL);
+            v.add(Terms.or(p[i]));
+        }
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i <= n; i++) {
+                for (int k = i + 1; k <= n; k++) {
+                    v.add(Terms.or(Terms.not(p[i][j]), Terms.not(p[k][j])));
+                }
+            }
+        }
+        return v.toArray();
+    }
+
+    @Test
+    public void testCancelCheckAsync() throws Exception {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Context ctx = new Context()) {
+            ctx.assertFormulas(pigeonHole(12));
+            Context.CheckFuture f = ctx.checkAsync(null, executor);
+            Thread.sleep(100);
+            Assert.assertTrue(f.cancel(true));
+            Assert.assertTrue(f.isCancelled());
+            // the context can be used once the check has returned
+            f.whenTerminated().get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(ctx.getStatus(), Status.INTERRUPTED);
+            ctx.reset();
+            int x = Terms.newUninterpretedTerm(Types.INT);
+            ctx.assertFormula(Terms.arithGt(x, Terms.ZERO));
+            Assert.assertEquals(ctx.checkAsync(null, executor).get(), Status.SAT);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeouts() {
+        Deadline d = Deadline.after(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(d.isExpired());
+        Assert.assertEquals(d.remainingNanos(), 0);
+        Assert.assertFalse(Deadline.after(Duration.ofHours(1)).isExpired());
+
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        try (Context ctx = new Context()) {
+            ctx.assertFormula(Terms.arithGt(x, Terms.ZERO));
+            Assert.assertEquals(ctx.check(null, 1), Status.SAT);  // null parameters
+            Assert.assertEquals(ctx.check(null, Duration.ofMillis(500)), Status.SAT);
+            Assert.assertEquals(ctx.check(null, 500, TimeUnit.MILLISECONDS), Status.SAT);
+            Deadline chain = Deadline.afterMillis(1000);
+            Assert.assertEquals(ctx.check(null, chain), Status.SAT);
+            Assert.assertEquals(ctx.checkWithAssumptions(null, new int[] { Terms.arithLt(x, Terms.ZERO) }, chain), Status.UNSAT);
+            Assert.assertEquals(ctx.check(null, chain), Status.SAT);
+            Assert.assertEquals(ctx.check(null, d), Status.INTERRUPTED);
+            // the solver was not called: the context keeps the status of the previous check
+            Assert.assertEquals(ctx.getStatus(), Status.SAT);
+            Assert.assertEquals(ctx.checkWithAssumptions(null, new int[] { Terms.arithGt(x, Terms.ZERO) }, d), Status.INTERRUPTED);
+            Assert.assertEquals(ctx.getStatus(), Status.SAT);
+        }
+    }
+
+    @Test
+    public void testBuffering() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        try (Context ctx = new Context()) {
+            ctx.setBuffering(10);
+            Assert.assertTrue(ctx.isBuffering());
+            for (int i = 0; i < 15; i++) {
+                ctx.assertFormula(Terms.arithGt(x, Terms.intConst(i)));
+            }
+            Assert.assertEquals(ctx.getBufferedCount(), 5);
+            Assert.assertEquals(ctx.check(), Status.SAT);  // flushes
+            Assert.assertEquals(ctx.getBufferedCount(), 0);
+
+            ctx.push();
+            ctx.assertFormula(Terms.arithLt(x, Terms.intConst(3)));
+            Assert.assertEquals(ctx.check(), Status.UNSAT);
+            ctx.pop();
+
+            // the integer term x is formula 17
+            ctx.assertFormula(Terms.TRUE);
+            ctx.assertFormula(x);
+            try {
+                ctx.flush();
+                Assert.fail("flush should fail on a non-Boolean formula");
+            } catch (AssertionException e) {
+                Assert.assertEquals(e.getIndex(), 17);
+                Assert.assertEquals(e.getTerm(), x);
+                Assert.assertEquals(e.getBatchStart(), 16);
+            }
+            Assert.assertEquals(ctx.getBufferedCount(), 0);
+
+            ctx.setBuffering(0);
+            Assert.assertFalse(ctx.isBuffering());
+            Assert.assertEquals(ctx.check(), Status.SAT);
+        }
+    }
+
+    @Test
+    public void testBufferingNonlinear() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        int y = Terms.newUninterpretedTerm(Types.INT);
+        try (Context ctx = new Context("QF_LIA")) {
+            ctx.setBuffering(10);
+            ctx.assertFormula(Terms.arithGt(x, Terms.ZERO));
+            ctx.assertFormula(Terms.arithGt(y, Terms.ZERO));
+            // Boolean but not linear: formula 2
+            ctx.assertFormula(Terms.arithGt(Terms.mul(x, y), Terms.ZERO));
+            ctx.assertFormula(Terms.arithLt(x, y));
+            try {
+                ctx.flush();
+                Assert.fail("flush should fail on a nonlinear formula");
+            } catch (AssertionException e) {
+                Assert.assertEquals(e.getIndex(), 2);
+                Assert.assertEquals(e.getBatchStart(), 0);
+                Assert.assertEquals(e.getBatchEnd(), 3);
+            }
+        }
+    }
+
+    @Test
+    public void testDirectBuffers() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm("x", Types.INT);
+        int y = Terms.newUninterpretedTerm("y", Types.INT);
+        IntBuffer b = Terms.newTermBuffer(2);
+        b.put(Terms.arithGt(x, y)).put(Terms.arithGt0(y)).flip();
+        Assert.assertEquals(Terms.and(b), Terms.and(b.get(0), b.get(1)));
+        Assert.assertEquals(b.position(), 0);
+
+        IntBuffer vars = Terms.newTermBuffer(2);
+        vars.put(x).put(y).flip();
+        Assert.assertEquals(Terms.add(vars), Terms.add(x, y));
+
+        try (Context c = new Context()) {
+            c.assertFormulas(b);
+            Assert.assertEquals(c.check(), Status.SAT);
+            try (Model m = c.getModel()) {
+                IntBuffer values = Terms.newTermBuffer(2);
+                m.valuesAsTerms(vars, values);
+                Assert.assertEquals(values.get(0), m.valueAsTerm(x));
+                Assert.assertEquals(values.get(1), m.valueAsTerm(y));
+            }
+        }
+
+        try {
+            Terms.and(IntBuffer.wrap(new int[] {x, y}));
+            Assert.fail("heap buffers should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Terms.removeName("x");
+        Terms.removeName("y");
+    }
+
+    @Test
+    public void testDirectBuffersUnchanged() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        // yices_and and yices_or sort their arguments: the buffer must not be modified
+        for (int n : new int[] { 3, 20 }) {
+            // terms in decreasing order
+            int[] a = new int[n];
+            for (int i = n - 1; i >= 0; i--) a[i] = Terms.newUninterpretedTerm(Types.BOOL);
+            IntBuffer b = Terms.newTermBuffer(n);
+            b.put(a).flip();
+
+            Assert.assertEquals(Yices.directAnd(b, 0, n), Terms.and(a.clone()));
+            for (int i = 0; i < n; i++) Assert.assertEquals(b.get(i), a[i]);
+            Assert.assertEquals(Yices.directOr(b, 0, n), Terms.or(a.clone()));
+            for (int i = 0; i < n; i++) Assert.assertEquals(b.get(i), a[i]);
+        }
+    }
+
+    @Test
+    public void testStopUntilDone() throws InterruptedException {
+        // stopSearch is retried until the check is reported as done
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Timeouts.stopUntilDone(() -> {
+                if (calls.incrementAndGet() < 5) return true;
+                done.countDown();
+                return false;
+            });
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        Assert.assertEquals(calls.get(), 5);
+    }
+
     static String boolArray(boolean[] b) {
         String s = "[";
         for (int i=0; i<b.length; i++) {
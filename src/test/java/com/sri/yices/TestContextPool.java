@@ -0,0 +1,139 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestContextPool {
+
+    @Test
+    public void testKeys() {
+        ContextPool.Key k1 = new ContextPool.Key("QF_LIA", "push-pop");
+        ContextPool.Key k2 = new ContextPool.Key("QF_LIA", "push-pop");
+        Assert.assertEquals(k1, k2);
+        Assert.assertEquals(k1.hashCode(), k2.hashCode());
+        Assert.assertEquals(k1.config("arith-solver", "simplex"), k2.config("arith-solver", "simplex"));
+        Assert.assertNotEquals(k1, k1.enable("var-elim"));
+        Assert.assertNotEquals(k1, new ContextPool.Key("QF_LIA", null));
+    }
+
+    @Test
+    public void testReuse() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        long census = Context.getCensus();
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        ContextPool.Key key = new ContextPool.Key("QF_LIA", "push-pop");
+        try (ContextPool pool = new ContextPool(1, 1, TimeUnit.HOURS)) {
+            Context first;
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                first = lease.context();
+                first.assertFormula(Terms.arithLt(x, Terms.ZERO));
+                first.assertFormula(Terms.arithGt(x, Terms.ZERO));
+                Assert.assertEquals(first.check(), Status.UNSAT);
+            }
+            Assert.assertEquals(pool.getIdleCount(), 1);
+            Assert.assertEquals(pool.getMisses(), 1);
+
+            // the context comes back empty
+            try (ContextPool.Lease l1 = pool.acquire(key); ContextPool.Lease l2 = pool.acquire(key)) {
+                Assert.assertSame(l1.context(), first);
+                Assert.assertEquals(l1.context().getStatus(), Status.IDLE);
+                l1.context().assertFormula(Terms.arithGt(x, Terms.ZERO));
+                Assert.assertEquals(l1.context().check(), Status.SAT);
+                Assert.assertNotSame(l2.context(), first);
+            }
+            // maxIdle = 1: one of the two contexts was closed
+            Assert.assertEquals(pool.getIdleCount(), 1);
+            Assert.assertEquals(pool.getHits(), 1);
+            Assert.assertEquals(pool.getMisses(), 2);
+            Assert.assertTrue(pool.getMeanCreationNanos() > 0);
+            Assert.assertEquals(Context.getCensus(), census + 1);
+        }
+        Assert.assertEquals(Context.getCensus(), census);
+    }
+
+    @Test
+    public void testRelease() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        long census = Context.getCensus();
+        ContextPool.Key key = new ContextPool.Key("QF_LIA", "push-pop");
+        try (ContextPool pool = new ContextPool(8, 1, TimeUnit.HOURS)) {
+            // closed by the borrower: dropped
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                lease.context().close();
+            }
+            Assert.assertEquals(pool.getIdleCount(), 0);
+
+            // options changed: the context no longer matches its key
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                lease.context().enableOption("var-elim");
+            }
+            Assert.assertEquals(pool.getIdleCount(), 0);
+
+            // buffering is turned off
+            Context ctx;
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                ctx = lease.context();
+                ctx.setBuffering(16);
+                ctx.assertFormula(Terms.FALSE);
+            }
+            Assert.assertEquals(pool.getIdleCount(), 1);
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                Assert.assertSame(lease.context(), ctx);
+                Assert.assertFalse(ctx.isBuffering());
+                Assert.assertEquals(ctx.check(), Status.SAT);
+            }
+            Assert.assertEquals(Context.getCensus(), census + 1);
+        }
+        Assert.assertEquals(Context.getCensus(), census);
+    }
+
+    @Test
+    public void testPopToBase() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        ContextPool.Key key = new ContextPool.Key("QF_LIA", "push-pop");
+        try (ContextPool pool = new ContextPool(1, 1, TimeUnit.HOURS, ContextPool.ReleasePolicy.POP_TO_BASE)) {
+            Context ctx;
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                ctx = lease.context();
+                ctx.assertFormula(Terms.arithLt(x, Terms.ZERO));
+                ctx.push();
+                ctx.assertFormula(Terms.arithGt(x, Terms.ZERO));
+                Assert.assertEquals(ctx.check(), Status.UNSAT);
+            }
+            Assert.assertEquals(ctx.getLevel(), 0);
+            Assert.assertEquals(ctx.getStatus(), Status.IDLE);
+
+            // popping below the level given by the pool: the context is reset
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                Assert.assertSame(lease.context(), ctx);
+                ctx.pop();
+                ctx.assertFormula(Terms.FALSE);
+            }
+            try (ContextPool.Lease lease = pool.acquire(key)) {
+                Assert.assertEquals(ctx.check(), Status.SAT);
+            }
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        long census = Context.getCensus();
+        try (ContextPool pool = new ContextPool(8, 0, TimeUnit.MILLISECONDS)) {
+            pool.acquire(null, null).close();
+            pool.evictIdle();
+            Assert.assertEquals(pool.getIdleCount(), 0);
+            Assert.assertTrue(pool.getEvictions() >= 1);
+        }
+        Assert.assertEquals(Context.getCensus(), census);
+    }
+}
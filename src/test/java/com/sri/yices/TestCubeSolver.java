@@ -0,0 +1,54 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestCubeSolver {
+
+    @Test
+    public void testCubes() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int a = Terms.newUninterpretedTerm(Types.BOOL);
+        int b = Terms.newUninterpretedTerm(Types.BOOL);
+        int c = Terms.newUninterpretedTerm(Types.BOOL);
+        int[] vars = { a, b, c };
+
+        int[] sat = { Terms.or(a, b), Terms.or(Terms.not(a), c), Terms.not(c) };
+        int[] unsat = { Terms.or(a, b), Terms.not(a), Terms.not(b), Terms.or(c, a) };
+
+        int[] picked = CubeSolver.pickSplitVariables(sat, 2);
+        Assert.assertEquals(picked.length, 2);
+        Assert.assertEquals(picked[0], a); // a and c occur twice, b once
+        Assert.assertEquals(picked[1], c);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CubeSolver solver = new CubeSolver(executor, 4, null, null);
+
+            try (CubeSolver.Result r = solver.solve(sat, vars, null)) {
+                Assert.assertEquals(r.getStatus(), Status.SAT);
+                Assert.assertFalse(r.getModel().boolValue(a));
+                Assert.assertTrue(r.getModel().boolValue(b));
+                Assert.assertEquals(r.getCube().length, 3);
+            }
+
+            try (CubeSolver.Result r = solver.solve(unsat, vars, Deadline.afterMillis(10000))) {
+                Assert.assertEquals(r.getStatus(), Status.UNSAT);
+                Assert.assertNull(r.getModel());
+                Assert.assertTrue(r.getSolvedCount() + r.getPrunedCount() <= 8);
+            }
+
+            try (CubeSolver.Result r = solver.solve(sat, 2)) {
+                Assert.assertEquals(r.getStatus(), Status.SAT);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.junit.Assume.assumeTrue;
 
@@ -133,4 +136,29 @@ public class TestDelegates {
 
 
 
+    @Test
+    public void testRace() {
+        assumeTrue(Yices.versionOrdinal() >= Yices.versionOrdinal(2, 6, 2));
+        assumeTrue(HAS_CADICAL || HAS_CRYPTOMINISAT || HAS_Y2SAT);
+
+        Set<String> all = new HashSet<String>(Arrays.asList(Delegate.CADICAL, Delegate.CRYPTOMINISAT, Delegate.Y2SAT));
+        int[] formulas = makeFormlas();
+        try (Delegate.Result r = Delegate.race(truncate(formulas, 1), "QF_BV", all)) {
+            Assert.assertEquals(r.getStatus(), Status.SAT);
+            Assert.assertNotNull(r.getModel());
+            Assert.assertTrue(r.getTimes().containsKey(r.getDelegate()));
+        }
+
+        try {
+            Delegate.race(formulas, "QF_BV", new HashSet<String>(Arrays.asList("no-such-solver")));
+            Assert.fail("race should fail without delegates");
+        } catch (DelegateException e) {
+            Assert.assertNull(e.getDelegate());
+        }
+
+        Terms.removeName("x");
+        Terms.removeName("y");
+        Terms.removeName("z");
+    }
+
 }
@@ -3,6 +3,18 @@ package com.sri.yices;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
 import static org.junit.Assume.assumeTrue;
 
 public class TestDimacs {
@@ -78,4 +90,126 @@ public class TestDimacs {
          }
     }
 
+    @Test
+    public void testParse() throws IOException {
+        String text = "c example\np cnf 4 3\n1 -2 0\n-3 4\n  2 0\nc another comment\n-1 0\n";
+        Path file = Files.createTempFile("dimacs", ".cnf");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+            Dimacs.Cnf cnf;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                cnf = Dimacs.parse(ch);
+            }
+            Assert.assertEquals(cnf.getNumVars(), 4);
+            Assert.assertEquals(cnf.getNumClauses(), 3);
+            Assert.assertEquals(cnf.getNumLiterals(), 6);
+            Assert.assertTrue(cnf.getLiterals().isDirect());
+            Assert.assertEquals(cnf.clauseSize(1), 3);
+            Assert.assertEquals(cnf.literal(0, 1), -2);
+            Assert.assertEquals(cnf.literal(1, 2), 2);
+            Assert.assertEquals(cnf.literal(2, 0), -1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testExportToMemory() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+        assumeTrue(Yices.versionOrdinal() >= Yices.versionOrdinal(2, 6, 2));
+
+        int tau = Types.bvType(8);
+        int x = Terms.newUninterpretedTerm("mx", tau);
+        int y = Terms.newUninterpretedTerm("my", tau);
+        int f = Terms.bvEq(Terms.bvMul(x, y), Terms.bvConst(8, 77));
+
+        Status[] status = new Status[1];
+        Dimacs.Cnf cnf = Dimacs.exportToBuffer(f, false, status);
+        Assert.assertNotNull(cnf);
+        Assert.assertTrue(cnf.getNumClauses() > 0);
+        Assert.assertEquals(cnf.getClauseStarts().get(cnf.getNumClauses()), cnf.getNumLiterals());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertTrue(Dimacs.export(f, false, status, Channels.newChannel(out)));
+        String text = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        Assert.assertTrue(text.contains("p cnf " + cnf.getNumVars() + " " + cnf.getNumClauses()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExportNothing() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+        assumeTrue(Yices.versionOrdinal() >= Yices.versionOrdinal(2, 6, 2));
+
+        Dimacs.exportToBuffer(new int[0], false, new Status[1]);
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        Path file = Files.createTempFile("dimacs", ".map");
+        try {
+            Dimacs.writeIndex(file, new int[] { 1, 7, 12 }, new int[] { 40, 41, Integer.MAX_VALUE });
+            Dimacs.VarIndex index = Dimacs.readIndex(file);
+            Assert.assertEquals(index.size(), 3);
+            Assert.assertEquals(index.getVar(1), 7);
+            Assert.assertEquals(index.getTerm(2), Integer.MAX_VALUE);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testIndexToModel() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        // map of a CNF built by the caller
+        int p = Terms.newUninterpretedTerm("ip", Types.BOOL);
+        int q = Terms.newUninterpretedTerm("iq", Types.BOOL);
+        Dimacs.VarIndex index = new Dimacs.VarIndex(new int[] { 1, 2 }, new int[] { p, q });
+        try (Model m = index.toModel(new int[] { 1, -2, 0 })) {
+            Assert.assertTrue(m.boolValue(p));
+            Assert.assertFalse(m.boolValue(q));
+        }
+        Terms.removeName("ip");
+        Terms.removeName("iq");
+    }
+
+    @Test
+    public void testChunkedExport() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+        assumeTrue(Yices.versionOrdinal() >= Yices.versionOrdinal(2, 6, 2));
+
+        int tau = Types.bvType(8);
+        int x = Terms.newUninterpretedTerm("cx", tau);
+        int y = Terms.newUninterpretedTerm("cy", tau);
+        int p = Terms.newUninterpretedTerm("cp", Types.BOOL);
+        int f = Terms.and(p, Terms.bvEq(Terms.bvMul(x, y), Terms.bvConst(8, 91)));
+
+        Status[] status = new Status[1];
+        Dimacs.Cnf cnf = Dimacs.exportToBuffer(f, false, status);
+        Assert.assertNotNull(cnf);
+
+        Path dir = Files.createTempDirectory("dimacs");
+        Path file = dir.resolve("out.cnf");
+        int chunk = Math.max(1, cnf.getNumClauses() / 3);
+        Dimacs.Options options = new Dimacs.Options().gzip(true).chunkSize(chunk);
+        List<Path> files = Dimacs.export(new int[] { f }, file, options, status);
+        try {
+            int clauses = 0;
+            for (Path chunkFile : files) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(chunkFile))) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] b = new byte[4096];
+                    for (int n; (n = in.read(b)) > 0; ) out.write(b, 0, n);
+                    String[] lines = new String(out.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+                    Assert.assertTrue(lines[0].startsWith("p cnf " + cnf.getNumVars() + " "));
+                    Assert.assertTrue(lines.length - 1 <= chunk);
+                    clauses += lines.length - 1;
+                }
+            }
+            Assert.assertEquals(clauses, cnf.getNumClauses());
+        } finally {
+            for (Path q : files) Files.delete(q);
+            Files.delete(dir);
+        }
+    }
 }
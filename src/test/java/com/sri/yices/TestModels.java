@@ -3,6 +3,8 @@ package com.sri.yices;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigInteger;
+
 import static org.junit.Assume.assumeTrue;
 
 public class TestModels {
@@ -208,6 +210,88 @@ public class TestModels {
         }
     }
 
+    @Test
+    public void testBulkValues() {
+        int b = Terms.newUninterpretedTerm("b", Types.BOOL);
+        int i = Terms.newUninterpretedTerm("i", Types.INT);
+        int r = Terms.newUninterpretedTerm("r", Types.REAL);
+        int[] vars = {b, i, r};
+        int[] vals = {Terms.TRUE, Terms.intConst(-42), Terms.rationalConst(1, 4)};
+        try (Model m = new Model(vars, vals)) {
+            boolean[] bv = new boolean[2];
+            m.boolValues(new int[] {b, Terms.not(b)}, bv);
+            Assert.assertTrue(bv[0]);
+            Assert.assertFalse(bv[1]);
+
+            long[] lv = new long[2];
+            boolean[] ok = new boolean[2];
+            Assert.assertEquals(m.longValues(new int[] {i, r}, lv, ok), 1);
+            Assert.assertTrue(ok[0]);
+            Assert.assertFalse(ok[1]);
+            Assert.assertEquals(lv[0], -42);
+
+            double[] dv = new double[2];
+            m.doubleValues(new int[] {i, r}, dv);
+            Assert.assertEquals(dv[0], -42.0, 0.0);
+            Assert.assertEquals(dv[1], 0.25, 0.0);
+
+            try {
+                m.boolValues(new int[] {b, i}, bv);
+                Assert.fail("boolValues should fail on an integer term");
+            } catch (YicesException e) {
+                Assert.assertTrue(bv[0]);
+                Assert.assertFalse(bv[1]);
+            }
+        }
+        Terms.removeName("b");
+        Terms.removeName("i");
+        Terms.removeName("r");
+    }
+
+    @Test
+    public void testPackedBvValues() {
+        int u = Terms.newUninterpretedTerm("u", Types.bvType(8));
+        int v = Terms.newUninterpretedTerm("v", Types.bvType(70));
+        int[] vars = {u, v};
+        int[] vals = {Terms.bvConst(8, 134), Terms.bvMinusOne(70)};
+        try (Model m = new Model(vars, vals)) {
+            Assert.assertEquals(m.bvValueAsLong(u), 134L);
+            long[] w = new long[2];
+            Assert.assertEquals(m.bvValueAsWords(v, w), 70);
+            Assert.assertEquals(w[0], -1L);
+            Assert.assertEquals(w[1], 0x3FL);
+            Assert.assertEquals(m.bvValueAsBigInteger(v), BigInteger.ONE.shiftLeft(70).subtract(BigInteger.ONE));
+        }
+        Terms.removeName("u");
+        Terms.removeName("v");
+    }
+
+    @Test
+    public void testNumericValues() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        BigInteger big = BigInteger.ONE.shiftLeft(70);
+        Assert.assertEquals(Terms.intConst(BigInteger.valueOf(-42)), Terms.intConst(-42));
+        Assert.assertEquals(Terms.rationalConst(new BigRational("2/-6")), Terms.rationalConst(-1, 3));
+        Assert.assertEquals(Terms.arithConstValue(Terms.rationalConst(-1, 3)), new BigRational("-1/3"));
+
+        int a = Terms.newUninterpretedTerm(Types.REAL);
+        int b = Terms.newUninterpretedTerm(Types.REAL);
+        int c = Terms.newUninterpretedTerm(Types.REAL);
+        int d = Terms.newUninterpretedTerm(Types.REAL);
+        int[] vars = {a, b, c, d};
+        int[] vals = {Terms.intConst(-3), Terms.intConst(big), Terms.rationalConst(1, 3), Terms.rationalConst(big, BigInteger.valueOf(3))};
+        try (Model m = new Model(vars, vals)) {
+            Assert.assertEquals(m.numericValue(a), Long.valueOf(-3));
+            Assert.assertEquals(m.numericValue(b), big);
+            Assert.assertEquals(m.numericValue(c), new BigRational("1/3"));
+            Assert.assertEquals(m.numericValue(d), new BigRational(big, BigInteger.valueOf(3)));
+            Assert.assertEquals(m.bigIntegerValue(a), BigInteger.valueOf(-3));
+            Assert.assertEquals(m.bigIntegerValue(b), big);
+            Assert.assertEquals(m.bigRationalValue(c), new BigRational("1/3"));
+        }
+    }
+
     @Test
     public void testModelSupport() {
         assumeTrue(Yices.versionOrdinal() >= Yices.versionOrdinal(2, 6, 2));
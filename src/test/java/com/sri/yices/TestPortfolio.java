@@ -0,0 +1,77 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestPortfolio {
+
+    @Test
+    public void testRace() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        int y = Terms.newUninterpretedTerm(Types.INT);
+        int[] sat = { Terms.arithGt(x, y), Terms.arithGt(y, Terms.ZERO) };
+        int[] unsat = { Terms.arithGt(x, y), Terms.arithGt(y, x) };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (Config lia = new Config("QF_LIA"); Parameters params = new Parameters()) {
+            params.setParam("branching", "negative");
+            Portfolio portfolio = new Portfolio(executor)
+                .add("default", null, null)
+                .add("lia", lia, params);
+            Assert.assertEquals(portfolio.size(), 2);
+
+            try (Portfolio.Result r = portfolio.solve(sat)) {
+                Assert.assertEquals(r.getStatus(), Status.SAT);
+                Assert.assertNotNull(r.getWinner());
+                Assert.assertTrue(r.getModel().bigIntegerValue(x).compareTo(r.getModel().bigIntegerValue(y)) > 0);
+            }
+
+            try (Portfolio.Result r = portfolio.solve(unsat, Deadline.afterMillis(10000))) {
+                Assert.assertEquals(r.getStatus(), Status.UNSAT);
+                Assert.assertNull(r.getModel());
+                Assert.assertTrue(r.getWinnerIndex() == 0 || r.getWinnerIndex() == 1);
+            }
+
+            Assert.assertEquals(portfolio.getWins("default") + portfolio.getWins("lia"), 2);
+            Assert.assertEquals(portfolio.getWins().size(), 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLateResults() throws InterruptedException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.INT);
+        int[] sat = { Terms.arithGt(x, Terms.ZERO) };
+
+        long models = Model.getCensus();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Portfolio portfolio = new Portfolio(executor)
+            .add("a", null, null)
+            .add("b", null, null);
+        // the deadline has expired: racers that finish after solve returns don't win
+        // (unless one of them was done before solve stopped waiting)
+        long wins;
+        try (Portfolio.Result r = portfolio.solve(sat, Deadline.afterMillis(0))) {
+            wins = r.getStatus() == Status.SAT ? 1 : 0;
+            if (wins == 0) {
+                Assert.assertEquals(r.getStatus(), Status.INTERRUPTED);
+                Assert.assertNull(r.getModel());
+            }
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        Assert.assertEquals(portfolio.getWins("a") + portfolio.getWins("b"), wins);
+        Assert.assertEquals(Model.getCensus(), models);
+    }
+}
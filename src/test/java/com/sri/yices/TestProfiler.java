@@ -0,0 +1,55 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProfiler {
+
+    @Test
+    public void testConcurrentDeltas() throws InterruptedException {
+        final int nthreads = 4;
+        final int ncalls = 10000;
+        Profiler.clear();
+        Thread[] threads = new Thread[nthreads];
+        for (int i = 0; i < nthreads; i++) {
+            threads[i] = new Thread(() -> {
+                    for (int k = 0; k < ncalls; k++) {
+                        Profiler.delta("TestProfiler.a", 0, 1000);
+                        Profiler.delta("TestProfiler.b", 0, 3, true);
+                    }
+                });
+            threads[i].start();
+        }
+        for (Thread t : threads) t.join();
+
+        Assert.assertEquals(Profiler.getCalls("TestProfiler.a"), nthreads * ncalls);
+        Assert.assertEquals(Profiler.getTotal("TestProfiler.a"), 1000L * nthreads * ncalls);
+        Assert.assertEquals(Profiler.getThreadCount(), nthreads);
+
+        // 1000ns is in bucket 9 = [512, 1024), 3ns in bucket 1 = [2, 4)
+        Assert.assertEquals(Profiler.getHistogram("TestProfiler.a")[9], nthreads * ncalls);
+        Assert.assertEquals(Profiler.getHistogram("TestProfiler.b")[1], nthreads * ncalls);
+
+        Assert.assertEquals(Profiler.get(), 1003L * nthreads * ncalls);
+        Assert.assertEquals(Profiler.get(), 0);
+        boolean saved = Profiler.isEnabled();
+        Profiler.setEnabled(true);
+        Assert.assertTrue(Profiler.report().contains("TestProfiler.a"));
+        Profiler.setEnabled(false);
+        Assert.assertEquals(Profiler.report(), "");
+        Profiler.setEnabled(saved);
+
+        Profiler.clear();
+        Assert.assertEquals(Profiler.getCalls("TestProfiler.a"), 0);
+    }
+
+    @Test
+    public void testToggle() {
+        boolean saved = Profiler.isEnabled();
+        Profiler.setEnabled(true);
+        Assert.assertTrue(Profiler.isEnabled());
+        Profiler.setEnabled(false);
+        Assert.assertFalse(Profiler.isEnabled());
+        Profiler.setEnabled(saved);
+    }
+}
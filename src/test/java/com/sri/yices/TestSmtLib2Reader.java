@@ -0,0 +1,149 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestSmtLib2Reader {
+
+    private static final String SCRIPT =
+        "; test script\n" +
+        "(set-logic QF_LIA)\n" +
+        "(set-info :status sat)\n" +
+        "(declare-const x Int)\n" +
+        "(declare-fun y () Int)\n" +
+        "(declare-fun f (Int) Int)\n" +
+        "(define-fun max2 ((a Int) (b Int)) Int (ite (>= a b) a b))\n" +
+        "(assert (< 0 x 10))\n" +
+        "(assert (let ((z (+ x y))) (= (max2 z 3) (f x))))\n" +
+        "(assert (! (> y 2) :named y_pos))\n" +
+        "(check-sat)\n" +
+        "(push 1)\n" +
+        "(declare-const |w v| Int)\n" +
+        "(assert (and y_pos (< y 0) (= |w v| 1)))\n" +
+        "(check-sat)\n" +
+        "(pop 1)\n" +
+        "(check-sat-assuming ((> x 5)))\n" +
+        "(get-model)\n" +
+        "(exit)\n" +
+        "(assert false)\n";
+
+    private static SmtLib2Reader read(Context ctx, String script, int batch) throws IOException {
+        SmtLib2Reader reader = new SmtLib2Reader(ctx, batch);
+        reader.read(Channels.newChannel(new ByteArrayInputStream(script.getBytes(StandardCharsets.US_ASCII))));
+        return reader;
+    }
+
+    @Test
+    public void testScript() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        try (Context ctx = new Context("QF_UFLIA", "push-pop")) {
+            SmtLib2Reader reader = read(ctx, SCRIPT, 2);
+            Assert.assertEquals(reader.getResults(), Arrays.asList(Status.SAT, Status.UNSAT, Status.SAT));
+            Assert.assertEquals(reader.getAssertionCount(), 4);
+            Assert.assertEquals(reader.getBytesRead(), SCRIPT.length());
+            System.out.println(reader);
+        }
+    }
+
+    @Test
+    public void testBitvectors() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        String script =
+            "(declare-const b (_ BitVec 8))\n" +
+            "(assert (= ((_ extract 3 0) b) #b1010))\n" +
+            "(assert (bvult b (_ bv20 8)))\n" +
+            "(assert (= (concat #x0 ((_ extract 7 4) b)) (_ bv1 8)))\n" +
+            "(check-sat)\n";
+        try (Context ctx = new Context("QF_BV", "push-pop")) {
+            SmtLib2Reader reader = read(ctx, script, 1024);
+            Assert.assertEquals(reader.getResults(), Arrays.asList(Status.SAT));
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        try (Context ctx = new Context()) {
+            read(ctx, "(declare-const p Bool)\n(assert (and p q))\n", 10);
+            Assert.fail("unknown symbol should fail");
+        } catch (YicesException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 2"));
+        }
+    }
+
+    @Test
+    public void testNamedInScopes() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        // names given inside let are declared in the enclosing scope, not in the let
+        String script =
+            "(declare-const x Int)\n" +
+            "(push 1)\n" +
+            "(assert (let ((z x)) (! (> z 0) :named a)))\n" +
+            "(assert (not a))\n" +
+            "(check-sat)\n" +
+            "(pop 1)\n" +
+            "(check-sat)\n";
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            SmtLib2Reader reader = read(ctx, script, 10);
+            Assert.assertEquals(reader.getResults(), Arrays.asList(Status.UNSAT, Status.SAT));
+        }
+
+        // the name disappears with its scope
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            read(ctx, "(declare-const y Int)\n(push 1)\n(assert (! (> y 0) :named b))\n(pop 1)\n(assert b)\n", 10);
+            Assert.fail("b should be out of scope");
+        } catch (YicesException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 5"));
+        }
+
+        // named terms must be closed
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            read(ctx, "(define-fun pos ((u Int)) Bool (! (> u 0) :named c))\n", 10);
+            Assert.fail("named term with a free variable");
+        } catch (YicesException e) {
+            Assert.assertTrue(e.getMessage().contains("free variables"));
+        }
+    }
+
+    @Test
+    public void testResetAssertions() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        // reset-assertions removes the level-0 declarations
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            read(ctx, "(declare-const x Int)\n(assert (> x 0))\n(reset-assertions)\n(assert (> x 1))\n", 10);
+            Assert.fail("x should be removed by reset-assertions");
+        } catch (YicesException e) {
+            Assert.assertTrue(e.getMessage().startsWith("line 4"));
+        }
+
+        // unless declarations are global
+        String script =
+            "(set-option :print-success false)\n" +
+            "(set-option :global-declarations true)\n" +
+            "(declare-const x Int)\n" +
+            "(push 1)\n" +
+            "(define-fun big () Bool (> x 10))\n" +
+            "(pop 1)\n" +
+            "(assert (< x 0))\n" +
+            "(reset-assertions)\n" +
+            "(assert big)\n" +
+            "(check-sat)\n";
+        try (Context ctx = new Context("QF_LIA", "push-pop")) {
+            SmtLib2Reader reader = read(ctx, script, 10);
+            Assert.assertEquals(reader.getResults(), Arrays.asList(Status.SAT));
+        }
+    }
+}
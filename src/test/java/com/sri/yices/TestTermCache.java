@@ -0,0 +1,60 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestTermCache {
+
+    @Test
+    public void testCapacity() {
+        Assert.assertEquals(new TermCache(1000).getCapacity(), 1024);
+        Assert.assertEquals(new TermCache(1).getCapacity(), 1);
+        Assert.assertEquals(new TermCache().getHitRate(), 0.0, 0.0);
+    }
+
+    @Test
+    public void testCache() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        TermCache cache = new TermCache(256);
+        int x = Terms.newUninterpretedTerm("tc_x", Types.INT);
+        int y = Terms.newUninterpretedTerm("tc_y", Types.INT);
+        int p = Terms.newUninterpretedTerm("tc_p", Types.BOOL);
+
+        int t1 = cache.arithLeq(cache.add(x, y), Terms.ZERO);
+        int t2 = cache.arithLeq(cache.add(x, y), Terms.ZERO);
+        Assert.assertEquals(t1, t2);
+        Assert.assertEquals(t1, Terms.arithLeq(Terms.add(x, y), Terms.ZERO));
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getHitRate(), 0.5, 0.0);
+
+        int f = cache.implies(p, t1);
+        Assert.assertEquals(f, Terms.implies(p, t1));
+        Assert.assertEquals(cache.ifThenElse(p, x, y), cache.ifThenElse(p, x, y));
+        Assert.assertEquals(cache.not(p), Terms.not(p));
+
+        try {
+            cache.add(x, p);
+            Assert.fail("adding a Boolean term should fail");
+        } catch (YicesException e) {
+            // expected
+        }
+
+        // the garbage collector invalidates the cache
+        long hits = cache.getHits();
+        Yices.yicesGarbageCollect(true);
+        Assert.assertEquals(cache.add(x, y), Terms.add(x, y));
+        Assert.assertEquals(cache.getHits(), hits);
+        cache.add(x, y);
+        Assert.assertEquals(cache.getHits(), hits + 1);
+
+        cache.clear();
+        cache.resetStats();
+        cache.add(x, y);
+        Assert.assertEquals(cache.getMisses(), 1);
+        System.out.println(cache);
+    }
+}
@@ -0,0 +1,83 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestTermStore {
+
+    @Test
+    public void testBadFiles() throws IOException {
+        Path file = Files.createTempFile("termstore", ".yts");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            try {
+                TermStore.load(file);
+                Assert.fail("expected an IOException");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("not a term store"));
+            }
+
+            // valid header, missing sections
+            ByteBuffer b = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(TermStore.MAGIC).putInt(TermStore.VERSION).putInt(1).putInt(1).putInt(1);
+            b.putInt(4).putInt(5).putInt(0).putInt(0);
+            Files.write(file, b.array());
+            try {
+                TermStore.load(file);
+                Assert.fail("expected an IOException");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("truncated"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int bv8 = Types.bvType(8);
+        int x = Terms.newUninterpretedTerm("ts_x", Types.INT);
+        int y = Terms.newUninterpretedTerm("ts_y", Types.REAL);
+        int b = Terms.newUninterpretedTerm("ts_b", bv8);
+        int f = Terms.newUninterpretedTerm("ts_f", Types.functionType(Types.INT, Types.BOOL));
+        int sum = Terms.add(Terms.mul(Terms.parse("3/2"), x), Terms.add(y, Terms.parse("-7")));
+        int atom1 = Terms.arithLeq(Terms.mul(x, x), sum);
+        int atom2 = Terms.bvLt(Terms.bvAdd(b, Terms.bvConst(8, 5)), Terms.bvMul(b, b));
+        int atom3 = Terms.or(Terms.funApplication(f, x), Terms.bvExtractBit(b, 3));
+        int[] roots = { atom1, atom2, atom3 };
+
+        Path file = Files.createTempFile("termstore", ".yts");
+        try {
+            TermStore.save(file, roots);
+            TermStore.Remapping m = TermStore.load(file);
+            int[] loaded = m.getRoots();
+            Assert.assertEquals(loaded.length, 3);
+            Assert.assertEquals(m.getTermCount(), TermWalker.of(roots).size());
+
+            // uninterpreted terms are recreated and take over the names
+            int x2 = m.term(x);
+            Assert.assertNotEquals(x2, x);
+            Assert.assertEquals(Terms.getName(x2), "ts_x");
+            Assert.assertEquals(Terms.typeOf(x2), Types.INT);
+            Assert.assertEquals(m.type(bv8), bv8);
+            Assert.assertEquals(m.term(-1), -1);
+
+            for (int i = 0; i < roots.length; i++) {
+                Assert.assertEquals(Terms.constructor(loaded[i]), Terms.constructor(roots[i]));
+                Assert.assertEquals(Terms.toString(loaded[i]), Terms.toString(roots[i]));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
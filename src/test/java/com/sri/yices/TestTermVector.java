@@ -0,0 +1,88 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestTermVector {
+
+    @Test
+    public void testVector() {
+        TermVector v = new TermVector();
+        Assert.assertTrue(v.isEmpty());
+        for (int i = 0; i < 100; i++) {
+            v.add(i);
+        }
+        Assert.assertEquals(v.size(), 100);
+        Assert.assertEquals(v.get(42), 42);
+        v.set(42, -1);
+        Assert.assertEquals(v.get(42), -1);
+        Assert.assertEquals(v.toArray().length, 100);
+
+        v.clear();
+        v.addAll(1, 2, 3);
+        Assert.assertEquals(v, TermVector.of(1, 2, 3));
+        Assert.assertEquals(v.toString(), "[1 2 3]");
+
+        try {
+            v.get(3);
+            Assert.fail("get(3) should fail on a vector of size 3");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTerms() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm("x", Types.INT);
+        int y = Terms.newUninterpretedTerm("y", Types.INT);
+        TermVector v = new TermVector(2);
+        v.add(x).add(y);
+        Assert.assertEquals(Terms.add(v), Terms.add(x, y));
+        Assert.assertEquals(Terms.distinct(v), Terms.distinct(x, y));
+
+        TermVector formulas = new TermVector();
+        formulas.add(Terms.arithGt(x, y)).add(Terms.arithGt0(y));
+        Assert.assertEquals(Terms.and(formulas), Terms.and(formulas.toArray()));
+
+        try (Context c = new Context()) {
+            c.assertFormulas(formulas);
+            Assert.assertEquals(c.check(), Status.SAT);
+            try (Model m = c.getModel()) {
+                TermVector values = m.valuesAsTerms(v);
+                Assert.assertEquals(values.size(), 2);
+                Assert.assertEquals(values.get(0), m.valueAsTerm(x));
+                Assert.assertEquals(values.get(1), m.valueAsTerm(y));
+            }
+        }
+
+        TermVector a = TermVector.of(Terms.add(x, y));
+        Terms.substArray(a, TermVector.of(x), TermVector.of(y));
+        Assert.assertEquals(a.get(0), Terms.add(y, y));
+
+        Terms.removeName("x");
+        Terms.removeName("y");
+    }
+    @Test
+    public void testPartialVector() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm(Types.BOOL);
+        int y = Terms.newUninterpretedTerm(Types.BOOL);
+        // only the first size() elements are used, and the storage is not trimmed
+        TermVector v = new TermVector(16);
+        v.add(x).add(y);
+        Assert.assertEquals(Terms.and(v), Terms.and(x, y));
+        Assert.assertEquals(Terms.or(v), Terms.or(x, y));
+        Assert.assertEquals(v.data().length, 16);
+
+        try (Context c = new Context()) {
+            c.assertFormulas(v);
+            Assert.assertEquals(c.checkWithAssumptions(null, TermVector.of(Terms.not(x))), Status.UNSAT);
+            Assert.assertEquals(v.data().length, 16);
+        }
+    }
+}
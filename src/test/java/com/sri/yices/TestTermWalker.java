@@ -0,0 +1,100 @@
+package com.sri.yices;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assume.assumeTrue;
+
+public class TestTermWalker {
+
+    @Test
+    public void testLayout() {
+        // (not (or x y)) and (or x y) with x = 10, y = 11, (or x y) = 12, (not ...) = 13
+        int[] data = {
+            4,
+            10, 5, 0, 0, 0,
+            11, 5, 0, 0, 0,
+            12, 15, 0, 0, 2, 0, 1,
+            13, 14, 0, 0, 1, 2,
+            2, 3, 2
+        };
+        TermWalker w = new TermWalker(data);
+        Assert.assertEquals(w.size(), 4);
+        Assert.assertEquals(w.numRoots(), 2);
+        Assert.assertEquals(w.term(w.root(0)), 13);
+        Assert.assertEquals(w.constructor(2), Constructor.OR_TERM);
+        Assert.assertEquals(w.child(3, 0), 2);
+        Assert.assertEquals(w.nodeOf(12), 2);
+        Assert.assertEquals(w.nodeOf(99), -1);
+        Assert.assertEquals(w.treeSize(), 7);
+        Assert.assertEquals(w.depth(), 2);
+        Assert.assertEquals(w.count(Constructor.UNINTERPRETED_TERM), 2);
+
+        StringBuilder b = new StringBuilder();
+        w.preOrder((walker, n) -> { b.append(walker.term(n)).append(' '); return true; });
+        Assert.assertEquals(b.toString(), "13 12 10 11 ");
+
+        List<String> s = w.fold((walker, n, memo) -> {
+                if (walker.isLeaf(n)) return "t" + walker.term(n);
+                StringBuilder e = new StringBuilder("(" + walker.constructor(n));
+                for (int i = 0; i < walker.numChildren(n); i++) e.append(' ').append(memo.get(walker.child(n, i)));
+                return e.append(')').toString();
+            });
+        Assert.assertEquals(s.get(3), "(NOT_TERM (OR_TERM t10 t11))");
+    }
+
+    @Test
+    public void testWalk() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        int x = Terms.newUninterpretedTerm("tw_x", Types.INT);
+        int y = Terms.newUninterpretedTerm("tw_y", Types.INT);
+        int p = Terms.newUninterpretedTerm("tw_p", Types.BOOL);
+        int f = Terms.ifThenElse(p, Terms.arithLeq(x, y), Terms.arithLeq(y, x));
+        int g = Terms.and(f, p);
+
+        TermWalker w = TermWalker.of(g, f);
+        Assert.assertEquals(w.numRoots(), 2);
+        Assert.assertEquals(w.term(w.root(0)), g);
+        Assert.assertEquals(w.term(w.root(1)), f);
+        Assert.assertTrue(w.nodeOf(x) >= 0);
+        Assert.assertTrue(w.nodeOf(p) >= 0);
+        Assert.assertEquals(w.type(w.nodeOf(x)), Types.INT);
+
+        // the walker agrees with Terms.children
+        w.postOrder(n -> {
+                int[] c = Terms.isAtomic(w.term(n)) ? new int[0] : Terms.children(w.term(n));
+                Assert.assertEquals(c.length, w.numChildren(n));
+                for (int i = 0; i < c.length; i++) {
+                    Assert.assertEquals(c[i], w.term(w.child(n, i)));
+                    Assert.assertTrue(w.child(n, i) < n);
+                }
+            });
+
+        // rewriting: swap p and (not p)
+        int q = Terms.not(p);
+        int[] r = w.rewrite((walker, n, memo) -> {
+                int t = walker.term(n);
+                if (t == p) return q;
+                if (walker.isLeaf(n)) return t;
+                int[] c = walker.childValues(n, memo);
+                switch (walker.constructor(n)) {
+                case ITE_TERM: return Terms.ifThenElse(c[0], c[1], c[2]);
+                case OR_TERM: return Terms.or(c);
+                case NOT_TERM: return Terms.not(c[0]);
+                default: return t;  // arithmetic atoms don't contain p
+                }
+            });
+        Assert.assertEquals(r.length, 2);
+        Assert.assertEquals(r[1], Terms.ifThenElse(q, Terms.arithLeq(x, y), Terms.arithLeq(y, x)));
+
+        try {
+            TermWalker.of(-5);
+            Assert.fail("invalid root should fail");
+        } catch (YicesException e) {
+            // expected
+        }
+    }
+}
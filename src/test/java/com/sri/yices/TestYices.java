@@ -5,6 +5,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assume.assumeTrue;
 
@@ -458,6 +459,29 @@ public class TestYices {
         inspectTerm(Yices.parseBvBin("111000111"));
     }
 
+    @Test
+    public void testPackedBitvectors() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        Assert.assertEquals(Terms.bvConstValueAsLong(Terms.parseBvBin("10000110")), 134L);
+        Assert.assertEquals(Terms.bvConstValueAsLong(Terms.bvMinusOne(64)), -1L);
+        Assert.assertEquals(Terms.bvConstValueAsLong(Terms.bvMinusOne(10)), 1023L);
+
+        int t = Terms.parseBvHex("A0B1C2D3E4F5061728394");
+        long[] w = new long[2];
+        Assert.assertEquals(Terms.bvConstValueAsWords(t, w), 84);
+        Assert.assertEquals(w[0], 0x2D3E4F5061728394L);
+        Assert.assertEquals(w[1], 0xA0B1CL);
+        Assert.assertEquals(Terms.bvConstValueAsBigInteger(t), new BigInteger("A0B1C2D3E4F5061728394", 16));
+
+        try {
+            Terms.bvConstValueAsLong(t);
+            Assert.fail("bvConstValueAsLong should fail on an 84-bit constant");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     static private void tstMpz(String number) {
         System.out.println("Input: " + number);
         BigInteger base = new BigInteger(number);
@@ -475,6 +499,64 @@ public class TestYices {
         System.out.println();
     }
 
+    @Test
+    public void testParseAll() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        Terms.declareUninterpretedTerm("pa_x", Types.INT);
+        Terms.declareUninterpretedTerm("pa_p", Types.BOOL);
+        String source =
+            "; constraints\n" +
+            "(> pa_x 0)  pa_p\n" +
+            "(and pa_p\n" +
+            "     (< pa_x 10)) ; comment (\n" +
+            "(or pa_p pa_y)\n" +
+            "true\n";
+        ParseResult r = Terms.parseAll(source);
+        System.out.println("parseAll: " + r + " " + r.getFailures());
+        Assert.assertEquals(r.size(), 5);
+        Assert.assertEquals(r.getTerm(0), Terms.parse("(> pa_x 0)"));
+        Assert.assertEquals(r.getTerm(1), Terms.parse("pa_p"));
+        Assert.assertEquals(r.getTerm(2), Terms.parse("(and pa_p (< pa_x 10))"));
+        Assert.assertEquals(r.getTerm(3), -1);
+        Assert.assertEquals(r.getTerm(4), Terms.TRUE);
+        Assert.assertEquals(r.getFailures().size(), 1);
+        ParseResult.Failure f = r.getFailures().get(0);
+        Assert.assertEquals(f.getIndex(), 3);
+        Assert.assertEquals(f.getLine(), 5);
+
+        String[] exprs = { "(+ pa_x 1)", "(+ pa_x", "pa_p" };
+        int[] out = new int[3];
+        r = Terms.parseAll(exprs, out);
+        Assert.assertEquals(out[0], Terms.add(Terms.getByName("pa_x"), Terms.ONE));
+        Assert.assertEquals(out[1], -1);
+        Assert.assertEquals(out[2], Terms.getByName("pa_p"));
+        Assert.assertEquals(r.getFailures().get(0).getIndex(), 1);
+        Assert.assertEquals(r.getFailures().get(0).getLine(), 1);
+        Terms.removeName("pa_x");
+        Terms.removeName("pa_p");
+    }
+
+    @Test
+    public void testParseTermsBounds() {
+        assumeTrue(TestAssumptions.IS_YICES_INSTALLED);
+
+        byte[] text = "true false".getBytes(StandardCharsets.US_ASCII);
+        int[] out = new int[2];
+        int[] errors = new int[6];
+        String[] messages = new String[2];
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 0, 4, 5, 10 }, out, errors, messages), 0);
+        Assert.assertEquals(out[1], Terms.FALSE);
+        // out of bounds, negative, or reversed offsets
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 0, 4, 5, 11 }, out, errors, messages), -2);
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { -1, 4 }, out, errors, messages), -2);
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 4, 0 }, out, errors, messages), -2);
+        // output arrays too small
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 0, 4, 5, 10 }, new int[1], errors, messages), -2);
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 0, 4, 5, 10 }, out, new int[5], messages), -2);
+        Assert.assertEquals(Yices.parseTerms(text, new int[] { 0, 4, 5, 10 }, out, errors, new String[1]), -2);
+    }
+
     @Ignore
     @Test
     public void testMpz() {